@@ -112,9 +112,11 @@ public class AdminController {
 			return;
 		}
 		
-		// remove selected User's .dat file
+		// remove selected User's .dat file and journal
 		File file = new File("session/" + selectedUser + ".dat");
 		file.delete();
+		File journal = new File("session/" + selectedUser + ".journal");
+		journal.delete();
 		// remove selected User
 		admin.getUsers().remove(index);
 		users.remove(index);
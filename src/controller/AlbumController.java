@@ -1,5 +1,6 @@
 package controller;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Optional;
 
@@ -20,6 +21,7 @@ import javafx.stage.Stage;
 import app.Photos;
 import model.Admin;
 import model.Album;
+import model.Photo;
 import model.User;
 
 /**
@@ -119,6 +121,8 @@ public class AlbumController {
 			errorNotice("No Album Error", "There is no album selected, so the action cannot be performed.");
 			return;
 		}
+		// read the Album's Photos now that they are needed
+		selectedAlbum.load();
 		
 		FXMLLoader loader = new FXMLLoader(); 
 		loader.setLocation( getClass().getResource("/view/PhotoView.fxml"));
@@ -150,9 +154,20 @@ public class AlbumController {
 			return;
 		}
 		
+		// read the Photos of the Album first, so the thumbnails of those that leave the library can be deleted
+		ArrayList<Photo> removedPhotos = new ArrayList<Photo>();
+		try {
+			selectedAlbum.load();
+			removedPhotos.addAll(selectedAlbum.getPhotos());
+		}
+		catch(IOException ex) {
+			// the thumbnails are only taking up space, so they can be left behind
+		}
+		
 		// remove selected Album
-		user.getAlbums().remove(index);
+		user.removeAlbum(index);
 		albums.remove(index);
+		ThumbnailCache.getInstance().prune(user, removedPhotos);
 		
 		// select the next item
 		if(albums.size() != 0) {
@@ -208,7 +223,7 @@ public class AlbumController {
 			}
 			
 			Album newAlbum = new Album(newAlbumName);
-			user.getAlbums().add(newAlbum);
+			user.addAlbum(newAlbum);
 			albums.add(new Album(newAlbumName));
 		}
 		
@@ -250,7 +265,7 @@ public class AlbumController {
 				}
 			}
 			
-			selectedAlbum.setName(newAlbumName);
+			user.renameAlbum(selectedAlbum, newAlbumName);
 		}
 		
 		// select the inserted item
@@ -268,6 +283,9 @@ public class AlbumController {
 	 * @throws Exception	Used to throw Exception from FXMLLoader.
 	 */
 	public void photoSearch(ActionEvent e) throws Exception {
+		// searches cover every Album, so read the ones that have not been opened yet and index the whole library
+		user.buildIndexes();
+		
 		FXMLLoader loader = new FXMLLoader();   
 		loader.setLocation( getClass().getResource("/view/PhotoSearch.fxml"));
 		AnchorPane root = (AnchorPane)loader.load();
@@ -281,12 +299,33 @@ public class AlbumController {
 	}
 	
 	/**
-	 * Saves all changes made and returns User to Login.fxml View.
+	 * Navigates to the selected User's Duplicates.fxml View, which scans the library for alike Photos.
+	 * @param e	Reference to ActionEvent
+	 * @throws Exception	Used to throw Exception from FXMLLoader.
+	 */
+	public void findDuplicates(ActionEvent e) throws Exception {
+		// the scan covers every Album, so read the ones that have not been opened yet and give every Photo an id
+		user.buildIndexes();
+		
+		FXMLLoader loader = new FXMLLoader();   
+		loader.setLocation( getClass().getResource("/view/Duplicates.fxml"));
+		AnchorPane root = (AnchorPane)loader.load();
+		
+		DuplicatesController duplicatesController = loader.getController();
+		duplicatesController.start(primaryStage, user);
+		
+		Scene scene = new Scene(root);
+		primaryStage.setScene(scene);
+		primaryStage.show();
+	}
+	
+	/**
+	 * Saves all changes made, closes the User's journal and returns User to Login.fxml View.
 	 * @param e	Reference to ActionEvent
 	 * @throws Exception	Used to throw Exception from FXMLLoader.
 	 */
 	public void logout(ActionEvent e) throws Exception {
-		getUser().writeUser();
+		getUser().close();
 		
 		FXMLLoader loader = new FXMLLoader();   
 		loader.setLocation( getClass().getResource("/view/Login.fxml"));
@@ -0,0 +1,89 @@
+package controller;
+
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+import model.Photo;
+
+/**
+ * Observable view of the Photos of an Album, used as the items of the list and the grid of the photo view.
+ * It reads straight from the Album's own list instead of a copy, so opening a large Album copies nothing.
+ * The Album is only changed through the User, so the view cannot be changed itself; instead the Controller
+ * reports each change after making it, and the view passes it on to its listeners.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class AlbumPhotoList extends ObservableListBase<Photo> {
+
+	/**
+	 * The Album's list of Photos.
+	 */
+	private List<Photo> photos;
+
+	/**
+	 * Constructor for AlbumPhotoList.
+	 * @param photos	The Album's list of Photos.
+	 */
+	public AlbumPhotoList(List<Photo> photos) {
+		this.photos = photos;
+	}
+
+	/**
+	 * Returns a Photo of the Album.
+	 * @param index	Index of the Photo.
+	 * @return	The Photo.
+	 */
+	@Override
+	public Photo get(int index) {
+		return photos.get(index);
+	}
+
+	/**
+	 * Returns the number of Photos in the Album.
+	 * @return	Number of Photos.
+	 */
+	@Override
+	public int size() {
+		return photos.size();
+	}
+
+	/**
+	 * Reports that Photos were added to the Album.
+	 * @param from	Index of the first added Photo.
+	 * @param to	Index after the last added Photo.
+	 */
+	public void added(int from, int to) {
+		if(from == to) {
+			return;
+		}
+		beginChange();
+		nextAdd(from, to);
+		endChange();
+	}
+
+	/**
+	 * Reports that a Photo was removed from the Album.
+	 * @param index	Index the Photo had.
+	 * @param photo	Photo that was removed.
+	 */
+	public void removed(int index, Photo photo) {
+		beginChange();
+		nextRemove(index, photo);
+		endChange();
+	}
+
+	/**
+	 * Reports that a Photo of the Album changed, such as its caption, so the cells showing it are updated.
+	 * @param index	Index of the Photo.
+	 */
+	public void updated(int index) {
+		beginChange();
+		// replacing the Photo with itself makes the List View redraw it
+		nextSet(index, photos.get(index));
+		endChange();
+	}
+}
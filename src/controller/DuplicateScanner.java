@@ -0,0 +1,157 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+import model.NearDuplicates;
+import model.Photo;
+
+/**
+ * Background task that finds clusters of Photos that look alike.
+ * Photos that have no perceptual hash yet are hashed from their thumbnails in parallel; the new hashes are kept
+ * in getComputed so they can be saved on the JavaFX application thread. The clusters are then found with NearDuplicates.
+ * <p>
+ * The perceptual hash is a difference hash: the thumbnail is shrunk to 9 by 8 shades of grey and each bit records
+ * whether a pixel is brighter than its right neighbour, so resizing, recompression and small edits change few bits.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class DuplicateScanner extends Task<ArrayList<ArrayList<Photo>>> {
+
+	/**
+	 * Largest number of bits in which the hashes of two alike Photos may differ.
+	 */
+	public static final int MAX_DISTANCE = 10;
+
+	/**
+	 * Photos to be scanned.
+	 */
+	private List<Photo> photos;
+	/**
+	 * Perceptual hashes computed during the scan, for Photos that did not have one.
+	 */
+	private IdentityHashMap<Photo, Long> computed;
+
+	/**
+	 * Constructor for DuplicateScanner.
+	 * @param photos	Photos to be scanned, not changed by the scan.
+	 */
+	public DuplicateScanner(List<Photo> photos) {
+		this.photos = photos;
+		this.computed = new IdentityHashMap<Photo, Long>();
+	}
+
+	/**
+	 * Returns reference to computed.
+	 * @return	Perceptual hashes computed during the scan, for Photos that did not have one.
+	 */
+	public IdentityHashMap<Photo, Long> getComputed() {
+		return computed;
+	}
+
+	/**
+	 * Hashes the Photos that have no perceptual hash yet and groups the Photos into clusters.
+	 * @return	Clusters of at least two alike Photos, the largest first.
+	 */
+	@Override
+	protected ArrayList<ArrayList<Photo>> call() {
+		int count = photos.size();
+		long[] hashes = new long[count];
+		boolean[] hashed = new boolean[count];
+		AtomicInteger done = new AtomicInteger();
+		updateMessage("Hashing " + count + " photos");
+		IntStream.range(0, count).parallel().forEach(i -> {
+			if(isCancelled()) {
+				return;
+			}
+			Photo photo = photos.get(i);
+			if(photo.hasPerceptualHash()) {
+				hashes[i] = photo.getPerceptualHash();
+				hashed[i] = true;
+			}
+			else {
+				// the thumbnail is usually already saved, so the original file is rarely decoded
+				Image thumbnail = ThumbnailCache.getInstance().prewarm(photo.getLocation());
+				if(thumbnail != null) {
+					hashes[i] = perceptualHash(thumbnail);
+					hashed[i] = true;
+				}
+			}
+			updateProgress(done.incrementAndGet(), count);
+		});
+		if(isCancelled()) {
+			return new ArrayList<ArrayList<Photo>>();
+		}
+
+		// leave out Photos that could not be read
+		ArrayList<Photo> readable = new ArrayList<Photo>();
+		long[] readableHashes = new long[count];
+		for(int i = 0; i < count; i++) {
+			if(hashed[i]) {
+				readableHashes[readable.size()] = hashes[i];
+				readable.add(photos.get(i));
+				if(!photos.get(i).hasPerceptualHash()) {
+					computed.put(photos.get(i), hashes[i]);
+				}
+			}
+		}
+		updateMessage("Comparing " + readable.size() + " photos");
+		return NearDuplicates.findClusters(readable, readableHashes, MAX_DISTANCE);
+	}
+
+	/**
+	 * Computes the difference hash of an image.
+	 * @param image	Thumbnail of a Photo.
+	 * @return	64 bit perceptual hash.
+	 */
+	public static long perceptualHash(Image image) {
+		int width = (int)image.getWidth();
+		int height = (int)image.getHeight();
+		PixelReader reader = image.getPixelReader();
+		if(reader == null || width == 0 || height == 0) {
+			return 0;
+		}
+		int[] pixels = new int[width * height];
+		reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+		// shrink to 9 by 8 by averaging the brightness of the pixels that fall in each cell
+		double[] grey = new double[9 * 8];
+		for(int y = 0; y < 8; y++) {
+			int top = y * height / 8;
+			int bottom = Math.max(top + 1, (y + 1) * height / 8);
+			for(int x = 0; x < 9; x++) {
+				int left = x * width / 9;
+				int right = Math.max(left + 1, (x + 1) * width / 9);
+				double sum = 0;
+				for(int py = top; py < bottom && py < height; py++) {
+					for(int px = left; px < right && px < width; px++) {
+						int argb = pixels[py * width + px];
+						sum += 0.299 * ((argb >> 16) & 0xff) + 0.587 * ((argb >> 8) & 0xff) + 0.114 * (argb & 0xff);
+					}
+				}
+				grey[y * 9 + x] = sum / ((bottom - top) * (right - left));
+			}
+		}
+
+		long hash = 0;
+		for(int y = 0; y < 8; y++) {
+			for(int x = 0; x < 8; x++) {
+				if(grey[y * 9 + x] > grey[y * 9 + x + 1]) {
+					hash |= 1L << (y * 8 + x);
+				}
+			}
+		}
+		return hash;
+	}
+}
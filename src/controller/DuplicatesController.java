@@ -0,0 +1,339 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.event.ActionEvent;
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.text.Text;
+import javafx.stage.Stage;
+
+import app.Photos;
+import model.Admin;
+import model.Photo;
+import model.User;
+
+/**
+ * Duplicates Controller used to connect the Duplicates.fxml View to Models.
+ * Lists the groups of alike Photos found by a DuplicateScanner and removes the unwanted copies from every Album at once.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class DuplicatesController {
+
+	/**
+	 * List View that is used to show the groups of alike Photos.
+	 */
+	@FXML ListView<ArrayList<Photo>> clusterListView;
+	/**
+	 * List View that is used to show the Photos of the selected group.
+	 */
+	@FXML ListView<Photo> photoListView;
+	/**
+	 * Progress Bar that shows how far the scan has come.
+	 */
+	@FXML ProgressBar scanProgress;
+	/**
+	 * Text that describes what the scan is doing or what it found.
+	 */
+	@FXML Text scanStatus;
+
+	/**
+	 * ObservableList used to populate clusterListView and to keep track of new changes.
+	 */
+	ObservableList<ArrayList<Photo>> clusters;
+	/**
+	 * ObservableList used to populate photoListView and to keep track of new changes.
+	 */
+	ObservableList<Photo> photos;
+
+	/**
+	 * Reference to primaryStage used to display all our scenes.
+	 */
+	private static Stage primaryStage;
+	/**
+	 * Reference to User who has reference to all of the selected User's Albums.
+	 */
+	User user;
+	/**
+	 * Reference to Admin who has reference to all Users.
+	 */
+	Admin admin = Photos.getAdmin();
+	/**
+	 * Scan that is running, cancelled when leaving the View.
+	 */
+	DuplicateScanner scanner;
+
+	/**
+	 * Returns reference to primaryStage.
+	 * @return	Reference to primaryStage used to display all our scenes.
+	 */
+	public static Stage getPrimaryStage() {
+		return primaryStage;
+	}
+	/**
+	 * Sets our reference to primaryStage in order to allow all methods to have access.
+	 * @param mainStage	Reference to primaryStage used to display all our scenes.
+	 */
+	public static void setPrimaryStage(Stage mainStage) {
+		primaryStage = mainStage;
+	}
+
+	/**
+	 * Returns reference to the selected User.
+	 * @return	Reference to User who has reference to all of the selected User's Albums.
+	 */
+	public User getUser() {
+		return user;
+	}
+	/**
+	 * Sets the reference to User who has reference to all of the User's Albums.
+	 * @param user	Reference to User who has reference to all of the selected User's Albums.
+	 */
+	public void setUser(User user) {
+		this.user = user;
+	}
+
+	/**
+	 * Used to start the Duplicates.fxml View and scan the User's library.
+	 * @param mainStage	Reference to primaryStage used to display all our scenes.
+	 * @param selectedUser	Reference to the selected User
+	 */
+	public void start(Stage mainStage, User selectedUser) {
+		setPrimaryStage(mainStage);
+		setUser(selectedUser);
+
+		clusters = FXCollections.observableArrayList();
+		clusterListView.setItems(clusters);
+		// show each group as the thumbnail of its oldest Photo and its size
+		clusterListView.setCellFactory(listView -> new ListCell<ArrayList<Photo>>() {
+			private ThumbnailView imageView = new ThumbnailView();
+
+			@Override
+			public void updateItem(ArrayList<Photo> cluster, boolean empty) {
+				super.updateItem(cluster, empty);
+				if(empty || cluster == null) {
+					setText("");
+					setGraphic(null);
+					imageView.setPhoto(null);
+					return;
+				}
+				setText(cluster.size() + " alike photos\n" + cluster.get(0).getCaption());
+				imageView.setPhoto(cluster.get(0));
+				setGraphic(imageView);
+			}
+		});
+
+		photos = FXCollections.observableArrayList();
+		photoListView.setItems(photos);
+		photoListView.setCellFactory(listView -> new PhotoListCell());
+		photoListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+		// set listener for the groups
+		clusterListView
+		.getSelectionModel()
+		.selectedItemProperty()
+		.addListener(
+				(obs, oldVal, newVal) ->
+				showCluster());
+
+		scan();
+	}
+
+	/**
+	 * Scans the User's library for alike Photos on a background thread.
+	 */
+	public void scan() {
+		scanner = new DuplicateScanner(getUser().getPhotos(getUser().getLibraryIds()));
+		scanProgress.progressProperty().bind(scanner.progressProperty());
+		scanStatus.textProperty().bind(scanner.messageProperty());
+
+		scanner.setOnSucceeded(event -> {
+			scanStatus.textProperty().unbind();
+			// save the hashes so the next scan does not compute them again
+			for(Map.Entry<Photo, Long> entry : scanner.getComputed().entrySet()) {
+				getUser().setPerceptualHash(entry.getKey(), entry.getValue());
+			}
+			clusters.setAll(scanner.getValue());
+			scanStatus.setText(clusters.size() + " groups of alike photos found.");
+			// select the first group if exists
+			if(clusters.size() > 0) {
+				clusterListView.getSelectionModel().select(0);
+			}
+		});
+		scanner.setOnFailed(event -> {
+			scanStatus.textProperty().unbind();
+			scanStatus.setText("");
+			errorNotice("Scan Error", "The photos could not be compared: " + scanner.getException().getMessage());
+		});
+
+		Thread thread = new Thread(scanner, "duplicate-scan");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Displays the Photos of the selected group.
+	 */
+	public void showCluster() {
+		ArrayList<Photo> cluster = clusterListView.getSelectionModel().getSelectedItem();
+		if(cluster == null) {
+			photos.clear();
+			return;
+		}
+		photos.setAll(cluster);
+	}
+
+	/**
+	 * Removes the selected Photos of the selected group from every Album.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void removeSelected(ActionEvent e) {
+		ArrayList<Photo> cluster = clusterListView.getSelectionModel().getSelectedItem();
+		ArrayList<Photo> selected = new ArrayList<Photo>(photoListView.getSelectionModel().getSelectedItems());
+		if(cluster == null || selected.size() == 0) {
+			errorNotice("No Photo Error", "There is no photo selected, so the action cannot be performed.");
+			return;
+		}
+
+		// ask User to confirm if they want to delete the selected Photos
+		if(!deleteConfirmation(primaryStage, "Remove Duplicates", selected.size() + " photos from every album")) {
+			return;
+		}
+
+		getUser().removePhotos(selected);
+		ThumbnailCache.getInstance().prune(getUser(), selected);
+		cluster.removeAll(selected);
+		// a group of one Photo has no duplicates left
+		if(cluster.size() < 2) {
+			clusters.remove(cluster);
+		}
+		else {
+			clusterListView.refresh();
+			showCluster();
+		}
+	}
+
+	/**
+	 * Keeps the oldest Photo of every group and removes the rest from every Album.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void removeAllDuplicates(ActionEvent e) {
+		ArrayList<Photo> removed = new ArrayList<Photo>();
+		for(ArrayList<Photo> cluster : clusters) {
+			removed.addAll(cluster.subList(1, cluster.size()));
+		}
+		if(removed.size() == 0) {
+			errorNotice("No Duplicates Error", "There are no duplicates to remove.");
+			return;
+		}
+
+		// ask User to confirm if they want to delete the duplicates
+		if(!deleteConfirmation(primaryStage, "Remove Duplicates", removed.size() + " photos from every album, keeping the oldest photo of each group")) {
+			return;
+		}
+
+		getUser().removePhotos(removed);
+		ThumbnailCache.getInstance().prune(getUser(), removed);
+		clusters.clear();
+		scanStatus.setText(removed.size() + " duplicates removed.");
+	}
+
+	/**
+	 * Asks User to confirm Deletion of Photos.
+	 * @param primaryStage	Reference to primaryStage used to display all our scenes.
+	 * @param title	Title of the dialog.
+	 * @param content	Description of the Photos that are to be deleted.
+	 * @return	True if User confirms action; False if User cancels action
+	 */
+	public boolean deleteConfirmation(Stage primaryStage, String title, String content) {
+		// get confirmation that User wants to delete the Photos
+		Alert alert = new Alert(AlertType.CONFIRMATION);
+		alert.initOwner(primaryStage);
+		alert.setTitle(title);
+		alert.setContentText("Are you sure you want to delete:\n"
+				+ content);
+
+		// wait for user to either cancel or confirm
+		Optional<ButtonType> result = alert.showAndWait();
+		if (result.get() == ButtonType.OK){
+		    return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Saves all changes made and returns User to selected User's Album.fxml View.
+	 * @param e	Reference to ActionEvent
+	 * @throws Exception	Used to throw Exception from FXMLLoader.
+	 */
+	public void back(ActionEvent e) throws Exception {
+		scanner.cancel();
+		getUser().writeUser();
+
+		FXMLLoader loader = new FXMLLoader();
+		loader.setLocation( getClass().getResource("/view/Album.fxml"));
+		AnchorPane root = (AnchorPane)loader.load();
+
+		AlbumController albumController = loader.getController();
+		albumController.start(primaryStage, user);
+
+		Scene scene = new Scene(root);
+		primaryStage.setScene(scene);
+		primaryStage.show();
+	}
+
+	/**
+	 * Saves all changes made, closes the User's journal and returns User to Login.fxml View.
+	 * @param e	Reference to ActionEvent
+	 * @throws Exception	Used to throw Exception from FXMLLoader.
+	 */
+	public void logout(ActionEvent e) throws Exception {
+		scanner.cancel();
+		getUser().close();
+
+		FXMLLoader loader = new FXMLLoader();
+		loader.setLocation( getClass().getResource("/view/Login.fxml"));
+		AnchorPane root = (AnchorPane)loader.load();
+
+		LoginController loginController = loader.getController();
+		loginController.start(primaryStage);
+
+		Scene scene = new Scene(root);
+		primaryStage.setScene(scene);
+		primaryStage.show();
+	}
+
+	/**
+	 * Template for error dialogs
+	 * @param errorTitle : Error Title
+	 * @param errorDesc : Description of the error
+	 */
+	public void errorNotice(String errorTitle, String errorDesc) {
+		// display custom error message
+		Alert alert = new Alert(AlertType.ERROR);
+		alert.setTitle("Error Dialog");
+		alert.setHeaderText(errorTitle);
+		alert.setContentText(errorDesc);
+
+		alert.showAndWait();
+	}
+
+}
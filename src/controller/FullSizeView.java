@@ -0,0 +1,49 @@
+package controller;
+
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.ImageView;
+import javafx.stage.Stage;
+
+import model.Photo;
+
+/**
+ * Window that shows a Photo at its full resolution in a scrollable area.
+ * The display areas of the other Views only decode Photos at the size they are shown at,
+ * so this is the only place the full resolution image is decoded.
+ * 
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class FullSizeView {
+	
+	/**
+	 * Opens a window showing the Photo at its full resolution.
+	 * @param owner	Reference to primaryStage used to display all our scenes.
+	 * @param photo	Photo to be shown.
+	 */
+	public static void show(Stage owner, Photo photo) {
+		ImageView imageView = new ImageView();
+		ScrollPane scrollPane = new ScrollPane(imageView);
+		scrollPane.setPannable(true);
+		
+		Stage stage = new Stage();
+		stage.initOwner(owner);
+		stage.setTitle(photo.getCaption() + " (loading)");
+		stage.setScene(new Scene(scrollPane, 800, 600));
+		stage.show();
+		
+		ImagePrefetcher.getInstance().load(photo, 0, 0, image -> {
+			if(image == null) {
+				stage.setTitle(photo.getCaption() + " (could not be read)");
+				return;
+			}
+			imageView.setImage(image);
+			stage.setTitle(String.format("%s (%d x %d, %.1f MB decoded)", photo.getCaption(),
+					(int)image.getWidth(), (int)image.getHeight(), ImagePrefetcher.bytes(image) / (1024.0 * 1024.0)));
+		});
+	}
+	
+}
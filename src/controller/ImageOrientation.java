@@ -0,0 +1,89 @@
+package controller;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Turns decoded images upright according to the EXIF orientation of their Photo.
+ * Cameras store the pixels the way the sensor read them and record how the image has to be turned in the orientation,
+ * which the JavaFX decoder ignores. The pixels are copied into a new image rather than transforming the Image View,
+ * so the turned image takes up the right amount of space in every layout it is shown in.
+ * Safe to call from any thread.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class ImageOrientation {
+
+	/**
+	 * Returns the image turned upright.
+	 * @param image	Image as decoded from the file, or null.
+	 * @param orientation	EXIF orientation of the Photo, from 1 for upright to 8, or 0 if unknown.
+	 * @return	The upright image, or the image itself if it is upright already, its orientation is unknown or its pixels cannot be read.
+	 */
+	public static Image apply(Image image, int orientation) {
+		// check if there is anything to turn
+		if(image == null || orientation <= 1 || orientation > 8 || image.getPixelReader() == null) {
+			return image;
+		}
+		int width = (int)image.getWidth();
+		int height = (int)image.getHeight();
+		if(width == 0 || height == 0) {
+			return image;
+		}
+		PixelReader reader = image.getPixelReader();
+		int[] source = new int[width * height];
+		reader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), source, 0, width);
+
+		// orientations 5 to 8 turn the image by a quarter, which swaps its width and height
+		boolean quarterTurn = orientation >= 5;
+		int targetWidth = quarterTurn ? height : width;
+		int targetHeight = quarterTurn ? width : height;
+		int[] target = new int[source.length];
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int targetX;
+				int targetY;
+				switch(orientation) {
+				case 2: // mirror
+					targetX = width - 1 - x;
+					targetY = y;
+					break;
+				case 3: // turn halfway
+					targetX = width - 1 - x;
+					targetY = height - 1 - y;
+					break;
+				case 4: // flip upside down
+					targetX = x;
+					targetY = height - 1 - y;
+					break;
+				case 5: // mirror, then turn a quarter counterclockwise
+					targetX = y;
+					targetY = x;
+					break;
+				case 6: // turn a quarter clockwise
+					targetX = height - 1 - y;
+					targetY = x;
+					break;
+				case 7: // mirror, then turn a quarter clockwise
+					targetX = height - 1 - y;
+					targetY = width - 1 - x;
+					break;
+				default: // turn a quarter counterclockwise
+					targetX = y;
+					targetY = width - 1 - x;
+					break;
+				}
+				target[targetY * targetWidth + targetX] = source[y * width + x];
+			}
+		}
+
+		WritableImage upright = new WritableImage(targetWidth, targetHeight);
+		upright.getPixelWriter().setPixels(0, 0, targetWidth, targetHeight, PixelFormat.getIntArgbInstance(), target, 0, targetWidth);
+		return upright;
+	}
+}
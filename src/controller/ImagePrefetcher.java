@@ -0,0 +1,290 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import model.Photo;
+
+/**
+ * Decodes the Photos shown in the display area on background threads and keeps recently decoded ones in memory.
+ * While a Photo is shown, its neighbours in the list are decoded ahead of time so that stepping to the
+ * previous or next Photo does not have to wait for the decode.
+ * Photos are decoded at the size they are displayed at rather than at their full resolution and turned upright,
+ * and decoded images are kept within a memory budget, evicting the least recently used ones first.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class ImagePrefetcher {
+
+	/**
+	 * Number of Photos on each side of the shown Photo that are decoded ahead of time.
+	 */
+	public static final int RADIUS = 2;
+	/**
+	 * Maximum number of bytes of decoded pixels kept in memory.
+	 */
+	private static final long MEMORY_BUDGET = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+	/**
+	 * The ImagePrefetcher shared by all Controllers.
+	 */
+	private static final ImagePrefetcher instance = new ImagePrefetcher();
+
+	/**
+	 * Decoded images keyed by Photo location, orientation and decoded size, with the least recently used first.
+	 * Only accessed on the JavaFX application thread.
+	 */
+	private LinkedHashMap<String, Image> images;
+	/**
+	 * Number of bytes of decoded pixels in images.
+	 */
+	private long usedBytes;
+	/**
+	 * Decodes that have been started but not finished, keyed by Photo location, orientation and decoded size.
+	 * Only accessed on the JavaFX application thread.
+	 */
+	private HashMap<String, Request> requests;
+	/**
+	 * Threads that decode images.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * A decode that has been started, along with the callbacks waiting for it.
+	 */
+	private static class Request {
+		/**
+		 * The decode running on the executor.
+		 */
+		Future<?> future;
+		/**
+		 * Callbacks waiting for the decoded image. Empty for decodes started ahead of time.
+		 */
+		ArrayList<Consumer<Image>> callbacks = new ArrayList<Consumer<Image>>();
+	}
+
+	/**
+	 * Constructor for ImagePrefetcher.
+	 */
+	private ImagePrefetcher() {
+		images = new LinkedHashMap<String, Image>(16, 0.75f, true);
+		usedBytes = 0;
+		requests = new HashMap<String, Request>();
+		executor = Executors.newFixedThreadPool(2, runnable -> {
+			Thread thread = new Thread(runnable, "image-prefetcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the ImagePrefetcher shared by all Controllers.
+	 * @return	The ImagePrefetcher.
+	 */
+	public static ImagePrefetcher getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns reference to usedBytes.
+	 * @return	Number of bytes of decoded pixels kept in memory.
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Passes the image of the Photo, decoded to fit the Image View it is shown in, to the callback.
+	 * Must be called on the JavaFX application thread.
+	 * @param photo	Photo to be shown.
+	 * @param view	Image View that the Photo is shown in.
+	 * @param callback	Called with the image, or with null if the Photo could not be read.
+	 */
+	public void load(Photo photo, ImageView view, Consumer<Image> callback) {
+		load(photo, decodeWidth(view), decodeHeight(view), callback);
+	}
+
+	/**
+	 * Passes the decoded image of the Photo to the callback.
+	 * If the image is in memory the callback is called right away, otherwise it is called
+	 * on the JavaFX application thread once the image has been decoded.
+	 * Must be called on the JavaFX application thread.
+	 * @param photo	Photo to be shown.
+	 * @param width	Width that the image is decoded to fit in, or 0 for the full resolution.
+	 * @param height	Height that the image is decoded to fit in, or 0 for the full resolution.
+	 * @param callback	Called with the image, or with null if the Photo could not be read.
+	 */
+	public void load(Photo photo, double width, double height, Consumer<Image> callback) {
+		String key = key(photo.getLocation(), photo.getOrientation(), width, height);
+		Image image = images.get(key);
+		if(image != null) {
+			callback.accept(image);
+			return;
+		}
+		request(photo.getLocation(), photo.getOrientation(), width, height).callbacks.add(callback);
+	}
+
+	/**
+	 * Decodes the Photos around the shown Photo ahead of time.
+	 * Decodes started ahead of time for Photos that are no longer near the shown Photo are cancelled if they have not started yet.
+	 * Must be called on the JavaFX application thread.
+	 * @param photos	List of Photos being browsed.
+	 * @param index	Index of the shown Photo.
+	 * @param view	Image View that the Photos are shown in.
+	 */
+	public void prefetch(List<Photo> photos, int index, ImageView view) {
+		double width = decodeWidth(view);
+		double height = decodeHeight(view);
+		Set<String> wanted = new HashSet<String>();
+		// decode the next Photos first, since browsing forward is most common
+		for(int offset = 1; offset <= RADIUS; offset++) {
+			for(int neighbour : new int[] {index + offset, index - offset}) {
+				if(neighbour >= 0 && neighbour < photos.size()) {
+					Photo photo = photos.get(neighbour);
+					String key = key(photo.getLocation(), photo.getOrientation(), width, height);
+					wanted.add(key);
+					if(!images.containsKey(key)) {
+						request(photo.getLocation(), photo.getOrientation(), width, height);
+					}
+				}
+			}
+		}
+
+		// cancel decodes that nobody is waiting for and that are no longer needed
+		Iterator<Map.Entry<String, Request>> iterator = requests.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<String, Request> entry = iterator.next();
+			Request request = entry.getValue();
+			if(request.callbacks.isEmpty() && !wanted.contains(entry.getKey()) && request.future.cancel(false)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the decode of the Photo at the given location, starting it if it has not been started yet.
+	 * @param location	Location of the Photo on the disk.
+	 * @param orientation	EXIF orientation of the Photo, which the decoded image is turned by.
+	 * @param width	Width that the image is decoded to fit in, or 0 for the full resolution.
+	 * @param height	Height that the image is decoded to fit in, or 0 for the full resolution.
+	 * @return	The decode of the Photo.
+	 */
+	private Request request(String location, int orientation, double width, double height) {
+		String key = key(location, orientation, width, height);
+		Request request = requests.get(key);
+		if(request != null) {
+			return request;
+		}
+		Request newRequest = new Request();
+		requests.put(key, newRequest);
+		newRequest.future = executor.submit(() -> {
+			// the decoder scales each line down as it is decoded, so the full resolution image is never held in memory
+			Image decoded = new Image("file:" + location, width, height, true, true, false);
+			Image result = decoded.isError() ? null : ImageOrientation.apply(decoded, orientation);
+			// the Photo was just read, so this is a cheap moment to notice that it was edited since its thumbnail was made
+			ThumbnailCache.getInstance().checkModified(location);
+			Platform.runLater(() -> finish(key, newRequest, result));
+		});
+		return newRequest;
+	}
+
+	/**
+	 * Returns the key that a decoded image is stored under.
+	 * @param location	Location of the Photo on the disk.
+	 * @param orientation	EXIF orientation of the Photo.
+	 * @param width	Width that the image is decoded to fit in, or 0 for the full resolution.
+	 * @param height	Height that the image is decoded to fit in, or 0 for the full resolution.
+	 * @return	The key of the decoded image.
+	 */
+	private static String key(String location, int orientation, double width, double height) {
+		return (int)width + "x" + (int)height + "/" + orientation + ":" + location;
+	}
+
+	/**
+	 * Returns the width in pixels that Photos shown in the Image View are decoded to, taking screen scaling into account.
+	 * @param view	Image View that the Photos are shown in.
+	 * @return	The width in pixels, or 0 for the full resolution if the Image View has no fixed width.
+	 */
+	private static double decodeWidth(ImageView view) {
+		double scale = 1;
+		if(view.getScene() != null && view.getScene().getWindow() != null) {
+			scale = view.getScene().getWindow().getOutputScaleX();
+		}
+		return Math.ceil(view.getFitWidth() * scale);
+	}
+
+	/**
+	 * Returns the height in pixels that Photos shown in the Image View are decoded to, taking screen scaling into account.
+	 * @param view	Image View that the Photos are shown in.
+	 * @return	The height in pixels, or 0 for the full resolution if the Image View has no fixed height.
+	 */
+	private static double decodeHeight(ImageView view) {
+		double scale = 1;
+		if(view.getScene() != null && view.getScene().getWindow() != null) {
+			scale = view.getScene().getWindow().getOutputScaleY();
+		}
+		return Math.ceil(view.getFitHeight() * scale);
+	}
+
+	/**
+	 * Stores a decoded image and passes it to the callbacks waiting for it.
+	 * @param key	Key that the decoded image is stored under.
+	 * @param request	The decode that finished.
+	 * @param image	The decoded image, or null if the Photo could not be read.
+	 */
+	private void finish(String key, Request request, Image image) {
+		if(requests.get(key) == request) {
+			requests.remove(key);
+		}
+		if(image != null) {
+			put(key, image);
+		}
+		for(Consumer<Image> callback : request.callbacks) {
+			callback.accept(image);
+		}
+	}
+
+	/**
+	 * Stores a decoded image, evicting the least recently used images while the memory budget is exceeded.
+	 * @param key	Key that the decoded image is stored under.
+	 * @param image	The decoded image.
+	 */
+	private void put(String key, Image image) {
+		Image previous = images.put(key, image);
+		if(previous != null) {
+			usedBytes -= bytes(previous);
+		}
+		usedBytes += bytes(image);
+		Iterator<Image> iterator = images.values().iterator();
+		while(usedBytes > MEMORY_BUDGET && images.size() > 1) {
+			usedBytes -= bytes(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of ARGB pixels held by the image.
+	 * @param image	The decoded image.
+	 * @return	Number of bytes of pixels.
+	 */
+	public static long bytes(Image image) {
+		return (long)image.getWidth() * (long)image.getHeight() * 4;
+	}
+
+}
@@ -0,0 +1,231 @@
+package controller;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+
+import model.Photo;
+
+/**
+ * Thumbnail grid of the Photos of an Album, shown in a ListView whose items are the rows of the grid.
+ * The grid reads the Photos from the same list as the list of Photos; the rows are numbers computed on demand,
+ * so the ListView never holds an item per Photo, and a PhotoGridCell looks up the Photos of a row only while the row is visible.
+ * When the Photos change, the rows are updated in place, so the grid keeps its scroll position.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoGrid {
+
+	/**
+	 * Number of thumbnails in each row.
+	 */
+	public static final int COLUMNS = 3;
+
+	/**
+	 * List View that shows the rows of the grid.
+	 */
+	private ListView<Integer> gridView;
+	/**
+	 * Photos shown, in order.
+	 */
+	private ObservableList<Photo> photos;
+	/**
+	 * The rows of the grid, the items of gridView.
+	 */
+	private Rows rows;
+	/**
+	 * Index of the selected Photo, or -1 if none.
+	 */
+	private int selectedIndex;
+	/**
+	 * Called with the index of a Photo when it is clicked.
+	 */
+	private IntConsumer onSelect;
+
+	/**
+	 * The rows of the grid, numbered from 0.
+	 */
+	private class Rows extends ObservableListBase<Integer> {
+		/**
+		 * Number of rows the ListView was last told about.
+		 */
+		int count;
+
+		/**
+		 * Returns the number of a row.
+		 * @param index	Index of the row.
+		 * @return	The same index.
+		 */
+		@Override
+		public Integer get(int index) {
+			return index;
+		}
+
+		/**
+		 * Returns the number of rows.
+		 * @return	Number of rows.
+		 */
+		@Override
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * Tells the ListView that the rows from the given one on may show other Photos, and that rows were added or removed at the end.
+		 * Only the rows that are visible are drawn again.
+		 * @param fromRow	First row whose Photos may have changed.
+		 */
+		void update(int fromRow) {
+			int newCount = (photos.size() + COLUMNS - 1) / COLUMNS;
+			beginChange();
+			// the rows that are kept are replaced by themselves, which redraws them
+			int kept = Math.min(count, newCount);
+			if(fromRow < kept) {
+				nextReplace(fromRow, kept, range(fromRow, kept));
+			}
+			if(newCount > count) {
+				nextAdd(count, newCount);
+			}
+			else if(newCount < count) {
+				nextRemove(newCount, range(newCount, count));
+			}
+			count = newCount;
+			endChange();
+		}
+
+		/**
+		 * Tells the ListView that one row must be drawn again, such as when its highlighted Photo changes.
+		 * @param row	Index of the row.
+		 */
+		void redraw(int row) {
+			// check if the row exists
+			if(row < 0 || row >= count) {
+				return;
+			}
+			beginChange();
+			nextReplace(row, row + 1, range(row, row + 1));
+			endChange();
+		}
+	}
+
+	/**
+	 * Constructor for PhotoGrid.
+	 * @param gridView	List View that shows the rows of the grid.
+	 * @param photos	Photos to be shown, in order; the grid follows their changes.
+	 * @param onSelect	Called with the index of a Photo when it is clicked.
+	 */
+	public PhotoGrid(ListView<Integer> gridView, ObservableList<Photo> photos, IntConsumer onSelect) {
+		this.gridView = gridView;
+		this.photos = photos;
+		this.onSelect = onSelect;
+		this.selectedIndex = -1;
+		rows = new Rows();
+		rows.update(0);
+		photos.addListener((ListChangeListener<Photo>) change -> {
+			// only the rows from the first changed Photo on can show other Photos
+			int from = photos.size();
+			while(change.next()) {
+				from = Math.min(from, change.getFrom());
+			}
+			rows.update(from / COLUMNS);
+		});
+		gridView.setCellFactory(listView -> new PhotoGridCell(this));
+		gridView.setItems(rows);
+	}
+
+	/**
+	 * Returns a list of the row numbers in a range, used to report removed and replaced rows.
+	 * @param from	First row of the range.
+	 * @param to	Row after the last row of the range.
+	 * @return	The row numbers.
+	 */
+	private static List<Integer> range(int from, int to) {
+		return new AbstractList<Integer>() {
+			@Override
+			public Integer get(int index) {
+				return from + index;
+			}
+
+			@Override
+			public int size() {
+				return to - from;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of Photos shown.
+	 * @return	Number of Photos.
+	 */
+	public int size() {
+		return photos.size();
+	}
+
+	/**
+	 * Returns a Photo shown in the grid.
+	 * @param index	Index of the Photo.
+	 * @return	The Photo, or null if the index is outside the grid.
+	 */
+	public Photo getPhoto(int index) {
+		return index >= 0 && index < photos.size() ? photos.get(index) : null;
+	}
+
+	/**
+	 * Returns reference to selectedIndex.
+	 * @return	Index of the selected Photo, or -1 if none.
+	 */
+	public int getSelectedIndex() {
+		return selectedIndex;
+	}
+
+	/**
+	 * Highlights a Photo and scrolls to its row if it is not visible.
+	 * Does not call onSelect.
+	 * @param index	Index of the Photo, or -1 to highlight none.
+	 */
+	public void setSelectedIndex(int index) {
+		int previous = selectedIndex;
+		selectedIndex = index;
+		// only the rows of the previous and the new selection are drawn again
+		if(previous >= 0) {
+			rows.redraw(previous / COLUMNS);
+		}
+		if(index >= 0 && (previous < 0 || index / COLUMNS != previous / COLUMNS)) {
+			rows.redraw(index / COLUMNS);
+		}
+		if(index >= 0 && !isRowVisible(index / COLUMNS)) {
+			gridView.scrollTo(index / COLUMNS);
+		}
+	}
+
+	/**
+	 * Checks if a row of the grid is on screen.
+	 * @param row	Index of the row.
+	 * @return	True if the row is on screen, false if it is not or the grid has not been laid out.
+	 */
+	private boolean isRowVisible(int row) {
+		VirtualFlow<?> flow = (VirtualFlow<?>) gridView.lookup(".virtual-flow");
+		// check if the grid has been shown yet
+		if(flow == null || flow.getFirstVisibleCell() == null || flow.getLastVisibleCell() == null) {
+			return false;
+		}
+		return row >= flow.getFirstVisibleCell().getIndex() && row <= flow.getLastVisibleCell().getIndex();
+	}
+
+	/**
+	 * Called by a PhotoGridCell when a Photo is clicked.
+	 * @param index	Index of the Photo.
+	 */
+	void select(int index) {
+		onSelect.accept(index);
+	}
+}
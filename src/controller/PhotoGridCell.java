@@ -0,0 +1,105 @@
+package controller;
+
+import javafx.geometry.Insets;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+
+import model.Photo;
+
+/**
+ * List cell that shows one row of a PhotoGrid.
+ * Each tile shows a grey placeholder until its thumbnail has been loaded. When the cell is reused for another row,
+ * the thumbnail requests of the Photos that are no longer shown are cancelled, and tiles whose Photo did not change
+ * keep their thumbnail instead of requesting it again.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoGridCell extends ListCell<Integer> {
+
+	/**
+	 * Width and height of each tile.
+	 */
+	private static final int TILE_SIZE = ThumbnailCache.SIZE + 16;
+	/**
+	 * Style of a tile whose Photo is not selected.
+	 */
+	private static final String TILE_STYLE = "-fx-background-color: #e4e4e4;";
+	/**
+	 * Style of the tile whose Photo is selected.
+	 */
+	private static final String SELECTED_STYLE = "-fx-background-color: #e4e4e4; -fx-border-color: #0096c9; -fx-border-width: 3;";
+
+	/**
+	 * Grid that the cell belongs to.
+	 */
+	private PhotoGrid grid;
+	/**
+	 * Box holding the tiles of the row.
+	 */
+	private HBox row;
+	/**
+	 * Tile of each column.
+	 */
+	private StackPane[] tiles;
+	/**
+	 * Image View of each tile, which keeps track of the Photo the tile shows.
+	 */
+	private ThumbnailView[] imageViews;
+
+	/**
+	 * Constructor for PhotoGridCell.
+	 * @param grid	Grid that the cell belongs to.
+	 */
+	public PhotoGridCell(PhotoGrid grid) {
+		this.grid = grid;
+		tiles = new StackPane[PhotoGrid.COLUMNS];
+		imageViews = new ThumbnailView[PhotoGrid.COLUMNS];
+		row = new HBox(6);
+		row.setPadding(new Insets(2));
+		for(int column = 0; column < PhotoGrid.COLUMNS; column++) {
+			int tileColumn = column;
+			imageViews[column] = new ThumbnailView();
+			tiles[column] = new StackPane(imageViews[column]);
+			tiles[column].setMinSize(TILE_SIZE, TILE_SIZE);
+			tiles[column].setPrefSize(TILE_SIZE, TILE_SIZE);
+			tiles[column].setStyle(TILE_STYLE);
+			tiles[column].setOnMouseClicked(event -> {
+				// check if the tile shows a Photo
+				if(getItem() != null && imageViews[tileColumn].getPhoto() != null) {
+					grid.select(getItem() * PhotoGrid.COLUMNS + tileColumn);
+				}
+			});
+			row.getChildren().add(tiles[column]);
+		}
+		setText(null);
+		// the selected Photo is highlighted by its tile, not by the row it is in
+		setStyle("-fx-background-color: transparent;");
+	}
+
+	/**
+	 * Fills the tiles with the thumbnails of the Photos of the row.
+	 */
+	@Override
+	public void updateItem(Integer rowIndex, boolean empty) {
+		super.updateItem(rowIndex, empty);
+		if(empty || rowIndex == null) {
+			for(int column = 0; column < PhotoGrid.COLUMNS; column++) {
+				imageViews[column].setPhoto(null);
+			}
+			setGraphic(null);
+			return;
+		}
+		for(int column = 0; column < PhotoGrid.COLUMNS; column++) {
+			int index = rowIndex * PhotoGrid.COLUMNS + column;
+			Photo photo = grid.getPhoto(index);
+			imageViews[column].setPhoto(photo);
+			tiles[column].setVisible(photo != null);
+			tiles[column].setStyle(index == grid.getSelectedIndex() ? SELECTED_STYLE : TILE_STYLE);
+		}
+		setGraphic(row);
+	}
+}
@@ -0,0 +1,235 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javafx.concurrent.Task;
+import javafx.scene.image.Image;
+
+import model.Photo;
+import model.PhotoMetadata;
+
+/**
+ * Background task that imports every image below a directory.
+ * The directory tree is walked with NIO, then the files are read in batches on a pool of worker threads,
+ * which stat each file, read its capture date, size and orientation from its header, hash its contents with SHA-256
+ * and save and perceptually hash its thumbnail.
+ * Files whose hash matches a file seen earlier in the same import are copies and are skipped.
+ * The hash is kept on the Photo, so copies of Photos the User already has can be found as well.
+ * The task only builds Photo objects; adding them to an Album is left to the JavaFX application thread.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoImporter extends Task<List<Photo>> {
+
+	/**
+	 * Number of files handed to a worker thread at a time.
+	 */
+	private static final int BATCH_SIZE = 256;
+	/**
+	 * Number of bytes read from a file at a time while hashing it.
+	 */
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Buffer each thread reads files into while hashing them, so hashing many files does not allocate a buffer for each.
+	 */
+	private static final ThreadLocal<ByteBuffer> hashBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(HASH_BUFFER_SIZE));
+
+	/**
+	 * Directory that photos are imported from.
+	 */
+	private Path root;
+	/**
+	 * Number of files that were skipped because they are copies of another imported file.
+	 */
+	private int skipped;
+
+	/**
+	 * Constructor for PhotoImporter.
+	 * @param root	Directory that photos are imported from.
+	 */
+	public PhotoImporter(Path root) {
+		this.root = root;
+		this.skipped = 0;
+	}
+
+	/**
+	 * Returns reference to skipped.
+	 * @return	Number of files that were skipped because they are copies of another imported file.
+	 */
+	public int getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * Checks whether the file is an image that can be added as a Photo.
+	 * @param file	File to be checked.
+	 * @return	True if the file has one of the image extensions accepted when adding a single Photo.
+	 */
+	public static boolean isImage(Path file) {
+		String name = file.getFileName().toString().toLowerCase();
+		return name.endsWith(".png") || name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".gif");
+	}
+
+	/**
+	 * Walks the directory tree and builds a Photo for every image in it.
+	 * @return	Photos for every image that is not a copy of another, in the order they were found.
+	 * @throws Exception	Used to throw Exception relating to walking the directory tree.
+	 */
+	@Override
+	protected List<Photo> call() throws Exception {
+		updateMessage("Looking for photos in " + root);
+		List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if(attrs.isRegularFile() && isImage(file)) {
+					files.add(file);
+				}
+				return isCancelled() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				// skip files and directories that cannot be read
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		List<Photo> result = new ArrayList<Photo>();
+		Set<String> hashes = new HashSet<String>();
+		ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+			Thread thread = new Thread(runnable, "photo-importer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			// hand the files to the workers in batches
+			List<Future<List<Photo>>> batches = new ArrayList<Future<List<Photo>>>();
+			for(int start = 0; start < files.size(); start += BATCH_SIZE) {
+				List<Path> batch = files.subList(start, Math.min(start + BATCH_SIZE, files.size()));
+				batches.add(workers.submit(() -> scan(batch)));
+			}
+
+			// collect the batches in order so Photos keep the order they were found in
+			int done = 0;
+			for(Future<List<Photo>> batch : batches) {
+				if(isCancelled()) {
+					break;
+				}
+				for(Photo photo : batch.get()) {
+					if(hashes.add(photo.getHash())) {
+						result.add(photo);
+					}
+					else {
+						skipped++;
+					}
+				}
+				done = Math.min(done + BATCH_SIZE, files.size());
+				updateProgress(done, files.size());
+				updateMessage("Read " + done + " of " + files.size() + " photos");
+			}
+		}
+		finally {
+			workers.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a batch of files on a worker thread.
+	 * @param batch	Files to be read.
+	 * @return	Photos for the files that could be read.
+	 */
+	private List<Photo> scan(List<Path> batch) {
+		List<Photo> scanned = new ArrayList<Photo>();
+		for(Path path : batch) {
+			if(isCancelled()) {
+				break;
+			}
+			try {
+				Photo photo = readPhoto(path);
+				scanned.add(photo);
+
+				// decode the thumbnail now so the list does not have to, and hash it for the duplicate finder
+				Image thumbnail = ThumbnailCache.getInstance().prewarm(photo.getLocation());
+				if(thumbnail != null) {
+					photo.setPerceptualHash(DuplicateScanner.perceptualHash(thumbnail));
+				}
+			}
+			catch(IOException e) {
+				// skip files that cannot be read
+			}
+		}
+		return scanned;
+	}
+
+	/**
+	 * Builds a Photo for a file, with its capture date, size and orientation read from its header and the hash of its contents.
+	 * Reads the whole file, so it should not be called on the JavaFX application thread.
+	 * @param path	File to be read.
+	 * @return	Photo for the file, not yet in any Album.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static Photo readPhoto(Path path) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long lastModified = attrs.lastModifiedTime().toMillis();
+		// dates are kept to the second, as when adding a single Photo
+		Photo photo = new Photo(path.toAbsolutePath().toString(), "No Caption", lastModified - lastModified % 1000);
+		// use the date the photo was taken instead, if the file says
+		PhotoMetadata.read(path).applyTo(photo);
+		photo.setHash(contentHash(path));
+		return photo;
+	}
+
+	/**
+	 * Computes the SHA-256 hash of the whole file, streaming it through the thread's buffer so it is never held in memory at once.
+	 * @param path	File to be read.
+	 * @return	Hex encoded hash.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static String contentHash(Path path) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch(NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = hashBuffer.get();
+			buffer.clear();
+			while(channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		StringBuilder hex = new StringBuilder();
+		for(byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+}
@@ -0,0 +1,44 @@
+package controller;
+
+import javafx.scene.control.ListCell;
+
+import model.Photo;
+
+/**
+ * List cell that shows a Photo's thumbnail and caption.
+ * Thumbnails come from the ThumbnailCache, so scrolling does not decode the original file again,
+ * and the request for a Photo that was scrolled past is cancelled when the cell is reused.
+ * 
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoListCell extends ListCell<Photo> {
+	
+	/**
+	 * Image View that is used to show the thumbnail of the Photo.
+	 */
+	private ThumbnailView imageView = new ThumbnailView();
+	
+	/**
+	 * Fills the cell with the thumbnail and caption of the Photo.
+	 */
+	@Override
+	public void updateItem(Photo photo, boolean empty) {
+		super.updateItem(photo, empty);
+		if (empty || photo == null) {
+			setText("");
+			setGraphic(null);
+			// stop loading the thumbnail of the photo the cell showed before
+			imageView.setPhoto(null);
+		} else {
+			// set the caption of the photo
+			setText(photo.toString());
+			// set the image of the photo once its thumbnail is available
+			imageView.setPhoto(photo);
+			setGraphic(imageView);
+		}
+	}
+	
+}
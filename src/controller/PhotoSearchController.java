@@ -1,12 +1,16 @@
 package controller;
 
+import java.io.IOException;
+import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 import java.time.LocalDate;
-import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
@@ -14,23 +18,27 @@ import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
-import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.TextInputDialog;
+import javafx.scene.control.Tooltip;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import app.Photos;
 import model.Admin;
 import model.Album;
+import model.CaptionIndex;
 import model.Photo;
+import model.PhotoBitmap;
+import model.PhotoQuery;
 import model.Tag;
 import model.User;
 
@@ -52,6 +60,10 @@ public class PhotoSearchController {
 	 * Image View that is used to show the selected photo in the display area.
 	 */
 	@FXML ImageView photoDisplay;
+	/**
+	 * Tooltip of photoDisplay used to report the decoded size and memory of the displayed photo.
+	 */
+	Tooltip displayInfo = new Tooltip();
 	/**
 	 * Text box used to display photo caption.
 	 */
@@ -92,6 +104,22 @@ public class PhotoSearchController {
 	 * Used to take input from User about the To Date.
 	 */
 	@FXML DatePicker toDate;
+	/**
+	 * TextField to take in a query combining Tags and dates with AND, OR, NOT and parentheses.
+	 */
+	@FXML TextField queryField;
+	/**
+	 * TextField to take in text to search the captions for, searched as it is typed.
+	 */
+	@FXML TextField captionField;
+	/**
+	 * CheckBox to only match captions that start with the text in captionField.
+	 */
+	@FXML CheckBox captionPrefix;
+	/**
+	 * Text to show the progress of live searches and mistakes in the query being typed.
+	 */
+	@FXML Text searchStatus;
 	
 	/**
 	 * ObservableList used to populate photoListView and to keep track of new changes.
@@ -127,6 +155,31 @@ public class PhotoSearchController {
 	 */
 	ArrayList<Photo> searchResults;
 	
+	/**
+	 * Milliseconds to wait after the last keystroke before running a live search.
+	 */
+	private static final int DEBOUNCE_MILLIS = 200;
+	/**
+	 * Thread that runs live searches, one at a time.
+	 */
+	private static final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "photo-search");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * Delay that is restarted on every keystroke, so a live search only runs once typing pauses.
+	 */
+	PauseTransition debounce = new PauseTransition(Duration.millis(DEBOUNCE_MILLIS));
+	/**
+	 * Live search box that was edited last.
+	 */
+	TextField liveSource;
+	/**
+	 * Live search that is running or queued, cancelled when the input changes again.
+	 */
+	PhotoSearchTask liveSearch;
+	
 	/**
 	 * Returns reference to primaryStage.
 	 * @return	Reference to primaryStage used to display all our scenes.
@@ -173,6 +226,10 @@ public class PhotoSearchController {
 		tagTypeChoice1.setItems(tagTypes);
 		tagTypeChoice2.setItems(tagTypes);
 		
+		// suggest values already used with the selected tag types while typing
+		new TagValueCompleter(tagValue1, tagTypeChoice1::getValue, getUser());
+		new TagValueCompleter(tagValue2, tagTypeChoice2::getValue, getUser());
+		
 		// fill in ComboBox with optional conditionals
 		conditionals = FXCollections.observableArrayList("NONE", "AND", "OR");
 		conditionalChoice.setItems(conditionals);
@@ -181,6 +238,15 @@ public class PhotoSearchController {
 		caption.setText("");
 		date.setText("");
 		
+		// report the decoded size of the displayed photo when hovering over it
+		Tooltip.install(photoDisplay, displayInfo);
+		
+		// search the captions and queries as they are typed, once typing pauses
+		debounce.setOnFinished(event -> runLiveSearch());
+		captionField.textProperty().addListener((obs, oldVal, newVal) -> scheduleLiveSearch(captionField));
+		captionPrefix.selectedProperty().addListener((obs, oldVal, newVal) -> scheduleLiveSearch(captionField));
+		queryField.textProperty().addListener((obs, oldVal, newVal) -> scheduleLiveSearch(queryField));
+		
 		// set listener for the items
 		photoListView
 		.getSelectionModel()
@@ -207,15 +273,27 @@ public class PhotoSearchController {
 		// get reference to selected photo
 		Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
 		
-		// set the photo
-		Image image = new Image("file:" + selectedPhoto.getLocation(), true);
-		photoDisplay.setImage(image);
+		// set the photo once it has been decoded, unless another photo was selected in the meantime
+		photoDisplay.setImage(null);
+		// the photo is decoded at the size of the display area rather than its full resolution
+		ImagePrefetcher.getInstance().load(selectedPhoto, photoDisplay, image -> {
+			if(photoListView.getSelectionModel().getSelectedItem() == selectedPhoto) {
+				photoDisplay.setImage(image);
+				displayInfo.setText(image == null ? "Photo could not be read" : String.format(
+						"%d x %d shown, %.1f MB decoded (%.1f MB of decoded photos in memory)",
+						(int)image.getWidth(), (int)image.getHeight(),
+						ImagePrefetcher.bytes(image) / (1024.0 * 1024.0),
+						ImagePrefetcher.getInstance().getUsedBytes() / (1024.0 * 1024.0)));
+			}
+		});
+		// decode the neighbouring photos ahead of time for previous/next
+		ImagePrefetcher.getInstance().prefetch(photos, photoListView.getSelectionModel().getSelectedIndex(), photoDisplay);
 		
 		// set the caption
 		caption.setText(selectedPhoto.getCaption());
 		
 		// set the date
-		date.setText(selectedPhoto.getDate().getTime().toString());
+		date.setText(Photo.DATE_FORMAT.format(selectedPhoto.getDateTime()));
 		
 		//set the tags
 		ArrayList<Tag> savedPhotoTags = selectedPhoto.getTags();
@@ -227,6 +305,7 @@ public class PhotoSearchController {
 	 * Search's through the User's Albums and Photos to find all Photos that fall within the provided date range.
 	 */
 	public void searchByDate() {
+		stopLiveSearch();
 		// get LocalDate objects from selected Dates
 		LocalDate selectedFromDate = fromDate.getValue();
 		LocalDate selectedToDate = toDate.getValue();
@@ -239,22 +318,8 @@ public class PhotoSearchController {
 			return;
 		}
 		
-		// go through all of User's Album objects and Photo objects to find Photo objects that fall within the date range
-		ArrayList<Album> userAlbums = getUser().getAlbums();
-		// hashset to keep track of already added photos
-		Set<Photo> addedPhotos = new HashSet<Photo>();
-		for(Album album : userAlbums) {
-			ArrayList<Photo> albumPhotos = album.getPhotos();
-			
-			for(Photo photo : albumPhotos) {
-				// get the LocalDate of the Photo
-				LocalDate photoDate = photo.getDate().getTime().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-				if(!addedPhotos.contains(photo) && photoDate.compareTo(selectedFromDate) >= 0 && photoDate.compareTo(selectedToDate) <= 0) {
-					queryResult.add(photo);
-					addedPhotos.add(photo);
-				}
-			}
-		}
+		// take the contiguous slice of the User's date index that falls within the date range, already from the earliest to the latest
+		queryResult = getUser().getDateIndex().range(selectedFromDate, selectedToDate);
 		
 		// saved the query result for future reference
 		searchResults = queryResult;
@@ -266,25 +331,7 @@ public class PhotoSearchController {
 		// set ListView to display Observable List
 		photoListView.setItems(photos);
 		// Fill ListView Cells with Thumbnail and Caption
-		photoListView.setCellFactory(listView -> new ListCell<Photo>() {
-		    private ImageView imageView = new ImageView();
-
-		    @Override
-		    public void updateItem(Photo photo, boolean empty) {
-		        super.updateItem(photo, empty);
-		        if (empty) {
-		        	setText("");
-		            setGraphic(null);
-		        } else {
-		        	// set the caption of the photo
-		        	setText(photo.toString());
-		        	// set the image of the photo
-		            Image image = new Image("file:" + photo.getLocation(), 60, 60, true, true, true) ; 
-		            imageView.setImage(image);
-		            setGraphic(imageView);
-		        }
-		    }
-		});
+		photoListView.setCellFactory(listView -> new PhotoListCell());
 		
 		// select the first item if exists
 		if(photos.size() > 0) {
@@ -297,6 +344,7 @@ public class PhotoSearchController {
 	 * @param e	ActionEvent e
 	 */
 	public void searchByTags(ActionEvent e) {
+		stopLiveSearch();
 		if(conditionalChoice.getValue() == null) {
 			errorNotice("No Conditional Selected", "Please select \"NONE\", \"AND\", or \"OR\" using the dropdown before attempting to search by tag.");
 			return;
@@ -322,25 +370,7 @@ public class PhotoSearchController {
 		// set ListView to display Observable List
 		photoListView.setItems(photos);
 		// Fill ListView Cells with Thumbnail and Caption
-		photoListView.setCellFactory(listView -> new ListCell<Photo>() {
-		    private ImageView imageView = new ImageView();
-
-		    @Override
-		    public void updateItem(Photo photo, boolean empty) {
-		        super.updateItem(photo, empty);
-		        if (empty) {
-		        	setText("");
-		            setGraphic(null);
-		        } else {
-		        	// set the caption of the photo
-		        	setText(photo.toString());
-		        	// set the image of the photo
-		            Image image = new Image("file:" + photo.getLocation(), 60, 60, true, true, true) ; 
-		            imageView.setImage(image);
-		            setGraphic(imageView);
-		        }
-		    }
-		});
+		photoListView.setCellFactory(listView -> new PhotoListCell());
 		
 		// select the first item if exists
 		if(photos.size() > 0) {
@@ -362,30 +392,10 @@ public class PhotoSearchController {
 		}
 		
 		String type = tagTypeChoice1.getValue(); // Tag Type to check for
-		String value = tagValue1.getText().trim().toLowerCase(); // Tag Value to check for
-		ArrayList<Photo> queryResult = new ArrayList<Photo>(); // Holds results of our query.
+		String value = tagValue1.getText(); // Tag Value to check for
 		
-		// go through all of User's Album objects and Photo objects to find Photo objects that fall within the date range
-		ArrayList<Album> userAlbums = getUser().getAlbums();
-		// hashset to keep track of already added photos
-		Set<Photo> addedPhotos = new HashSet<Photo>();
-		for(Album album : userAlbums) {
-			ArrayList<Photo> albumPhotos = album.getPhotos();
-			
-			for(Photo photo : albumPhotos) {
-				if(!addedPhotos.contains(photo)) {
-					ArrayList<Tag> photoTags = photo.getTags();
-					
-					for(Tag tag : photoTags) {
-						if(tag.getTagType().equals(type) && tag.getTagValue().toLowerCase().equals(value)) {
-							queryResult.add(photo);
-							addedPhotos.add(photo);
-							break;
-						}
-					}
-				}
-			}
-		}
+		// look up the Photos that have the Tag, answered from the User's query cache when repeated
+		ArrayList<Photo> queryResult = PhotoQuery.tag(type, value).evaluate(getUser());
 		// saved the query result for future reference
 		searchResults = queryResult;
 	}
@@ -412,40 +422,12 @@ public class PhotoSearchController {
 		}
 		
 		String type1 = tagTypeChoice1.getValue(); // Tag Type to check for
-		String value1 = tagValue1.getText().trim().toLowerCase(); // Tag Value to check for
+		String value1 = tagValue1.getText(); // Tag Value to check for
 		String type2 = tagTypeChoice2.getValue(); // Tag Type to check for
-		String value2 = tagValue2.getText().trim().toLowerCase(); // Tag Value to check for
-		ArrayList<Photo> queryResult = new ArrayList<Photo>(); // Holds results of our query.
+		String value2 = tagValue2.getText(); // Tag Value to check for
 		
-		// go through all of User's Album objects and Photo objects to find Photo objects that fall within the date range
-		ArrayList<Album> userAlbums = getUser().getAlbums();
-		// hashset to keep track of already added photos
-		Set<Photo> addedPhotos = new HashSet<Photo>();
-		for(Album album : userAlbums) {
-			ArrayList<Photo> albumPhotos = album.getPhotos();
-			
-			for(Photo photo : albumPhotos) {
-				if(!addedPhotos.contains(photo)) {
-					ArrayList<Tag> photoTags = photo.getTags();
-					boolean checkTag1 = false;
-					boolean checkTag2 = false;
-					
-					for(Tag tag : photoTags) {
-						if(tag.getTagType().equals(type1) && tag.getTagValue().toLowerCase().equals(value1)) {
-							checkTag1 = true;
-						}
-						if(tag.getTagType().equals(type2) && tag.getTagValue().toLowerCase().equals(value2)) {
-							checkTag2 = true;
-						}
-						if(checkTag1 && checkTag2) {
-							queryResult.add(photo);
-							addedPhotos.add(photo);
-							break;
-						}
-					}
-				}
-			}
-		}
+		// intersect the posting lists of both Tags, answered from the User's query cache when repeated
+		ArrayList<Photo> queryResult = PhotoQuery.tag(type1, value1).and(PhotoQuery.tag(type2, value2)).evaluate(getUser());
 		// saved the query result for future reference
 		searchResults = queryResult;
 	}
@@ -472,42 +454,161 @@ public class PhotoSearchController {
 		}
 		
 		String type1 = tagTypeChoice1.getValue(); // Tag Type to check for
-		String value1 = tagValue1.getText().trim().toLowerCase(); // Tag Value to check for
+		String value1 = tagValue1.getText(); // Tag Value to check for
 		String type2 = tagTypeChoice2.getValue(); // Tag Type to check for
-		String value2 = tagValue2.getText().trim().toLowerCase(); // Tag Value to check for
-		ArrayList<Photo> queryResult = new ArrayList<Photo>(); // Holds results of our query.
+		String value2 = tagValue2.getText(); // Tag Value to check for
 		
-		// go through all of User's Album objects and Photo objects to find Photo objects that fall within the date range
-		ArrayList<Album> userAlbums = getUser().getAlbums();
-		// hashset to keep track of already added photos
-		Set<Photo> addedPhotos = new HashSet<Photo>();
-		for(Album album : userAlbums) {
-			ArrayList<Photo> albumPhotos = album.getPhotos();
-			
-			for(Photo photo : albumPhotos) {
-				if(!addedPhotos.contains(photo)) {
-					ArrayList<Tag> photoTags = photo.getTags();
-					
-					for(Tag tag : photoTags) {
-						if((tag.getTagType().equals(type1) && tag.getTagValue().toLowerCase().equals(value1)) || 
-								(tag.getTagType().equals(type2) && tag.getTagValue().toLowerCase().equals(value2))) {
-							queryResult.add(photo);
-							addedPhotos.add(photo);
-							break;
-						}
-					}
-				}
-			}
-		}
+		// union the posting lists of both Tags, answered from the User's query cache when repeated
+		ArrayList<Photo> queryResult = PhotoQuery.tag(type1, value1).or(PhotoQuery.tag(type2, value2)).evaluate(getUser());
 		// saved the query result for future reference
 		searchResults = queryResult;
 	}
 	
+	/**
+	 * Search for Photos matching the query typed in queryField.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void searchByQuery(ActionEvent e) {
+		stopLiveSearch();
+		if(queryField.getText().trim().length() == 0) {
+			errorNotice("No Query", "Please type a query such as person=alice AND NOT location=paris before attempting to search.");
+			return;
+		}
+		
+		PhotoQuery query;
+		try {
+			query = PhotoQuery.parse(queryField.getText());
+		}
+		catch(ParseException ex) {
+			errorNotice("Invalid Query", ex.getMessage() + " at position " + (ex.getErrorOffset() + 1) + ".");
+			// point at the problem in the query
+			queryField.requestFocus();
+			queryField.positionCaret(ex.getErrorOffset());
+			return;
+		}
+		
+		// saved the query result for future reference
+		searchResults = query.evaluate(getUser());
+		// clear List Views in order to prepare it for re-population.
+		photoListView.getItems().clear();
+		photoTagsListView.getItems().clear();
+		// set Observable List to our queried results
+		photos = FXCollections.observableArrayList(searchResults);
+		// set ListView to display Observable List
+		photoListView.setItems(photos);
+		// Fill ListView Cells with Thumbnail and Caption
+		photoListView.setCellFactory(listView -> new PhotoListCell());
+		
+		// select the first item if exists
+		if(photos.size() > 0) {
+			photoListView.getSelectionModel().select(0);
+		}
+	}
+	
+	/**
+	 * Restarts the debounce delay after a keystroke in one of the live search boxes.
+	 * The running search is cancelled straight away, since its input is already out of date.
+	 * @param source	Live search box that was edited.
+	 */
+	public void scheduleLiveSearch(TextField source) {
+		liveSource = source;
+		if(liveSearch != null) {
+			liveSearch.cancel();
+		}
+		debounce.playFromStart();
+	}
+	
+	/**
+	 * Runs the text in the last edited live search box on the search thread, streaming the results into photoListView.
+	 * captionField is searched for captions that contain, or start with, its text, and queryField is run as a query.
+	 */
+	public void runLiveSearch() {
+		// clear List Views in order to prepare it for the streamed results.
+		searchResults = new ArrayList<Photo>();
+		photoTagsListView.getItems().clear();
+		photos = FXCollections.observableArrayList();
+		photoListView.setItems(photos);
+		// Fill ListView Cells with Thumbnail and Caption
+		photoListView.setCellFactory(listView -> new PhotoListCell());
+		// check if the search box was cleared, in which case there is nothing to show
+		if(liveSource.getText().trim().length() == 0) {
+			searchStatus.setText("");
+			return;
+		}
+		
+		Function<User, PhotoBitmap> search;
+		Predicate<Photo> filter;
+		if(liveSource == captionField) {
+			String text = captionField.getText();
+			boolean prefix = captionPrefix.isSelected();
+			// the captions of the candidates are checked by the search thread as the results are streamed
+			search = searched -> searched.getCaptionIndex().candidates(text, prefix);
+			filter = CaptionIndex.isExact(text, prefix) ? photo -> true : photo -> CaptionIndex.matches(photo, text, prefix);
+		}
+		else {
+			// check if the query is complete enough to run
+			try {
+				search = PhotoQuery.parse(queryField.getText())::evaluateIds;
+			}
+			catch(ParseException ex) {
+				searchStatus.setText(ex.getMessage() + " at position " + (ex.getErrorOffset() + 1) + ".");
+				return;
+			}
+			filter = photo -> true;
+		}
+		// build the indexes here if they have not been yet, so the search thread only reads the User
+		try {
+			getUser().buildIndexes();
+		}
+		catch(IOException ex) {
+			searchStatus.setText("Search failed: " + ex.getMessage());
+			return;
+		}
+		searchStatus.setText("Searching...");
+		
+		PhotoSearchTask task = new PhotoSearchTask(getUser(), search, filter, batch -> {
+			searchResults.addAll(batch);
+			photos.addAll(batch);
+			// select the first item once it arrives
+			if(photoListView.getSelectionModel().isEmpty()) {
+				photoListView.getSelectionModel().select(0);
+			}
+			searchStatus.setText("Found " + photos.size() + " photos...");
+		});
+		task.setOnSucceeded(event -> searchStatus.setText(task.getValue() + " photos found."));
+		task.setOnFailed(event -> searchStatus.setText("Search failed: " + task.getException().getMessage()));
+		liveSearch = task;
+		searchExecutor.submit(task);
+	}
+	
+	/**
+	 * Cancels the pending and running live searches and waits for the running one to let go of the User.
+	 * Called before anything else reads or changes the User, since the search thread may still be checking a batch.
+	 */
+	public void stopLiveSearch() {
+		debounce.stop();
+		if(liveSearch != null) {
+			liveSearch.cancel();
+		}
+		searchStatus.setText("");
+		// the search thread holds the User's lock while it checks a batch and stops before the next one once cancelled,
+		// so taking the lock waits for it to stop reading the User
+		synchronized(getUser()) {
+			liveSearch = null;
+		}
+	}
+	
 	/**
 	 * Create a new Album from the Search Results
 	 * @param e	Reference to ActionEvent
 	 */
 	public void createAlbumFromSearch(ActionEvent e) {
+		// check if the results are still streaming in, in which case the list is not complete yet
+		if(liveSearch != null && liveSearch.isRunning()) {
+			errorNotice("Search Still Running", "Please wait for the search to finish before creating an album from it.");
+			return;
+		}
+		stopLiveSearch();
 		ArrayList<Photo> cSearchResults = searchResults; // creates a copy of searchResults
 		if(cSearchResults.size() == 0) { // this means the search query had no photo returned
 			errorNotice("Can't create an empty album like this", "Find a search query that actually produces photos please!");
@@ -535,7 +636,7 @@ public class PhotoSearchController {
 			for(Photo photo : cSearchResults) { // go through each photo of the searchResults copy
 				searched.addPhoto(photo); // add each photo into our new album Searched
 			}
-			user.getAlbums().add(searched); // adds the new created album into the users Album list!
+			user.addAlbum(searched); // adds the new created album into the users Album list!
 		}
 	}
 	
@@ -545,6 +646,7 @@ public class PhotoSearchController {
 	 * @throws Exception	Used to throw Exception from FXMLLoader.
 	 */
 	public void back(ActionEvent e) throws Exception {
+		stopLiveSearch();
 		getUser().writeUser();
 		
 		FXMLLoader loader = new FXMLLoader();   
@@ -560,12 +662,13 @@ public class PhotoSearchController {
 	}
 	
 	/**
-	 * Saves all changes made and returns User to Login.fxml View.
+	 * Saves all changes made, closes the User's journal and returns User to Login.fxml View.
 	 * @param e	Reference to ActionEvent
 	 * @throws Exception	Used to throw Exception from FXMLLoader.
 	 */
 	public void logout(ActionEvent e) throws Exception {
-		getUser().writeUser();
+		stopLiveSearch();
+		getUser().close();
 		
 		FXMLLoader loader = new FXMLLoader();   
 		loader.setLocation( getClass().getResource("/view/Login.fxml"));
@@ -579,6 +682,19 @@ public class PhotoSearchController {
 		primaryStage.show();
 	}
 	
+	/**
+	 * Opens the selected Photo at its full resolution in a new window.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void viewFullSize(ActionEvent e) {
+		Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+		if(selectedPhoto == null) {
+			errorNotice("No Photo Error", "There is no photo selected, so the action cannot be performed.");
+			return;
+		}
+		FullSizeView.show(getPrimaryStage(), selectedPhoto);
+	}
+	
 	/**
 	 * Template for error dialogs
 	 * @param errorTitle : Error Title
@@ -0,0 +1,114 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import model.Photo;
+import model.PhotoBitmap;
+import model.User;
+
+/**
+ * Background task that runs one search against a User's indexes and streams the matching Photos back in batches.
+ * The search first looks up the ids of the candidate Photos, then checks them a batch at a time and hands each batch
+ * of matches to the JavaFX application thread as soon as it has been checked, so the list fills while the rest is
+ * still being checked. Batches that arrive after the task was cancelled are dropped, so a superseded search never
+ * adds to the results of the search that replaced it.
+ * The User's lock is only held while the candidates are looked up and while each batch is checked, and the task
+ * stops at the next batch once it is cancelled, so a change to the User only has to wait for the batch in progress.
+ * The indexes must already have been built, so the task never changes the User.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoSearchTask extends Task<Integer> {
+
+	/**
+	 * Number of candidates checked, and at most the number of Photos handed to the JavaFX application thread, at a time.
+	 */
+	private static final int BATCH_SIZE = 200;
+
+	/**
+	 * User whose Photos are searched.
+	 */
+	private User user;
+	/**
+	 * Looks up the ids of the candidate Photos.
+	 */
+	private Function<User, PhotoBitmap> search;
+	/**
+	 * Checks whether a candidate matches.
+	 */
+	private Predicate<Photo> filter;
+	/**
+	 * Receives each batch of matching Photos on the JavaFX application thread.
+	 */
+	private Consumer<List<Photo>> results;
+
+	/**
+	 * Constructor for PhotoSearchTask.
+	 * @param user	User whose Photos are searched.
+	 * @param search	Looks up the ids of the candidate Photos.
+	 * @param filter	Checks whether a candidate matches.
+	 * @param results	Receives each batch of matching Photos on the JavaFX application thread.
+	 */
+	public PhotoSearchTask(User user, Function<User, PhotoBitmap> search, Predicate<Photo> filter, Consumer<List<Photo>> results) {
+		this.user = user;
+		this.search = search;
+		this.filter = filter;
+		this.results = results;
+	}
+
+	/**
+	 * Looks up the candidates, then checks them and streams the matching Photos back in batches.
+	 * @return	Number of matching Photos, or 0 if the task was cancelled.
+	 */
+	@Override
+	protected Integer call() {
+		int[] ids;
+		synchronized(user) {
+			if(isCancelled()) {
+				return 0;
+			}
+			// copy the ids, since the bitmap may belong to an index that changes once the lock is let go
+			PhotoBitmap candidates = search.apply(user);
+			ids = new int[candidates.cardinality()];
+			int[] count = {0};
+			candidates.forEach(id -> ids[count[0]++] = id);
+		}
+		int found = 0;
+		for(int start = 0; start < ids.length; start += BATCH_SIZE) {
+			List<Photo> batch = new ArrayList<Photo>();
+			synchronized(user) {
+				// check if a newer search replaced this one, before reading the User again
+				if(isCancelled()) {
+					return 0;
+				}
+				for(int i = start; i < Math.min(start + BATCH_SIZE, ids.length); i++) {
+					Photo photo = user.getPhoto(ids[i]);
+					if(photo != null && filter.test(photo)) {
+						batch.add(photo);
+					}
+				}
+			}
+			if(batch.isEmpty()) {
+				continue;
+			}
+			found += batch.size();
+			Platform.runLater(() -> {
+				// cancellation also happens on the JavaFX application thread, so this check cannot go stale
+				if(!isCancelled()) {
+					results.accept(batch);
+				}
+			});
+		}
+		return found;
+	}
+}
@@ -1,35 +1,45 @@
 package controller;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceDialog;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextInputDialog;
-import javafx.scene.image.Image;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.ImageView;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.text.Text;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
-import javafx.scene.control.ListCell;
 
 import app.Photos;
 import model.Admin;
 import model.Album;
 import model.Photo;
+import model.PhotoMetadata;
 import model.Tag;
 import model.User;
 
@@ -47,10 +57,26 @@ public class PhotoViewController {
 	 * List View that is used to show list of photos belonging to selected user and selected album.
 	 */
 	@FXML ListView<Photo> photoListView;
+	/**
+	 * List View that is used to show the photos as a grid of thumbnails, one row per item.
+	 */
+	@FXML ListView<Integer> photoGridView;
+	/**
+	 * Check Box used to switch between the list and the grid of photos.
+	 */
+	@FXML CheckBox gridToggle;
+	/**
+	 * Grid of thumbnails shown in photoGridView.
+	 */
+	PhotoGrid grid;
 	/**
 	 * Image View that is used to show the selected photo in the display area.
 	 */
 	@FXML ImageView photoDisplay;
+	/**
+	 * Tooltip of photoDisplay used to report the decoded size and memory of the displayed photo.
+	 */
+	Tooltip displayInfo = new Tooltip();
 	/**
 	 * Text box used to display photo caption.
 	 */
@@ -69,9 +95,9 @@ public class PhotoViewController {
 	@FXML ListView<Tag> photoTagsListView;
 	
 	/**
-	 * ObservableList used to populate photoListView and to keep track of new changes.
+	 * View of the Album's Photos used to populate photoListView and the grid, and to keep track of new changes.
 	 */
-	ObservableList<Photo> photos;
+	AlbumPhotoList photos;
 	/**
 	 * ObservableList used to populate tagTypeChoice and to keep track of new changes.
 	 */
@@ -154,35 +180,18 @@ public class PhotoViewController {
 		setUser(selectedUser);
 		setAlbum(selectedAlbum);
 		
-		// create an ObservableList 
-		// from an ArrayList 
-		ArrayList<Photo> savedPhotos = album.getPhotos();
-		
-		photos = FXCollections.observableArrayList(savedPhotos);
+		// show the Album's own list of photos rather than a copy
+		photos = new AlbumPhotoList(album.getPhotos());
 		
 		// set ListView to display Observable List
 		photoListView.setItems(photos);
 		
 		// Fill ListView Cells with Thumbnail and Caption
-		photoListView.setCellFactory(listView -> new ListCell<Photo>() {
-		    private ImageView imageView = new ImageView();
-
-		    @Override
-		    public void updateItem(Photo photo, boolean empty) {
-		        super.updateItem(photo, empty);
-		        if (empty) {
-		        	setText("");
-		            setGraphic(null);
-		        } else {
-		        	// set the caption of the photo
-		        	setText(photo.toString());
-		        	// set the image of the photo
-		            Image image = new Image("file:" + photo.getLocation(), 60, 60, true, true, true) ; 
-		            imageView.setImage(image);
-		            setGraphic(imageView);
-		        }
-		    }
-		});
+		photoListView.setCellFactory(listView -> new PhotoListCell());
+		
+		// clicking a thumbnail in the grid selects the photo as if it was clicked in the list
+		// the grid follows the same list, so its rows are updated in place as photos change
+		grid = new PhotoGrid(photoGridView, photos, index -> photoListView.getSelectionModel().select(index));
 		
 		// select the first item
 		photoListView.getSelectionModel().select(0);
@@ -205,6 +214,9 @@ public class PhotoViewController {
 		photoListView.setItems(photos);
 		
 		
+		// report the decoded size of the displayed photo when hovering over it
+		Tooltip.install(photoDisplay, displayInfo);
+		
 		// set listener for the items
 		photoListView
 		.getSelectionModel()
@@ -212,6 +224,86 @@ public class PhotoViewController {
 		.addListener(
 				(obs, oldVal, newVal) -> 
 				showItem(mainStage));
+		
+		// photos added before their size and orientation were read get them now
+		readMissingMetadata();
+	}
+	
+	/**
+	 * Reads the date, size and orientation of the photos in the Album that were added before they were read,
+	 * on a background thread, and records them once all of them have been read.
+	 */
+	private void readMissingMetadata() {
+		ArrayList<Photo> missing = new ArrayList<Photo>();
+		for(Photo photo : album.getPhotos()) {
+			if(photo.getWidth() == 0 && photo.getHeight() == 0) {
+				missing.add(photo);
+			}
+		}
+		if(missing.isEmpty()) {
+			return;
+		}
+		Task<List<PhotoMetadata>> reader = new Task<List<PhotoMetadata>>() {
+			@Override
+			protected List<PhotoMetadata> call() {
+				List<PhotoMetadata> read = new ArrayList<PhotoMetadata>();
+				for(Photo photo : missing) {
+					try {
+						read.add(PhotoMetadata.read(Paths.get(photo.getLocation())));
+					}
+					catch(IOException e) {
+						// the file was moved or deleted, so there is nothing to read
+						read.add(null);
+					}
+				}
+				return read;
+			}
+		};
+		reader.setOnSucceeded(event -> {
+			Set<Photo> changed = Collections.newSetFromMap(new IdentityHashMap<Photo, Boolean>());
+			for(int i = 0; i < missing.size(); i++) {
+				Photo photo = missing.get(i);
+				PhotoMetadata metadata = reader.getValue().get(i);
+				// check if the file said anything new and the photo was not removed in the meantime
+				if(metadata == null || !getUser().containsPhoto(photo)) {
+					continue;
+				}
+				long date = metadata.dateOf(photo);
+				if(date == photo.getDate() && metadata.getWidth() == 0 && metadata.getHeight() == 0 && metadata.getOrientation() == 0) {
+					continue;
+				}
+				getUser().setMetadata(photo, date, metadata.getWidth(), metadata.getHeight(), metadata.getOrientation());
+				changed.add(photo);
+			}
+			// redraw the photos that changed, which may now be turned upright
+			for(int i = 0; i < photos.size(); i++) {
+				if(changed.contains(photos.get(i))) {
+					photos.updated(i);
+				}
+			}
+			if(changed.contains(photoListView.getSelectionModel().getSelectedItem())) {
+				showItem(getPrimaryStage());
+			}
+		});
+		Thread thread = new Thread(reader, "photo-metadata");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Switches between showing the photos as a list and as a grid of thumbnails.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void toggleGrid(ActionEvent e) {
+		boolean showGrid = gridToggle.isSelected();
+		photoGridView.setVisible(showGrid);
+		photoListView.setVisible(!showGrid);
+		if(showGrid) {
+			grid.setSelectedIndex(photoListView.getSelectionModel().getSelectedIndex());
+		}
+		else {
+			photoListView.scrollTo(photoListView.getSelectionModel().getSelectedIndex());
+		}
 	}
 	
 	/**
@@ -230,16 +322,32 @@ public class PhotoViewController {
 		
 		// get reference to selected photo
 		Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+		// highlight the selected photo in the grid
+		if(photoGridView.isVisible()) {
+			grid.setSelectedIndex(photoListView.getSelectionModel().getSelectedIndex());
+		}
 		
-		// set the photo
-		Image image = new Image("file:" + selectedPhoto.getLocation(), true);
-		photoDisplay.setImage(image);
+		// set the photo once it has been decoded, unless another photo was selected in the meantime
+		photoDisplay.setImage(null);
+		// the photo is decoded at the size of the display area rather than its full resolution
+		ImagePrefetcher.getInstance().load(selectedPhoto, photoDisplay, image -> {
+			if(photoListView.getSelectionModel().getSelectedItem() == selectedPhoto) {
+				photoDisplay.setImage(image);
+				displayInfo.setText(image == null ? "Photo could not be read" : String.format(
+						"%d x %d shown, %.1f MB decoded (%.1f MB of decoded photos in memory)",
+						(int)image.getWidth(), (int)image.getHeight(),
+						ImagePrefetcher.bytes(image) / (1024.0 * 1024.0),
+						ImagePrefetcher.getInstance().getUsedBytes() / (1024.0 * 1024.0)));
+			}
+		});
+		// decode the neighbouring photos ahead of time for previous/next
+		ImagePrefetcher.getInstance().prefetch(photos, photoListView.getSelectionModel().getSelectedIndex(), photoDisplay);
 		
 		// set the caption
 		caption.setText(selectedPhoto.getCaption());
 		
 		// set the date
-		date.setText(selectedPhoto.getDate().getTime().toString());
+		date.setText(Photo.DATE_FORMAT.format(selectedPhoto.getDateTime()));
 		
 		//set the tags
 		ArrayList<Tag> savedPhotoTags = selectedPhoto.getTags();
@@ -258,45 +366,146 @@ public class PhotoViewController {
 		fileChooser.getExtensionFilters().addAll(
 		        new ExtensionFilter("Image Files", "*.png", "*.jpg", "*.gif", "*.jpeg"));
 		File selectedFile = fileChooser.showOpenDialog(getPrimaryStage());
-		if (selectedFile != null) {
-			ArrayList<Photo> existingPhotos = getAlbum().getPhotos();
-			String imageLocation = selectedFile.getAbsolutePath();
-			// check if photo already exists
-			for(int i = 0; i < existingPhotos.size(); i++) {
-				if(imageLocation.toLowerCase().equals(existingPhotos.get(i).getLocation().toLowerCase())) {
-					errorNotice("Existing Photo Error", "A photo with the same file path already exists.");
-					return;
-				}
+		if (selectedFile == null) {
+			return;
+		}
+		
+		// hash the contents so the same image saved under another name is recognized,
+		// reading the file on a background thread so a large photo does not freeze the window
+		Task<Photo> reader = new Task<Photo>() {
+			@Override
+			protected Photo call() throws Exception {
+				return PhotoImporter.readPhoto(selectedFile.toPath());
 			}
-			
-			Photo newPhoto = null; // Reference to new Photo to be added
-			// go through all of User's Album objects and Photo objects to see if Photo already exists
-			ArrayList<Album> userAlbums = getUser().getAlbums();
-			for(Album album : userAlbums) {
-				ArrayList<Photo> albumPhotos = album.getPhotos();
-				
-				for(Photo photo : albumPhotos) {
-					if(imageLocation.equals(photo.getLocation())) {
-						newPhoto = photo;
-						break;
-					}
-				}
+		};
+		reader.setOnSucceeded(event -> addReadPhoto(reader.getValue()));
+		reader.setOnFailed(event -> errorNotice("Unreadable Photo Error", "The photo could not be read: " + reader.getException().getMessage()));
+		Thread thread = new Thread(reader, "photo-reader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Adds a Photo that was read from its file to the Album, reusing the Photo the User already has for the same file or image.
+	 * @param readPhoto	Photo built from the file, with its hash and metadata.
+	 */
+	private void addReadPhoto(Photo readPhoto) {
+		String imageLocation = readPhoto.getLocation();
+		String hash = readPhoto.getHash();
+		// look up the Photo if the User already has one at the same file path
+		Photo newPhoto = getUser().findPhoto(imageLocation);
+		// check if photo already exists in this album
+		if(newPhoto != null && getAlbum().containsPhoto(newPhoto)) {
+			errorNotice("Existing Photo Error", "A photo with the same file path already exists.");
+			return;
+		}
+		
+		if(newPhoto == null) {
+			// check if the User already has the same image under another name
+			Photo existingPhoto = getUser().findPhotoByHash(hash);
+			if(existingPhoto != null && getAlbum().containsPhoto(existingPhoto)) {
+				errorNotice("Existing Photo Error", "This photo already exists in this album as " + existingPhoto.getLocation() + ".");
+				return;
 			}
-			
-			if(newPhoto == null) {
-				newPhoto = new Photo(imageLocation);
+			if(existingPhoto != null) {
+				// reuse the existing Photo so its caption and tags are shared and it is only stored once
+				newPhoto = existingPhoto;
+				Alert reused = new Alert(AlertType.INFORMATION);
+				reused.initOwner(primaryStage);
+				reused.setTitle("Add Photo");
+				reused.setHeaderText("This photo already exists as " + existingPhoto.getLocation());
+				reused.setContentText("The existing photo was added to this album with its caption and tags.");
+				reused.show();
+			}
+			else {
+				newPhoto = readPhoto;
 			}
-			album.addPhoto(newPhoto);
-			photos.add(newPhoto);
 		}
-		else {
-			return;
+		else if(newPhoto.getHash() == null) {
+			// the Photo was saved before photos were hashed
+			getUser().setHash(newPhoto, hash);
 		}
+		getUser().addPhoto(album, newPhoto);
+		photos.added(photos.size()-1, photos.size());
 		
 		// select the inserted item
-		if(photos.size() != 0) {
-			photoListView.getSelectionModel().select(photos.size()-1);
+		photoListView.getSelectionModel().select(photos.size()-1);
+	}
+	
+	/**
+	 * Imports every image below a directory into the Album.
+	 * The directory is read on a background thread while a dialog shows the progress,
+	 * and the Photos are added to the Album in one step once all of them have been read.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void importFolder(ActionEvent e) {
+		DirectoryChooser directoryChooser = new DirectoryChooser();
+		directoryChooser.setTitle("Import Folder");
+		File selectedDirectory = directoryChooser.showDialog(getPrimaryStage());
+		if(selectedDirectory == null) {
+			return;
 		}
+		
+		PhotoImporter importer = new PhotoImporter(selectedDirectory.toPath());
+		
+		// show the progress of the import in a dialog that can cancel it
+		ProgressBar progressBar = new ProgressBar();
+		progressBar.setPrefWidth(300);
+		progressBar.progressProperty().bind(importer.progressProperty());
+		Alert progress = new Alert(AlertType.NONE, "", ButtonType.CANCEL);
+		progress.initOwner(primaryStage);
+		progress.setTitle("Import Folder");
+		progress.setHeaderText("Importing " + selectedDirectory.getAbsolutePath());
+		progress.setGraphic(progressBar);
+		progress.contentTextProperty().bind(importer.messageProperty());
+		progress.setOnHidden(event -> importer.cancel());
+		
+		importer.setOnSucceeded(event -> {
+			progress.close();
+			// reuse Photos the User already has and leave out those already in this Album
+			ArrayList<Photo> newPhotos = new ArrayList<Photo>();
+			int reused = 0;
+			for(Photo photo : importer.getValue()) {
+				Photo existingPhoto = getUser().findPhoto(photo.getLocation());
+				if(existingPhoto != null && existingPhoto.getHash() == null) {
+					// the Photo was saved before photos were hashed
+					getUser().setHash(existingPhoto, photo.getHash());
+				}
+				if(existingPhoto == null) {
+					// check if the User already has the same image under another name
+					existingPhoto = getUser().findPhotoByHash(photo.getHash());
+					if(existingPhoto != null) {
+						reused++;
+					}
+				}
+				if(existingPhoto == null) {
+					newPhotos.add(photo);
+				}
+				else if(!album.containsPhoto(existingPhoto)) {
+					newPhotos.add(existingPhoto);
+				}
+			}
+			int start = photos.size();
+			getUser().addPhotos(album, newPhotos);
+			photos.added(start, photos.size());
+			
+			Alert done = new Alert(AlertType.INFORMATION);
+			done.initOwner(primaryStage);
+			done.setTitle("Import Folder");
+			done.setHeaderText("Imported " + newPhotos.size() + " photos");
+			done.setContentText(importer.getSkipped() + " copies of other photos in the folder were skipped.\n"
+					+ reused + " photos already existed under another name, so the existing photos were used instead.");
+			done.show();
+		});
+		importer.setOnFailed(event -> {
+			progress.close();
+			errorNotice("Import Error", "The folder could not be imported: " + importer.getException().getMessage());
+		});
+		
+		Thread thread = new Thread(importer, "photo-import");
+		thread.setDaemon(true);
+		thread.start();
+		progress.show();
 	}
 	
 	/**
@@ -318,8 +527,9 @@ public class PhotoViewController {
 		}
 		
 		// remove selected Photo
-		album.removePhoto(index);
-		photos.remove(index);
+		getUser().removePhoto(album, index);
+		photos.removed(index, selectedPhoto);
+		ThumbnailCache.getInstance().prune(getUser(), Collections.singletonList(selectedPhoto));
 		
 		// select the next item
 		if(photos.size() != 0) {
@@ -368,19 +578,17 @@ public class PhotoViewController {
 			Photo photoToMove = photoListView.getSelectionModel().getSelectedItem(); // Photo to move
 			Album albumToMove = result.get(); // New Album to move Photo to
 			// ensure Photo doesn't already exist
-			for(Photo photoPTR : albumToMove.getPhotos()) {
-				if(photoToMove == photoPTR) {
-					errorNotice("Photo Already Exists", "The Album already contains this Photo");
-					return;
-				}
+			if(albumToMove.containsPhoto(photoToMove)) {
+				errorNotice("Photo Already Exists", "The Album already contains this Photo");
+				return;
 			}
 			
 			int photoIndex = photoListView.getSelectionModel().getSelectedIndex();
-			// Remove Photo from current Album
-			album.removePhoto(photoIndex);
-			photos.remove(photoIndex);
 			// Add Photo to new Album
-			albumToMove.addPhoto(photoToMove);
+			getUser().addPhoto(albumToMove, photoToMove);
+			// Remove Photo from current Album
+			getUser().removePhoto(album, photoIndex);
+			photos.removed(photoIndex, photoToMove);
 		}
 	}
 	
@@ -400,15 +608,13 @@ public class PhotoViewController {
 			Photo photoToMove = photoListView.getSelectionModel().getSelectedItem(); // Photo to copy
 			Album albumToMove = result.get(); // New Album to copy Photo to
 			// ensure Photo doesn't already exist
-			for(Photo photoPTR : albumToMove.getPhotos()) {
-				if(photoToMove == photoPTR) {
-					errorNotice("Photo Already Exists", "The Album already contains this Photo");
-					return;
-				}
+			if(albumToMove.containsPhoto(photoToMove)) {
+				errorNotice("Photo Already Exists", "The Album already contains this Photo");
+				return;
 			}
 			
 			// Add Photo to new Album
-			albumToMove.addPhoto(photoToMove);
+			getUser().addPhoto(albumToMove, photoToMove);
 		}
 	}
 	
@@ -425,6 +631,8 @@ public class PhotoViewController {
 		dialog.initOwner(primaryStage);
 		dialog.setTitle("Add Tag");
 		dialog.setContentText("Enter the new Tag for type " + tagTypeChoice.getValue() + ": ");
+		// suggest values already used with this tag type while typing
+		new TagValueCompleter(dialog.getEditor(), tagTypeChoice::getValue, getUser());
 
 		// get Photo object of selected Photo
 		Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
@@ -432,17 +640,15 @@ public class PhotoViewController {
 		Optional<String> result = dialog.showAndWait();
 		if (result.isPresent() && !result.get().trim().equals("")) {
 			String newTagValue = result.get().trim(); // New Tag Value
-			ArrayList<Tag> existingTags = selectedPhoto.getTags();
+			Tag newTag = new Tag(tagTypeChoice.getValue(), newTagValue);
+			getUser().getTagDictionary().intern(newTag);
 			// check if tag already exists
-			for(int i = 0; i < existingTags.size(); i++) {
-				if(tagTypeChoice.getValue().equals(existingTags.get(i).getTagType()) && newTagValue.toLowerCase().equals(existingTags.get(i).getTagValue().toLowerCase())) {
-					errorNotice("Existing Tag Error", "A tag with the same type and value already exists.");
-					return;
-				}
+			if(selectedPhoto.hasTag(newTag)) {
+				errorNotice("Existing Tag Error", "A tag with the same type and value already exists.");
+				return;
 			}
 			
-			Tag newTag = new Tag(tagTypeChoice.getValue(), newTagValue);
-			selectedPhoto.getTags().add(newTag);
+			getUser().addTag(selectedPhoto, newTag);
 			photoTags.add(newTag);
 		}
 		else {
@@ -476,7 +682,7 @@ public class PhotoViewController {
 		}
 		
 		// remove selected Tag
-		selectedPhoto.getTags().remove(index);
+		getUser().removeTag(selectedPhoto, index);
 		photoTags.remove(index);
 		
 		// select the next item
@@ -499,16 +705,13 @@ public class PhotoViewController {
 		Optional<String> result = dialog.showAndWait();
 		if (result.isPresent() && !result.get().trim().equals("")) {
 			String newTagName = result.get().trim();
-			ArrayList<String> existingTagTypes = getUser().getTagTypes();
 			// check if tag type already exists
-			for(int i = 0; i < existingTagTypes.size(); i++) {
-				if(newTagName.toLowerCase().equals(existingTagTypes.get(i).toLowerCase())) {
-					errorNotice("Existing Tag Type Error", "A tag type with the same name already exists.");
-					return;
-				}
+			if(getUser().hasTagType(newTagName)) {
+				errorNotice("Existing Tag Type Error", "A tag type with the same name already exists.");
+				return;
 			}
 			
-			getUser().getTagTypes().add(newTagName);
+			getUser().addTagType(newTagName);
 			tagTypes.add(newTagName);
 		}
 	}
@@ -532,15 +735,14 @@ public class PhotoViewController {
 		String temp = cap.get();
 		String test = temp.trim(); // gets rid of blanks
 		if (test.length() == 0) { // this means the user inserted blanks!
-			snap.setCaption("No Caption");
+			getUser().setCaption(snap, "No Caption");
 		}
 		else {
-			snap.setCaption(cap.get());
+			getUser().setCaption(snap, cap.get());
 		}
 		
-		photos.get(index).setCaption(snap.getCaption());
-		photos.remove(index);
-		photos.add(index, snap);
+		// redraw the photo's cells with its new caption
+		photos.updated(index);
 		photoListView.getSelectionModel().select(index);
 		showItem(getPrimaryStage());
 	}
@@ -593,12 +795,12 @@ public class PhotoViewController {
 	}
 	
 	/**
-	 * Saves all changes made and returns User to Login.fxml View.
+	 * Saves all changes made, closes the User's journal and returns User to Login.fxml View.
 	 * @param e	Reference to ActionEvent
 	 * @throws Exception	Used to throw Exception from FXMLLoader.
 	 */
 	public void logout(ActionEvent e) throws Exception {
-		getUser().writeUser();
+		getUser().close();
 		
 		FXMLLoader loader = new FXMLLoader();   
 		loader.setLocation( getClass().getResource("/view/Login.fxml"));
@@ -612,6 +814,19 @@ public class PhotoViewController {
 		primaryStage.show();
 	}
 	
+	/**
+	 * Opens the selected Photo at its full resolution in a new window.
+	 * @param e	Reference to ActionEvent
+	 */
+	public void viewFullSize(ActionEvent e) {
+		Photo selectedPhoto = photoListView.getSelectionModel().getSelectedItem();
+		if(selectedPhoto == null) {
+			errorNotice("No Photo Error", "There is no photo selected, so the action cannot be performed.");
+			return;
+		}
+		FullSizeView.show(getPrimaryStage(), selectedPhoto);
+	}
+	
 	/**
 	 * Template for error dialogs
 	 * @param errorTitle : Error Title
@@ -0,0 +1,105 @@
+package controller;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+
+import model.User;
+
+/**
+ * Suggests tag values while one is typed into a TextField.
+ * Suggestions come from the values already used with the selected tag type, most used first,
+ * and are shown in a ContextMenu below the field. Picking one fills in the field.
+ * Values are only suggested once the User's indexes have been built, for example by a search,
+ * since building them reads every Album and typing should never wait for that.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class TagValueCompleter {
+
+	/**
+	 * Maximum number of suggestions shown at a time.
+	 */
+	private static final int LIMIT = 8;
+
+	/**
+	 * TextField that the tag value is typed into.
+	 */
+	private TextField field;
+	/**
+	 * Returns the selected tag type, or null if none is selected.
+	 */
+	private Supplier<String> tagType;
+	/**
+	 * User whose tag values are suggested.
+	 */
+	private User user;
+	/**
+	 * Menu listing the suggestions.
+	 */
+	private ContextMenu menu;
+
+	/**
+	 * Constructor for TagValueCompleter, which starts suggesting values as soon as the field changes.
+	 * @param field	TextField that the tag value is typed into.
+	 * @param tagType	Returns the selected tag type, or null if none is selected.
+	 * @param user	User whose tag values are suggested.
+	 */
+	public TagValueCompleter(TextField field, Supplier<String> tagType, User user) {
+		this.field = field;
+		this.tagType = tagType;
+		this.user = user;
+		this.menu = new ContextMenu();
+
+		field.textProperty().addListener((obs, oldVal, newVal) -> suggest());
+		field.focusedProperty().addListener((obs, oldVal, newVal) -> {
+			if(!newVal) {
+				menu.hide();
+			}
+		});
+	}
+
+	/**
+	 * Shows the most used values that start with the text in the field, or hides the menu if there are none.
+	 */
+	public void suggest() {
+		String type = tagType.get();
+		String text = field.getText();
+		// check if there is anything to complete
+		if(type == null || text == null || text.trim().length() == 0 || !field.isFocused() || !user.isIndexed()) {
+			menu.hide();
+			return;
+		}
+
+		List<String> values;
+		// a live search may be reading the User's indexes on the search thread
+		synchronized(user) {
+			values = user.getTagIndex().complete(type, text, LIMIT);
+		}
+		// check if the only suggestion is what was already typed
+		if(values.isEmpty() || (values.size() == 1 && values.get(0).equalsIgnoreCase(text.trim()))) {
+			menu.hide();
+			return;
+		}
+
+		menu.getItems().clear();
+		for(String value : values) {
+			MenuItem item = new MenuItem(value);
+			item.setOnAction(event -> {
+				field.setText(value);
+				field.positionCaret(value.length());
+			});
+			menu.getItems().add(item);
+		}
+		if(!menu.isShowing()) {
+			menu.show(field, Side.BOTTOM, 0, 0);
+		}
+	}
+}
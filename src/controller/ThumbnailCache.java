@@ -0,0 +1,610 @@
+package controller;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+import model.Admin;
+import model.Photo;
+import model.User;
+
+/**
+ * Decodes the thumbnails shown in photo lists once and keeps them for later use.
+ * Recently used thumbnails are kept in memory, and every thumbnail is also saved under session/thumbnails
+ * together with the last modified time of its Photo, so a thumbnail is only decoded again when the Photo changes.
+ * Thumbnails in memory are served without looking at the Photo, so scrolling never touches the original files.
+ * Instead a thumbnail in memory is dropped when a background thread that reads the Photo anyway, such as a
+ * prewarm or the decode of the full size image, finds that the Photo has changed since the thumbnail was made.
+ * Saved thumbnails are compressed and spread over subdirectories named after the first two characters of their name,
+ * so no directory grows to hold the whole library, and the thumbnail of a Photo that leaves the library is deleted.
+ * All decoding and disk access happens on background threads.
+ * A request can be cancelled while it waits, and a thumbnail nobody is waiting for any more is taken off the queue,
+ * so cells that are scrolled past do not hold up the ones that are visible.
+ * Waiting thumbnails are loaded newest request first: after a fast scroll the cells now on screen asked last,
+ * so they are served before any older request that has not been cancelled yet.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class ThumbnailCache {
+
+	/**
+	 * Width and height that thumbnails are decoded to fit in.
+	 */
+	public static final int SIZE = 60;
+	/**
+	 * Maximum number of thumbnails kept in memory.
+	 */
+	private static final int MAX_ENTRIES = 500;
+	/**
+	 * Number written at the start of every saved thumbnail, changed whenever the format of saved thumbnails changes.
+	 */
+	private static final int FORMAT = 0x54484d32;
+	/**
+	 * Length of the header of a saved thumbnail: the format, the last modified time of the Photo, the width and the height.
+	 */
+	private static final int HEADER = 20;
+	/**
+	 * Directory that thumbnails are saved in.
+	 */
+	private static final Path storeDir = Paths.get(Admin.storeDir, "thumbnails");
+	/**
+	 * The ThumbnailCache shared by all Controllers and by the import and duplicate scan threads.
+	 */
+	private static final ThumbnailCache instance = new ThumbnailCache();
+
+	/**
+	 * Recently used thumbnails, keyed by Photo location, with the least recently used first.
+	 * Only accessed on the JavaFX application thread.
+	 */
+	private LinkedHashMap<String, Thumbnail> thumbnails;
+	/**
+	 * Thumbnails that are being loaded, keyed by Photo location.
+	 * Only accessed on the JavaFX application thread.
+	 */
+	private HashMap<String, Job> pending;
+	/**
+	 * Thumbnails waiting to be loaded, the most recently requested first.
+	 */
+	private PriorityBlockingQueue<Runnable> queue;
+	/**
+	 * Threads that load thumbnails from the queue.
+	 */
+	private ThreadPoolExecutor executor;
+	/**
+	 * Number given to the next Job that is requested, so newer requests can be served first.
+	 * Only accessed on the JavaFX application thread.
+	 */
+	private long nextOrder;
+
+	/**
+	 * A thumbnail kept in memory, with the last modified time of the Photo it was made from.
+	 */
+	private static class Thumbnail {
+		/**
+		 * The thumbnail.
+		 */
+		Image image;
+		/**
+		 * Last modified time of the Photo when the thumbnail was made.
+		 */
+		long lastModified;
+
+		/**
+		 * Constructor for Thumbnail.
+		 * @param image	The thumbnail.
+		 * @param lastModified	Last modified time of the Photo when the thumbnail was made.
+		 */
+		Thumbnail(Image image, long lastModified) {
+			this.image = image;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * A thumbnail waiting to be loaded or being loaded for one or more Requests.
+	 */
+	private class Job implements Runnable, Comparable<Job> {
+		/**
+		 * Location of the Photo.
+		 */
+		String location;
+		/**
+		 * Requests still waiting for the thumbnail. Only accessed on the JavaFX application thread.
+		 */
+		ArrayList<Request> requests = new ArrayList<Request>();
+		/**
+		 * Number of the latest Request for the thumbnail; the highest number is loaded first.
+		 * Only changed while the Job is not in the queue.
+		 */
+		volatile long order;
+		/**
+		 * True once every Request has been cancelled, so the thumbnail does not have to be loaded.
+		 */
+		volatile boolean cancelled;
+
+		/**
+		 * Constructor for Job.
+		 * @param location	Location of the Photo.
+		 */
+		Job(String location) {
+			this.location = location;
+		}
+
+		/**
+		 * Loads the thumbnail on a background thread and passes it to the Requests still waiting for it.
+		 */
+		@Override
+		public void run() {
+			// check if every Request was cancelled after the Job was taken off the queue
+			if(cancelled) {
+				return;
+			}
+			long lastModified = new File(location).lastModified();
+			Image loaded = loadThumbnail(location, lastModified);
+			Platform.runLater(() -> {
+				if(loaded != null) {
+					thumbnails.put(location, new Thumbnail(loaded, lastModified));
+				}
+				if(pending.get(location) == this) {
+					pending.remove(location);
+				}
+				for(Request request : requests) {
+					request.done = true;
+					request.callback.accept(loaded);
+				}
+				requests.clear();
+			});
+		}
+
+		/**
+		 * Orders Jobs so the most recently requested is taken off the queue first.
+		 * @param other	Job to compare with.
+		 * @return	Negative if this Job was requested more recently than the other.
+		 */
+		@Override
+		public int compareTo(Job other) {
+			return Long.compare(other.order, order);
+		}
+	}
+
+	/**
+	 * A request for the thumbnail of a Photo, which can be cancelled until the thumbnail is passed to its callback.
+	 */
+	public class Request {
+		/**
+		 * Location of the Photo.
+		 */
+		private String location;
+		/**
+		 * Called with the thumbnail.
+		 */
+		private Consumer<Image> callback;
+		/**
+		 * True once the callback has been called or the Request has been cancelled.
+		 */
+		private boolean done;
+
+		/**
+		 * Constructor for Request.
+		 * @param location	Location of the Photo.
+		 * @param callback	Called with the thumbnail.
+		 */
+		private Request(String location, Consumer<Image> callback) {
+			this.location = location;
+			this.callback = callback;
+		}
+
+		/**
+		 * Cancels the Request, so its callback is not called.
+		 * Does nothing if the callback has already been called.
+		 * Must be called on the JavaFX application thread.
+		 */
+		public void cancel() {
+			if(done) {
+				return;
+			}
+			done = true;
+			Job job = pending.get(location);
+			if(job == null) {
+				return;
+			}
+			job.requests.remove(this);
+			// drop the load if nobody else is waiting for it
+			if(job.requests.isEmpty()) {
+				job.cancelled = true;
+				pending.remove(location);
+				queue.remove(job);
+			}
+		}
+	}
+
+	/**
+	 * Constructor for ThumbnailCache.
+	 */
+	private ThumbnailCache() {
+		thumbnails = new LinkedHashMap<String, Thumbnail>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Thumbnail> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		};
+		pending = new HashMap<String, Job>();
+		queue = new PriorityBlockingQueue<Runnable>();
+		// Jobs are handed to execute directly so the queue can compare them
+		executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+			Thread thread = new Thread(runnable, "thumbnail-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the ThumbnailCache shared by all Controllers.
+	 * @return	The ThumbnailCache.
+	 */
+	public static ThumbnailCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Passes the thumbnail of the Photo to the callback.
+	 * If the thumbnail is in memory the callback is called right away, otherwise it is called
+	 * on the JavaFX application thread once the thumbnail has been loaded, unless the Request is cancelled first.
+	 * Must be called on the JavaFX application thread.
+	 * @param photo	Photo whose thumbnail is needed.
+	 * @param callback	Called with the thumbnail, or with null if the Photo could not be read.
+	 * @return	The Request, which can be cancelled when the thumbnail is no longer needed.
+	 */
+	public Request load(Photo photo, Consumer<Image> callback) {
+		String location = photo.getLocation();
+		Request request = new Request(location, callback);
+		Thumbnail thumbnail = thumbnails.get(location);
+		if(thumbnail != null) {
+			request.done = true;
+			callback.accept(thumbnail.image);
+			return request;
+		}
+		Job job = pending.get(location);
+		if(job == null) {
+			job = new Job(location);
+			job.order = nextOrder++;
+			pending.put(location, job);
+			executor.execute(job);
+		}
+		// check if the Job is still waiting, and move it to the front of the queue if so
+		else if(queue.remove(job)) {
+			job.order = nextOrder++;
+			queue.add(job);
+		}
+		job.requests.add(request);
+		return request;
+	}
+
+	/**
+	 * Makes sure an up to date thumbnail of the Photo at the given location is saved on the disk.
+	 * Runs on the calling thread, so it is meant for background threads such as those of an import or a duplicate scan.
+	 * @param location	Location of the Photo on the disk.
+	 * @return	The thumbnail, or null if the Photo could not be read.
+	 */
+	public Image prewarm(String location) {
+		long lastModified = new File(location).lastModified();
+		Image thumbnail = loadThumbnail(location, lastModified);
+		if(thumbnail != null) {
+			Platform.runLater(() -> replaceIfChanged(location, new Thumbnail(thumbnail, lastModified)));
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Drops the thumbnail of the Photo at the given location from memory if the Photo has changed since it was made,
+	 * so the next request loads a new one.
+	 * Reads the last modified time of the Photo on the calling thread, so it is meant for background threads
+	 * that are reading the Photo anyway, such as those decoding it at full size.
+	 * @param location	Location of the Photo on the disk.
+	 */
+	public void checkModified(String location) {
+		long lastModified = new File(location).lastModified();
+		Platform.runLater(() -> replaceIfChanged(location, new Thumbnail(null, lastModified)));
+	}
+
+	/**
+	 * Replaces the thumbnail in memory if it was made from an older version of the Photo.
+	 * Runs on the JavaFX application thread.
+	 * @param location	Location of the Photo on the disk.
+	 * @param current	Thumbnail of the Photo as it is now, or one without an image to only drop the old one.
+	 */
+	private void replaceIfChanged(String location, Thumbnail current) {
+		Thumbnail thumbnail = thumbnails.get(location);
+		// check if the thumbnail in memory is out of date
+		if(thumbnail == null || thumbnail.lastModified == current.lastModified) {
+			return;
+		}
+		if(current.image != null) {
+			thumbnails.put(location, current);
+		}
+		else {
+			thumbnails.remove(location);
+		}
+	}
+
+	/**
+	 * Forgets the thumbnail of the Photo at the given location, in memory and on the disk.
+	 * Called once a Photo has left the library, so thumbnails of removed Photos do not pile up.
+	 * Must be called on the JavaFX application thread.
+	 * @param location	Location of the Photo on the disk.
+	 */
+	public void remove(String location) {
+		thumbnails.remove(location);
+		try {
+			Files.deleteIfExists(stored(location));
+		}
+		catch(IOException e) {
+			// the thumbnail is only taking up space, so it can be left behind
+		}
+	}
+
+	/**
+	 * Forgets the thumbnails of the given Photos that are no longer in any of the User's Albums.
+	 * Must be called on the JavaFX application thread, after the Photos have been removed from the User.
+	 * @param user	User the Photos were removed from.
+	 * @param removed	Photos that were removed from one or more Albums.
+	 */
+	public void prune(User user, Collection<Photo> removed) {
+		for(Photo photo : removed) {
+			// check if another Album of the User still shows the Photo
+			if(!user.containsPhoto(photo)) {
+				remove(photo.getLocation());
+			}
+		}
+	}
+
+	/**
+	 * Loads the thumbnail from the disk if it is still up to date, otherwise decodes it from the Photo and saves it.
+	 * Runs on a background thread.
+	 * @param location	Location of the Photo on the disk.
+	 * @param lastModified	Current last modified time of the Photo.
+	 * @return	The thumbnail, or null if the Photo could not be read.
+	 */
+	private Image loadThumbnail(String location, long lastModified) {
+		Path stored = stored(location);
+		try {
+			Image thumbnail = readThumbnail(stored, lastModified);
+			if(thumbnail != null) {
+				return thumbnail;
+			}
+		}
+		catch(IOException e) {
+			// the saved thumbnail is unreadable, so decode it again
+		}
+
+		Image thumbnail = new Image("file:" + location, SIZE, SIZE, true, true, false);
+		if(thumbnail.isError()) {
+			return null;
+		}
+		try {
+			writeThumbnail(stored, lastModified, thumbnail);
+		}
+		catch(IOException e) {
+			// the thumbnail is still usable for this session
+		}
+		return thumbnail;
+	}
+
+	/**
+	 * Reads a saved thumbnail.
+	 * @param stored	Location of the saved thumbnail.
+	 * @param lastModified	Current last modified time of the Photo.
+	 * @return	The thumbnail, or null if there is none or the Photo has changed since it was saved.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static Image readThumbnail(Path stored, long lastModified) throws IOException {
+		if(!Files.exists(stored)) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(stored));
+		if(buffer.remaining() < HEADER || buffer.getInt() != FORMAT || buffer.getLong() != lastModified) {
+			return null;
+		}
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		if(width <= 0 || height <= 0 || width > SIZE || height > SIZE) {
+			return null;
+		}
+		byte[] pixels = new byte[width * height * 4];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(buffer.array(), buffer.position(), buffer.remaining());
+			int read = 0;
+			while(read < pixels.length && !inflater.finished()) {
+				int count = inflater.inflate(pixels, read, pixels.length - read);
+				// check if the saved thumbnail was cut short
+				if(count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					return null;
+				}
+				read += count;
+			}
+			if(read != pixels.length) {
+				return null;
+			}
+		}
+		catch(DataFormatException e) {
+			throw new IOException(e);
+		}
+		finally {
+			inflater.end();
+		}
+		unfilter(pixels, width * 4);
+		WritableImage thumbnail = new WritableImage(width, height);
+		thumbnail.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), pixels, 0, width * 4);
+		return thumbnail;
+	}
+
+	/**
+	 * Saves a thumbnail as its size and compressed pixels, preceded by the last modified time of its Photo.
+	 * Every byte is stored as its difference from the prediction of the Paeth filter used by PNG, which leaves
+	 * mostly small numbers for the neighbouring pixels of a photo that compress far better than the pixels themselves.
+	 * @param stored	Location of the saved thumbnail.
+	 * @param lastModified	Last modified time of the Photo.
+	 * @param thumbnail	The thumbnail to be saved.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static void writeThumbnail(Path stored, long lastModified, Image thumbnail) throws IOException {
+		int width = (int)thumbnail.getWidth();
+		int height = (int)thumbnail.getHeight();
+		PixelReader reader = thumbnail.getPixelReader();
+		if(reader == null) {
+			return;
+		}
+		byte[] pixels = new byte[width * height * 4];
+		reader.getPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), pixels, 0, width * 4);
+		filter(pixels, width * 4);
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + pixels.length + 64);
+		buffer.putInt(FORMAT);
+		buffer.putLong(lastModified);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try {
+			deflater.setInput(pixels);
+			deflater.finish();
+			while(!deflater.finished()) {
+				// check if the pixels did not compress, and make room for all of them
+				if(!buffer.hasRemaining()) {
+					ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+					buffer.flip();
+					larger.put(buffer);
+					buffer = larger;
+				}
+				int count = deflater.deflate(buffer.array(), buffer.position(), buffer.remaining());
+				buffer.position(buffer.position() + count);
+			}
+		}
+		finally {
+			deflater.end();
+		}
+		buffer.flip();
+
+		Files.createDirectories(stored.getParent());
+		// every writer gets its own temporary file, since a prewarm and a loader thread may save the same thumbnail at once
+		Path temp = Files.createTempFile(stored.getParent(), stored.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+			Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Replaces every byte of the pixels, last to first, with its difference from the Paeth prediction.
+	 * @param pixels	BGRA pixels of the thumbnail, row after row.
+	 * @param stride	Number of bytes in a row.
+	 */
+	private static void filter(byte[] pixels, int stride) {
+		for(int i = pixels.length - 1; i >= 0; i--) {
+			pixels[i] -= predict(pixels, stride, i);
+		}
+	}
+
+	/**
+	 * Turns filtered pixels back into the original pixels, first to last, undoing filter.
+	 * @param pixels	Filtered BGRA pixels of the thumbnail, row after row.
+	 * @param stride	Number of bytes in a row.
+	 */
+	private static void unfilter(byte[] pixels, int stride) {
+		for(int i = 0; i < pixels.length; i++) {
+			pixels[i] += predict(pixels, stride, i);
+		}
+	}
+
+	/**
+	 * Predicts a byte of the pixels from the same byte of the pixels to its left, above it and above to its left,
+	 * which must already hold their original values.
+	 * @param pixels	BGRA pixels of the thumbnail, row after row.
+	 * @param stride	Number of bytes in a row.
+	 * @param i	Index of the byte.
+	 * @return	The prediction.
+	 */
+	private static int predict(byte[] pixels, int stride, int i) {
+		boolean hasLeft = i % stride >= 4;
+		boolean hasUp = i >= stride;
+		int left = hasLeft ? pixels[i - 4] & 0xff : 0;
+		int up = hasUp ? pixels[i - stride] & 0xff : 0;
+		int upLeft = hasLeft && hasUp ? pixels[i - stride - 4] & 0xff : 0;
+		int estimate = left + up - upLeft;
+		int toLeft = Math.abs(estimate - left);
+		int toUp = Math.abs(estimate - up);
+		int toUpLeft = Math.abs(estimate - upLeft);
+		if(toLeft <= toUp && toLeft <= toUpLeft) {
+			return left;
+		}
+		return toUp <= toUpLeft ? up : upLeft;
+	}
+
+	/**
+	 * Returns where the thumbnail of the Photo at the given location is saved.
+	 * @param location	Location of the Photo on the disk.
+	 * @return	The file in the subdirectory named after the first two characters of the name of the thumbnail.
+	 */
+	private static Path stored(String location) {
+		String name = hash(location);
+		return storeDir.resolve(name.substring(0, 2)).resolve(name);
+	}
+
+	/**
+	 * Returns the name that the thumbnail of the Photo at the given location is saved under.
+	 * @param location	Location of the Photo on the disk.
+	 * @return	Hex encoded SHA-1 hash of the location.
+	 */
+	private static String hash(String location) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(location.getBytes("UTF-8"));
+			StringBuilder name = new StringBuilder();
+			for(byte b : digest) {
+				name.append(String.format("%02x", b));
+			}
+			return name.toString();
+		}
+		catch(NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			// every Java platform is required to support SHA-1 and UTF-8
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
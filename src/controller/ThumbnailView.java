@@ -0,0 +1,64 @@
+package controller;
+
+import javafx.scene.image.ImageView;
+
+import model.Photo;
+
+/**
+ * Image View that shows the thumbnail of one Photo at a time, for use in list cells that are reused while scrolling.
+ * It remembers the Photo it currently shows and the request for its thumbnail: showing the same Photo again does nothing,
+ * and showing another Photo cancels the request for the previous one, so a thumbnail can never land in a cell
+ * that has moved on and Photos that were scrolled past are not loaded at all.
+ * Thumbnails are turned upright according to the orientation of their Photo.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class ThumbnailView extends ImageView {
+
+	/**
+	 * Photo currently shown, or null if none.
+	 */
+	private Photo photo;
+	/**
+	 * Orientation that the thumbnail of the Photo is turned by.
+	 */
+	private int orientation;
+	/**
+	 * Request for the thumbnail of the Photo, or null if there is none.
+	 */
+	private ThumbnailCache.Request request;
+
+	/**
+	 * Returns reference to photo.
+	 * @return	Photo currently shown, or null if none.
+	 */
+	public Photo getPhoto() {
+		return photo;
+	}
+
+	/**
+	 * Shows the thumbnail of a Photo once it has been loaded, and nothing until then.
+	 * Must be called on the JavaFX application thread.
+	 * @param photo	Photo to be shown, or null to show nothing.
+	 */
+	public void setPhoto(Photo photo) {
+		// check if the Photo is already shown or on its way, the same way up
+		if(this.photo == photo && (photo == null || orientation == photo.getOrientation())) {
+			return;
+		}
+		if(request != null) {
+			request.cancel();
+			request = null;
+		}
+		this.photo = photo;
+		setImage(null);
+		if(photo != null) {
+			int shownOrientation = photo.getOrientation();
+			orientation = shownOrientation;
+			request = ThumbnailCache.getInstance().load(photo, image -> setImage(ImageOrientation.apply(image, shownOrientation)));
+		}
+	}
+}
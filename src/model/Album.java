@@ -3,6 +3,12 @@ package model;
 import java.util.ArrayList;
 import java.io.*;
 import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 
 /**
  * Used to store information that is relevant to Albums.
@@ -18,6 +24,17 @@ public class Album implements Serializable{
 	 * Default serial version UID for serialization.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * Fields that were written by older versions, which stored the date range as Calendars.
+	 * Kept so that serialized Users saved by those versions can still be read.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("name", String.class),
+		new ObjectStreamField("numPhotos", int.class),
+		new ObjectStreamField("earliestDate", Calendar.class),
+		new ObjectStreamField("latestDate", Calendar.class),
+		new ObjectStreamField("photos", ArrayList.class)
+	};
 	
 	/**
 	 * Name of the Album.
@@ -28,17 +45,32 @@ public class Album implements Serializable{
 	 */
 	private int numPhotos;
 	/**
-	 * Stores the Calendar object of the earliest date of all Photos in this album.
+	 * Earliest date of all Photos in this album in milliseconds since the epoch, or 0 if the album is empty.
 	 */
-	private Calendar earliestDate;
+	private long earliestDate;
 	/**
-	 * Stores the Calendar object of the latest date of all Photos in this album.
+	 * Latest date of all Photos in this album in milliseconds since the epoch, or 0 if the album is empty.
 	 */
-	private Calendar latestDate;
+	private long latestDate;
 	/**
 	 * List of all Photo objects that belong to this album.
 	 */
 	private ArrayList<Photo> photos;
+	/**
+	 * Set of the Photo objects in photos, used to check whether the Album contains a Photo.
+	 * Not serialized, it is rebuilt from photos when first needed.
+	 */
+	private transient Set<Photo> photoSet;
+	/**
+	 * Multiset of the dates of all Photos in this Album in epoch milliseconds, used to keep earliestDate and latestDate up to date.
+	 * Not serialized, it is rebuilt from photos when first needed.
+	 */
+	private transient TreeMap<Long, Integer> dates;
+	/**
+	 * Part of the User's file that the Photos of this Album are read from when first needed.
+	 * Null once the Photos have been read, or if the Album was never saved.
+	 */
+	private transient UserStore.Section section;
 	
 	/**
 	 * Constructor for Album.
@@ -47,8 +79,8 @@ public class Album implements Serializable{
 	public Album(String name) {
 		this.name = name;
 		this.numPhotos = 0;
-		this.earliestDate = null;
-		this.latestDate = null;
+		this.earliestDate = 0;
+		this.latestDate = 0;
 		photos = new ArrayList<Photo>();
 	}
 	
@@ -86,44 +118,74 @@ public class Album implements Serializable{
 
 	/**
 	 * Returns reference to earliestDate.
-	 * @return	Stores the Calendar object of the earliest date of all Photos in this album.
+	 * @return	Earliest date of all Photos in this album in milliseconds since the epoch, or 0 if the album is empty.
 	 */
-	public Calendar getEarliestDate() {
+	public long getEarliestDate() {
 		return earliestDate;
 	}
 
 	/**
 	 * Sets the earliestDate of Album.
-	 * @param earliestDate	Stores the Calendar object of the earliest date of all Photos in this album.
+	 * @param earliestDate	Earliest date of all Photos in this album in milliseconds since the epoch.
 	 */
-	public void setEarliestDate(Calendar earliestDate) {
+	public void setEarliestDate(long earliestDate) {
 		this.earliestDate = earliestDate;
 	}
 
 	/**
 	 * Returns reference to latestDate.
-	 * @return	Stores the Calendar object of the latest date of all Photos in this album.
+	 * @return	Latest date of all Photos in this album in milliseconds since the epoch, or 0 if the album is empty.
 	 */
-	public Calendar getLatestDate() {
+	public long getLatestDate() {
 		return latestDate;
 	}
 
 	/**
 	 * Sets the latestDate of Album.
-	 * @param latestDate	Stores the Calendar object of the latest date of all Photos in this album.
+	 * @param latestDate	Latest date of all Photos in this album in milliseconds since the epoch.
 	 */
-	public void setLatestDate(Calendar latestDate) {
+	public void setLatestDate(long latestDate) {
 		this.latestDate = latestDate;
 	}
 	
+	/**
+	 * Returns the earliest date of all Photos in this album in the system time zone, for display.
+	 * @return	The earliest date, or null if the album is empty.
+	 */
+	public ZonedDateTime getEarliestDateTime() {
+		return numPhotos == 0 ? null : Instant.ofEpochMilli(earliestDate).atZone(ZoneId.systemDefault());
+	}
+	
+	/**
+	 * Returns the latest date of all Photos in this album in the system time zone, for display.
+	 * @return	The latest date, or null if the album is empty.
+	 */
+	public ZonedDateTime getLatestDateTime() {
+		return numPhotos == 0 ? null : Instant.ofEpochMilli(latestDate).atZone(ZoneId.systemDefault());
+	}
+	
 	/**
 	 * Returns reference to photos.
 	 * @return	List of all Photo objects that belong to this album.
 	 */
 	public ArrayList<Photo> getPhotos() {
+		ensureLoaded();
 		return photos;
 	}
 
+	/**
+	 * Checks whether the Album contains the Photo object.
+	 * @param photo	Photo object to be checked.
+	 * @return	True if the Photo object is in photos.
+	 */
+	public boolean containsPhoto(Photo photo) {
+		ensureLoaded();
+		if(photoSet == null) {
+			photoSet = new HashSet<Photo>(photos);
+		}
+		return photoSet.contains(photo);
+	}
+
 	/**
 	 * Adds new Photo object to photos and increments numPhotos.
 	 * If new photo has date earlier than earliestDate, earliestDate is updated.
@@ -131,49 +193,168 @@ public class Album implements Serializable{
 	 * @param newPhoto	New Photo object that is to be added to photos.
 	 */
 	public void addPhoto(Photo newPhoto) {
+		ensureLoaded();
+		TreeMap<Long, Integer> dates = getDates();
 		photos.add(newPhoto);
-		numPhotos += 1;
-		if(earliestDate == null || newPhoto.getDate().compareTo(earliestDate) < 0) {
-			earliestDate = newPhoto.getDate();
-		}
-		if(latestDate == null || newPhoto.getDate().compareTo(latestDate) > 0) {
-			latestDate = newPhoto.getDate();
+		if(photoSet != null) {
+			photoSet.add(newPhoto);
 		}
+		numPhotos += 1;
+		dates.merge(newPhoto.getDate(), 1, Integer::sum);
+		updateDateRange();
 	}
 	
 	/**
 	 * Removes the Photo object at the given index and decrements numPhotos.
-	 * If removed Photo had the earliestDate, earliestDate is updated to the next earliestDate.
-	 * If removed Photo had the latestDate, latestDate is updated to the next latestDate.
+	 * earliestDate and latestDate are updated from the remaining dates without rescanning photos.
 	 * If photos is empty after removal, earliestDate and latestDate are set to null.
 	 * @param index	Index of the Photo to be removed.
 	 */
 	public void removePhoto(int index) {
+		ensureLoaded();
+		TreeMap<Long, Integer> dates = getDates();
 		Photo deletedPhoto = photos.remove(index);
+		if(photoSet != null) {
+			photoSet.remove(deletedPhoto);
+		}
 		numPhotos -= 1;
-		if(numPhotos == 0) {
-			earliestDate = null;
-			latestDate = null;
-			return;
+		long deletedDate = deletedPhoto.getDate();
+		if(dates.merge(deletedDate, -1, Integer::sum) <= 0) {
+			dates.remove(deletedDate);
 		}
-		if(earliestDate == deletedPhoto.getDate()) {
-			Calendar newEarlyDate = photos.get(0).getDate();
-			for(int i = 1; i < photos.size(); i++) {
-				if(newEarlyDate.compareTo(photos.get(i).getDate()) > 0) {
-					newEarlyDate = photos.get(i).getDate();
-				}
+		updateDateRange();
+	}
+	
+	/**
+	 * Updates earliestDate and latestDate after the date of one of the Album's Photos was changed.
+	 * @param oldDate	Date the Photo had in epoch milliseconds.
+	 * @param newDate	Date the Photo has now in epoch milliseconds.
+	 */
+	void photoDateChanged(long oldDate, long newDate) {
+		// the multiset is built from the new dates if it has not been built yet
+		if(dates != null) {
+			if(dates.merge(oldDate, -1, Integer::sum) <= 0) {
+				dates.remove(oldDate);
 			}
-			earliestDate = newEarlyDate;
+			dates.merge(newDate, 1, Integer::sum);
+		}
+		getDates();
+		updateDateRange();
+	}
+	
+	/**
+	 * Checks whether the Photos of this Album have been read.
+	 * @return	True if photos holds every Photo of this Album.
+	 */
+	public boolean isLoaded() {
+		return section == null;
+	}
+	
+	/**
+	 * Reads the Photos of this Album from the User's file if they have not been read yet.
+	 * Until then only the name, numPhotos, and the date range of the Album are known.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void load() throws IOException {
+		if(section == null) {
+			return;
 		}
-		if(latestDate == deletedPhoto.getDate()) {
-			Calendar newLateDate = photos.get(0).getDate();
-			for(int i = 1; i < photos.size(); i++) {
-				if(newLateDate.compareTo(photos.get(i).getDate()) < 0) {
-					newLateDate = photos.get(i).getDate();
-				}
+		UserStore.Section loading = section;
+		int savedNumPhotos = numPhotos;
+		long savedEarliestDate = earliestDate;
+		long savedLatestDate = latestDate;
+		// the Photos are added back one by one as they are read
+		section = null;
+		numPhotos = 0;
+		earliestDate = 0;
+		latestDate = 0;
+		try {
+			loading.load(this);
+		}
+		catch(IOException e) {
+			// leave the Album as it was so reading can be tried again
+			photos.clear();
+			photoSet = null;
+			dates = null;
+			section = loading;
+			numPhotos = savedNumPhotos;
+			earliestDate = savedEarliestDate;
+			latestDate = savedLatestDate;
+			throw e;
+		}
+	}
+	
+	/**
+	 * Checks whether this Album may hold a Photo at the given location that has not been read yet.
+	 * @param key	Key of the normalized location.
+	 * @return	False if the Album has been read or holds no Photo at the location.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	boolean mayHoldUnreadLocation(long key) throws IOException {
+		return section != null && section.mayContainLocation(key);
+	}
+
+	/**
+	 * Checks whether this Album may hold a Photo with the given content hash that has not been read yet.
+	 * @param key	Key of the content hash.
+	 * @return	False if the Album has been read or holds no Photo with the hash.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	boolean mayHoldUnreadHash(long key) throws IOException {
+		return section != null && section.mayContainHash(key);
+	}
+
+	/**
+	 * Reads the Photos of this Album if they have not been read yet, for methods that cannot throw IOException.
+	 */
+	private void ensureLoaded() {
+		try {
+			load();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Marks the Album as not read yet, setting the summary that is shown until its Photos are read.
+	 * @param section	Part of the User's file that the Photos are read from.
+	 * @param numPhotos	The number of Photo objects belonging to this Album.
+	 * @param earliestDate	Earliest date of all Photos in this album in epoch milliseconds.
+	 * @param latestDate	Latest date of all Photos in this album in epoch milliseconds.
+	 */
+	void setSection(UserStore.Section section, int numPhotos, long earliestDate, long latestDate) {
+		this.section = section;
+		this.numPhotos = numPhotos;
+		this.earliestDate = earliestDate;
+		this.latestDate = latestDate;
+	}
+	
+	/**
+	 * Returns the multiset of Photo dates, building it from photos the first time it is needed.
+	 * @return	Maps each date in epoch milliseconds to the number of Photos in this Album with that date.
+	 */
+	private TreeMap<Long, Integer> getDates() {
+		if(dates == null) {
+			dates = new TreeMap<Long, Integer>();
+			for(Photo photo : photos) {
+				dates.merge(photo.getDate(), 1, Integer::sum);
 			}
-			latestDate = newLateDate;
 		}
+		return dates;
+	}
+	
+	/**
+	 * Sets earliestDate and latestDate to the first and last of the Photo dates.
+	 */
+	private void updateDateRange() {
+		if(dates.isEmpty()) {
+			earliestDate = 0;
+			latestDate = 0;
+			return;
+		}
+		earliestDate = dates.firstKey();
+		latestDate = dates.lastKey();
 	}
 
 	/**
@@ -181,13 +362,34 @@ public class Album implements Serializable{
 	 */
 	public String toString() {
 		String result = name + "\n" + numPhotos + " Photos\n";
-		if(earliestDate == null) {
+		if(numPhotos == 0) {
 			result += "No Date Range";
 		}
 		else {
-			result += earliestDate.getTime().toString() + " to " + latestDate.getTime().toString();
+			result += Photo.DATE_FORMAT.format(getEarliestDateTime()) + " to " + Photo.DATE_FORMAT.format(getLatestDateTime());
 		}
 		return result;
 	}
 	
+	/**
+	 * Reads an Album saved by an older version, converting its Calendar date range to milliseconds.
+	 * @param ois	Stream the Album is read from.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = ois.readFields();
+		name = (String)fields.get("name", null);
+		numPhotos = fields.get("numPhotos", 0);
+		Calendar earliest = (Calendar)fields.get("earliestDate", null);
+		Calendar latest = (Calendar)fields.get("latestDate", null);
+		earliestDate = earliest == null ? 0 : earliest.getTimeInMillis();
+		latestDate = latest == null ? 0 : latest.getTimeInMillis();
+		photos = (ArrayList<Photo>)fields.get("photos", null);
+		if(photos == null) {
+			photos = new ArrayList<Photo>();
+		}
+	}
+	
 }
@@ -0,0 +1,206 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * N-gram index of the captions of a User's Photos, used for case-insensitive prefix and substring caption searches.
+ * Every caption is lowercased and split into all of its 1, 2 and 3 character grams, each of which keeps a PhotoBitmap
+ * of the Photos whose caption contains it. A caption is also indexed with a start marker in front of it, so grams
+ * at the start of a caption can be told apart from grams elsewhere for prefix searches.
+ * A search intersects the postings of the grams of the search text and then checks the remaining Photos' captions,
+ * since sharing every gram does not guarantee that the whole text appears.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class CaptionIndex {
+
+	/**
+	 * Marks the start of a caption.
+	 */
+	private static final char START = '\u0002';
+	/**
+	 * Length of the longest grams that are indexed.
+	 */
+	private static final int GRAM = 3;
+
+	/**
+	 * Maps each gram to the ids of the Photos whose caption contains it.
+	 */
+	private HashMap<String, PhotoBitmap> postings;
+	/**
+	 * The User's Photos indexed by id, used to check the captions of candidates.
+	 */
+	private List<Photo> photosById;
+
+	/**
+	 * Constructor for CaptionIndex.
+	 * @param photosById	The User's Photos indexed by id.
+	 */
+	public CaptionIndex(List<Photo> photosById) {
+		postings = new HashMap<String, PhotoBitmap>();
+		this.photosById = photosById;
+	}
+
+	/**
+	 * Normalizes a caption so that searches are case-insensitive.
+	 * @param caption	Caption of a Photo.
+	 * @return	The normalized caption.
+	 */
+	public static String normalize(String caption) {
+		return caption.toLowerCase();
+	}
+
+	/**
+	 * Adds the caption of a Photo to the index.
+	 * @param photo	Photo to be indexed.
+	 */
+	public void add(Photo photo) {
+		for(String gram : grams(START + normalize(photo.getCaption()))) {
+			PhotoBitmap photos = postings.get(gram);
+			if(photos == null) {
+				photos = new PhotoBitmap();
+				postings.put(gram, photos);
+			}
+			photos.add(photo.getId());
+		}
+	}
+
+	/**
+	 * Removes the caption of a Photo from the index.
+	 * Must be called before the caption is changed.
+	 * @param photo	Photo to be removed from the index.
+	 */
+	public void remove(Photo photo) {
+		for(String gram : grams(START + normalize(photo.getCaption()))) {
+			PhotoBitmap photos = postings.get(gram);
+			if(photos != null) {
+				photos.remove(photo.getId());
+				if(photos.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the Photos whose caption starts with or contains the given text, ignoring case.
+	 * @param text	Text to search for.
+	 * @param prefix	True to only match captions that start with the text.
+	 * @return	Ids of the matching Photos.
+	 */
+	public PhotoBitmap search(String text, boolean prefix) {
+		PhotoBitmap candidates = candidates(text, prefix);
+		if(isExact(text, prefix)) {
+			return candidates;
+		}
+
+		// sharing every gram does not mean the text appears in that order, so check each caption
+		PhotoBitmap result = new PhotoBitmap();
+		candidates.forEach(id -> {
+			if(matches(photosById.get(id), text, prefix)) {
+				result.add(id);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Finds the Photos whose caption has every gram of the given text, which includes every Photo whose caption matches it.
+	 * Callers that check the candidates themselves, one at a time, use this instead of search.
+	 * @param text	Text to search for.
+	 * @param prefix	True to only match captions that start with the text.
+	 * @return	Ids of the candidate Photos. Must not be modified.
+	 */
+	public PhotoBitmap candidates(String text, boolean prefix) {
+		String normalized = normalize(text);
+		String anchored = prefix ? START + normalized : normalized;
+		if(anchored.isEmpty()) {
+			return new PhotoBitmap();
+		}
+
+		// check that every gram of the search text has been indexed
+		ArrayList<PhotoBitmap> lists = new ArrayList<PhotoBitmap>();
+		for(String gram : queryGrams(anchored)) {
+			PhotoBitmap photos = postings.get(gram);
+			if(photos == null) {
+				return new PhotoBitmap();
+			}
+			lists.add(photos);
+		}
+
+		// intersect the postings, rarest first
+		lists.sort(Comparator.comparingInt(PhotoBitmap::cardinality));
+		PhotoBitmap candidates = null;
+		for(PhotoBitmap photos : lists) {
+			candidates = candidates == null ? photos : candidates.and(photos);
+			if(candidates.isEmpty()) {
+				return candidates;
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Checks whether every candidate for the given text matches it, which is the case when its grams cover the whole text.
+	 * @param text	Text to search for.
+	 * @param prefix	True to only match captions that start with the text.
+	 * @return	True if the candidates do not have to be checked.
+	 */
+	public static boolean isExact(String text, boolean prefix) {
+		return normalize(text).length() + (prefix ? 1 : 0) <= GRAM;
+	}
+
+	/**
+	 * Checks whether the caption of a Photo starts with or contains the given text, ignoring case.
+	 * @param photo	Photo to be checked.
+	 * @param text	Text to search for.
+	 * @param prefix	True to only match captions that start with the text.
+	 * @return	True if the caption matches.
+	 */
+	public static boolean matches(Photo photo, String text, boolean prefix) {
+		String caption = normalize(photo.getCaption());
+		String normalized = normalize(text);
+		return prefix ? caption.startsWith(normalized) : caption.contains(normalized);
+	}
+
+	/**
+	 * Returns every distinct gram of 1 to 3 characters in the text.
+	 * @param text	Normalized caption, with the start marker in front of it.
+	 * @return	Set of grams.
+	 */
+	private static Set<String> grams(String text) {
+		Set<String> grams = new HashSet<String>();
+		for(int start = 0; start < text.length(); start++) {
+			for(int length = 1; length <= GRAM && start + length <= text.length(); length++) {
+				grams.add(text.substring(start, start + length));
+			}
+		}
+		return grams;
+	}
+
+	/**
+	 * Returns the grams that are looked up for a search text: the text itself if it is short enough,
+	 * otherwise every 3 character gram in it.
+	 * @param text	Normalized search text.
+	 * @return	Set of grams.
+	 */
+	private static Set<String> queryGrams(String text) {
+		Set<String> grams = new HashSet<String>();
+		if(text.length() <= GRAM) {
+			grams.add(text);
+			return grams;
+		}
+		for(int start = 0; start + GRAM <= text.length(); start++) {
+			grams.add(text.substring(start, start + GRAM));
+		}
+		return grams;
+	}
+}
@@ -0,0 +1,129 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Index of Photos sorted by the day they were taken.
+ * Used to answer date range searches without converting the date of every Photo on every query.
+ * Each day holds a PhotoBitmap of the ids of the Photos taken on it.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class DateIndex {
+
+	/**
+	 * Maps the epoch day of a Photo's date to the ids of the Photos taken on that day.
+	 */
+	private TreeMap<Long, PhotoBitmap> days;
+	/**
+	 * The User's Photos indexed by id, used to turn ids back into Photos.
+	 */
+	private List<Photo> photosById;
+
+	/**
+	 * Constructor for DateIndex.
+	 * @param photosById	The User's Photos indexed by id.
+	 */
+	public DateIndex(List<Photo> photosById) {
+		days = new TreeMap<Long, PhotoBitmap>();
+		this.photosById = photosById;
+	}
+
+	/**
+	 * Returns the epoch day of the Photo's date in the system time zone.
+	 * @param photo	Photo whose date is converted.
+	 * @return	Number of days since 1970-01-01 that the Photo was taken on.
+	 */
+	public static long epochDay(Photo photo) {
+		return Instant.ofEpochMilli(photo.getDate()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+	}
+
+	/**
+	 * Adds a Photo to the index.
+	 * @param photo	Photo to be indexed.
+	 */
+	public void add(Photo photo) {
+		long day = epochDay(photo);
+		PhotoBitmap photos = days.get(day);
+		if(photos == null) {
+			photos = new PhotoBitmap();
+			days.put(day, photos);
+		}
+		photos.add(photo.getId());
+	}
+
+	/**
+	 * Removes a Photo from the index.
+	 * @param photo	Photo to be removed from the index.
+	 */
+	public void remove(Photo photo) {
+		long day = epochDay(photo);
+		PhotoBitmap photos = days.get(day);
+		if(photos == null) {
+			return;
+		}
+		photos.remove(photo.getId());
+		if(photos.isEmpty()) {
+			days.remove(day);
+		}
+	}
+
+	/**
+	 * Returns the number of Photos taken between the given days, inclusive, without collecting them.
+	 * @param fromDay	Epoch day of the first day of the range.
+	 * @param toDay	Epoch day of the last day of the range.
+	 * @return	Number of Photos within the range, 0 if fromDay is after toDay.
+	 */
+	public int count(long fromDay, long toDay) {
+		int count = 0;
+		if(fromDay > toDay) {
+			return count;
+		}
+		for(PhotoBitmap photos : days.subMap(fromDay, true, toDay, true).values()) {
+			count += photos.cardinality();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns all Photos taken between the given dates, inclusive, ordered by date.
+	 * The days are already in order, so only the Photos within each day are sorted.
+	 * @param fromDate	The first day of the range.
+	 * @param toDate	The last day of the range.
+	 * @return	List of Photos within the range, empty if fromDate is after toDate.
+	 */
+	public ArrayList<Photo> range(LocalDate fromDate, LocalDate toDate) {
+		ArrayList<Photo> result = new ArrayList<Photo>();
+		if(fromDate.isAfter(toDate)) {
+			return result;
+		}
+		for(PhotoBitmap photos : days.subMap(fromDate.toEpochDay(), true, toDate.toEpochDay(), true).values()) {
+			int start = result.size();
+			photos.forEach(id -> result.add(photosById.get(id)));
+			result.subList(start, result.size()).sort(Comparator.comparingLong(Photo::getDate));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids of all Photos taken between the given days, inclusive.
+	 * @param fromDay	Epoch day of the first day of the range.
+	 * @param toDay	Epoch day of the last day of the range.
+	 * @return	Ids of the Photos within the range, empty if fromDay is after toDay.
+	 */
+	public PhotoBitmap rangeIds(long fromDay, long toDay) {
+		if(fromDay > toDay) {
+			return new PhotoBitmap();
+		}
+		return PhotoBitmap.or(days.subMap(fromDay, true, toDay, true).values());
+	}
+}
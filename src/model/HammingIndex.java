@@ -0,0 +1,171 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Index of 64 bit hashes used to find the hashes within a few bits of a given hash, by multi-index hashing.
+ * Every hash is split into four 16 bit blocks and filed under each of them. If two hashes differ in at most r bits,
+ * one of their four blocks differs in at most r / 4 bits, so a search only looks up the blocks within r / 4 bits
+ * of the blocks of the hash being searched for and checks the full distance of what it finds there.
+ * Unlike a tree, the work does not grow with the number of hashes that are merely somewhat close.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ * @param <T>	Type of the items stored with the hashes.
+ */
+
+public class HammingIndex<T> {
+
+	/**
+	 * Number of blocks each hash is split into.
+	 */
+	private static final int BLOCKS = 4;
+	/**
+	 * Number of bits in each block.
+	 */
+	private static final int BLOCK_BITS = 64 / BLOCKS;
+
+	/**
+	 * An item stored with its hash.
+	 */
+	private static class Entry<T> {
+		/**
+		 * Hash of the item.
+		 */
+		long hash;
+		/**
+		 * The item.
+		 */
+		T item;
+
+		/**
+		 * Constructor for Entry.
+		 * @param hash	Hash of the item.
+		 * @param item	The item.
+		 */
+		Entry(long hash, T item) {
+			this.hash = hash;
+			this.item = item;
+		}
+	}
+
+	/**
+	 * For each block, the entries whose hash has each value of that block, at the index returned by slot, with null for values no hash has.
+	 */
+	private ArrayList<ArrayList<Entry<T>>> tables;
+
+	/**
+	 * Constructor for HammingIndex.
+	 */
+	public HammingIndex() {
+		tables = new ArrayList<ArrayList<Entry<T>>>(Collections.<ArrayList<Entry<T>>>nCopies(BLOCKS << BLOCK_BITS, null));
+	}
+
+	/**
+	 * Returns the number of bits in which two hashes differ.
+	 * @param a	First hash.
+	 * @param b	Second hash.
+	 * @return	Hamming distance between the hashes.
+	 */
+	public static int distance(long a, long b) {
+		return Long.bitCount(a ^ b);
+	}
+
+	/**
+	 * Returns one block of a hash.
+	 * @param hash	The hash.
+	 * @param block	Index of the block.
+	 * @return	Value of the block.
+	 */
+	private static int block(long hash, int block) {
+		return (int)(hash >>> (block * BLOCK_BITS)) & ((1 << BLOCK_BITS) - 1);
+	}
+
+	/**
+	 * Returns the position in tables of the entries filed under a value of a block.
+	 * @param block	Index of the block.
+	 * @param value	Value of the block.
+	 * @return	Index into tables.
+	 */
+	private static int slot(int block, int value) {
+		return (block << BLOCK_BITS) | value;
+	}
+
+	/**
+	 * Adds an item under its hash.
+	 * @param hash	Hash of the item.
+	 * @param item	Item to be added.
+	 */
+	public void add(long hash, T item) {
+		Entry<T> entry = new Entry<T>(hash, item);
+		for(int i = 0; i < BLOCKS; i++) {
+			int slot = slot(i, block(hash, i));
+			if(tables.get(slot) == null) {
+				tables.set(slot, new ArrayList<Entry<T>>());
+			}
+			tables.get(slot).add(entry);
+		}
+	}
+
+	/**
+	 * Passes every item whose hash is within the given distance of a hash to the consumer, each once.
+	 * @param hash	Hash to search around.
+	 * @param maxDistance	Largest number of bits the hashes may differ in.
+	 * @param found	Receives each item found.
+	 */
+	public void search(long hash, int maxDistance, Consumer<T> found) {
+		int blockDistance = maxDistance / BLOCKS;
+		for(int i = 0; i < BLOCKS; i++) {
+			int block = i;
+			forEachNear(block(hash, i), blockDistance, 0, value -> {
+				ArrayList<Entry<T>> entries = tables.get(slot(block, value));
+				if(entries == null) {
+					return;
+				}
+				for(Entry<T> entry : entries) {
+					if(distance(hash, entry.hash) <= maxDistance && firstCloseBlock(hash, entry.hash, blockDistance) == block) {
+						found.accept(entry.item);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns the first block in which two hashes are close, which is the only block an entry is reported from,
+	 * so an entry that is close in several blocks is still reported once.
+	 * @param a	First hash.
+	 * @param b	Second hash.
+	 * @param blockDistance	Largest number of bits a close block may differ in.
+	 * @return	Index of the first close block, or -1 if there is none.
+	 */
+	private static int firstCloseBlock(long a, long b, int blockDistance) {
+		for(int i = 0; i < BLOCKS; i++) {
+			if(Integer.bitCount(block(a, i) ^ block(b, i)) <= blockDistance) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Passes every block value within the given number of bits of a value to the consumer.
+	 * @param value	Value of a block.
+	 * @param bitsLeft	Number of bits that may still be flipped.
+	 * @param from	Lowest bit that may still be flipped, so each value is produced once.
+	 * @param near	Receives each value.
+	 */
+	private static void forEachNear(int value, int bitsLeft, int from, IntConsumer near) {
+		near.accept(value);
+		if(bitsLeft == 0) {
+			return;
+		}
+		for(int bit = from; bit < BLOCK_BITS; bit++) {
+			forEachNear(value ^ (1 << bit), bitsLeft - 1, bit + 1, near);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Groups Photos that look alike, such as burst shots and re-exported copies, by the perceptual hashes of their thumbnails.
+ * Every Photo is looked up in a HammingIndex of all the hashes, so only Photos within a few bits of each other are ever compared,
+ * and Photos that are close to each other directly or through other Photos are joined into one cluster.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class NearDuplicates {
+
+	/**
+	 * Finds the clusters of Photos whose perceptual hashes differ in at most the given number of bits.
+	 * @param photos	Photos to be grouped.
+	 * @param hashes	Perceptual hash of each Photo, in the same order.
+	 * @param maxDistance	Largest number of bits in which the hashes of two alike Photos may differ.
+	 * @return	Clusters of at least two Photos, the largest first, each sorted from the oldest to the newest Photo.
+	 */
+	public static ArrayList<ArrayList<Photo>> findClusters(List<Photo> photos, long[] hashes, int maxDistance) {
+		HammingIndex<Integer> index = new HammingIndex<Integer>();
+		for(int i = 0; i < photos.size(); i++) {
+			index.add(hashes[i], i);
+		}
+
+		// join every Photo with the Photos close to it
+		int[] parents = new int[photos.size()];
+		for(int i = 0; i < parents.length; i++) {
+			parents[i] = i;
+		}
+		for(int i = 0; i < photos.size(); i++) {
+			int photo = i;
+			index.search(hashes[i], maxDistance, other -> union(parents, photo, other));
+		}
+
+		HashMap<Integer, ArrayList<Photo>> groups = new HashMap<Integer, ArrayList<Photo>>();
+		for(int i = 0; i < photos.size(); i++) {
+			groups.computeIfAbsent(find(parents, i), root -> new ArrayList<Photo>()).add(photos.get(i));
+		}
+		ArrayList<ArrayList<Photo>> clusters = new ArrayList<ArrayList<Photo>>();
+		for(ArrayList<Photo> group : groups.values()) {
+			if(group.size() > 1) {
+				group.sort(Comparator.comparingLong(Photo::getDate));
+				clusters.add(group);
+			}
+		}
+		clusters.sort(Comparator.comparingInt((ArrayList<Photo> cluster) -> cluster.size()).reversed());
+		return clusters;
+	}
+
+	/**
+	 * Finds the representative of the cluster that a Photo belongs to, shortening the path on the way.
+	 * @param parents	Parent of every Photo in the union-find forest.
+	 * @param i	Index of the Photo.
+	 * @return	Index of the representative.
+	 */
+	private static int find(int[] parents, int i) {
+		while(parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Joins the clusters of two Photos.
+	 * @param parents	Parent of every Photo in the union-find forest.
+	 * @param a	Index of the first Photo.
+	 * @param b	Index of the second Photo.
+	 */
+	private static void union(int[] parents, int a, int b) {
+		int rootA = find(parents, a);
+		int rootB = find(parents, b);
+		if(rootA != rootB) {
+			parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+		}
+	}
+}
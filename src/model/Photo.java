@@ -2,7 +2,12 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Locale;
 import java.io.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 
 /**
  * Used to store information that is relevant to Photos.
@@ -18,6 +23,20 @@ public class Photo implements Serializable{
 	 * Default serial version UID for serialization.
 	 */
 	private static final long serialVersionUID = 1L;
+	/**
+	 * Fields that were written by older versions, which stored the date as a Calendar.
+	 * Kept so that serialized Users saved by those versions can still be read.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("location", String.class),
+		new ObjectStreamField("caption", String.class),
+		new ObjectStreamField("date", Calendar.class),
+		new ObjectStreamField("tags", ArrayList.class)
+	};
+	/**
+	 * Format that dates are shown in, the same as Date.toString.
+	 */
+	public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US);
 	
 	/**
 	 * Location of the Photo on the disk.
@@ -28,13 +47,41 @@ public class Photo implements Serializable{
 	 */
 	private String caption;
 	/**
-	 * Last modified date of the Photo.
+	 * Date the Photo was taken in milliseconds since the epoch, or its last modified date if the file does not say when it was taken.
 	 */
-	private Calendar date;
+	private long date;
 	/**
 	 * List of Tag objects associated with this Photo.
 	 */
 	private ArrayList<Tag> tags;
+	/**
+	 * Hex encoded SHA-256 hash of the contents of the Photo's file, or null if the file has not been hashed.
+	 */
+	private String hash;
+	/**
+	 * Perceptual hash of the Photo's thumbnail, which differs in few bits between Photos that look alike.
+	 */
+	private long perceptualHash;
+	/**
+	 * True if perceptualHash has been computed.
+	 */
+	private boolean hasPerceptualHash;
+	/**
+	 * Width of the Photo in pixels, or 0 if unknown.
+	 */
+	private int width;
+	/**
+	 * Height of the Photo in pixels, or 0 if unknown.
+	 */
+	private int height;
+	/**
+	 * EXIF orientation of the Photo, from 1 for upright to 8, or 0 if unknown.
+	 */
+	private int orientation;
+	/**
+	 * Id of the Photo within its User's library, or -1 if it is not in a library.
+	 */
+	private transient int id;
 	
 	/**
 	 * Constructor for Photo.
@@ -44,13 +91,28 @@ public class Photo implements Serializable{
 		this.location = location;
 		this.caption = "No Caption";
 		
-		File file = new File(location);
-		Calendar cal = Calendar.getInstance();
-		cal.setTimeInMillis(file.lastModified());
-		this.date = cal;
-		cal.set(Calendar.MILLISECOND, 0);
+		// dates are kept to the second
+		long lastModified = new File(location).lastModified();
+		this.date = lastModified - lastModified % 1000;
 		
 		tags = new ArrayList<Tag>();
+		id = -1;
+	}
+
+	/**
+	 * Constructor for Photo that has already been saved.
+	 * Does not access the disk.
+	 * @param location	Location of the Photo on the disk.
+	 * @param caption	Caption of the Photo.
+	 * @param date	Date the Photo was taken in milliseconds since the epoch.
+	 */
+	public Photo(String location, String caption, long date) {
+		this.location = location;
+		this.caption = caption;
+		this.date = date;
+		
+		tags = new ArrayList<Tag>();
+		id = -1;
 	}
 
 	/**
@@ -87,20 +149,127 @@ public class Photo implements Serializable{
 
 	/**
 	 * Returns reference to date.
-	 * @return	Last modified date of the Photo.
+	 * @return	Date the Photo was taken in milliseconds since the epoch.
 	 */
-	public Calendar getDate() {
+	public long getDate() {
 		return date;
 	}
 
 	/**
 	 * Sets the date of the Photo.
-	 * @param date	Last modified date of the Photo.
+	 * @param date	Date the Photo was taken in milliseconds since the epoch.
 	 */
-	public void setDate(Calendar date) {
+	public void setDate(long date) {
 		this.date = date;
 	}
 	
+	/**
+	 * Returns the date of the Photo in the system time zone, for display.
+	 * @return	Date the Photo was taken.
+	 */
+	public ZonedDateTime getDateTime() {
+		return Instant.ofEpochMilli(date).atZone(ZoneId.systemDefault());
+	}
+	
+	/**
+	 * Returns reference to hash.
+	 * @return	Hex encoded SHA-256 hash of the contents of the Photo's file, or null if the file has not been hashed.
+	 */
+	public String getHash() {
+		return hash;
+	}
+	
+	/**
+	 * Sets the hash of the Photo's contents.
+	 * @param hash	Hex encoded SHA-256 hash of the contents of the Photo's file, or null if the file has not been hashed.
+	 */
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+	
+	/**
+	 * Returns reference to perceptualHash.
+	 * @return	Perceptual hash of the Photo's thumbnail, only meaningful if hasPerceptualHash returns true.
+	 */
+	public long getPerceptualHash() {
+		return perceptualHash;
+	}
+	
+	/**
+	 * Returns reference to hasPerceptualHash.
+	 * @return	True if the perceptual hash of the Photo has been computed.
+	 */
+	public boolean hasPerceptualHash() {
+		return hasPerceptualHash;
+	}
+	
+	/**
+	 * Sets the perceptual hash of the Photo's thumbnail.
+	 * @param perceptualHash	Perceptual hash of the Photo's thumbnail.
+	 */
+	public void setPerceptualHash(long perceptualHash) {
+		this.perceptualHash = perceptualHash;
+		this.hasPerceptualHash = true;
+	}
+	
+	/**
+	 * Returns reference to width.
+	 * @return	Width of the Photo in pixels, or 0 if unknown.
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Returns reference to height.
+	 * @return	Height of the Photo in pixels, or 0 if unknown.
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * Sets the size of the Photo.
+	 * @param width	Width of the Photo in pixels, or 0 if unknown.
+	 * @param height	Height of the Photo in pixels, or 0 if unknown.
+	 */
+	public void setDimensions(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Returns reference to orientation.
+	 * @return	EXIF orientation of the Photo, from 1 for upright to 8, or 0 if unknown.
+	 */
+	public int getOrientation() {
+		return orientation;
+	}
+	
+	/**
+	 * Sets the orientation of the Photo.
+	 * @param orientation	EXIF orientation of the Photo, from 1 for upright to 8, or 0 if unknown.
+	 */
+	public void setOrientation(int orientation) {
+		this.orientation = orientation;
+	}
+	
+	/**
+	 * Returns reference to id.
+	 * @return	Id of the Photo within its User's library, or -1 if it is not in a library.
+	 */
+	public int getId() {
+		return id;
+	}
+	
+	/**
+	 * Sets the id of the Photo when it enters or leaves a User's library.
+	 * @param id	Id of the Photo within its User's library, or -1 if it is not in a library.
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+	
 	/**
 	 * Returns reference to tags.
 	 * @return	List of Tag objects associated with this Photo.
@@ -109,6 +278,20 @@ public class Photo implements Serializable{
 		return tags;
 	}
 
+	/**
+	 * Checks whether the Photo already has a Tag with the same type and value, ignoring the case of the value.
+	 * @param tag	Tag to be checked.
+	 * @return	True if one of the Photo's Tags matches the given Tag.
+	 */
+	public boolean hasTag(Tag tag) {
+		for(Tag existing : tags) {
+			if(existing.matches(tag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	/**
 	 * Sets the tags of the Photo.
 	 * @param tags	List of Tag objects associated with this Photo.
@@ -124,5 +307,25 @@ public class Photo implements Serializable{
 		return caption;
 	}
 	
+	/**
+	 * Reads a Photo saved by an older version, converting its Calendar date to milliseconds.
+	 * @param ois	Stream the Photo is read from.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = ois.readFields();
+		location = (String)fields.get("location", null);
+		caption = (String)fields.get("caption", null);
+		Calendar cal = (Calendar)fields.get("date", null);
+		date = cal == null ? 0 : cal.getTimeInMillis();
+		tags = (ArrayList<Tag>)fields.get("tags", null);
+		if(tags == null) {
+			tags = new ArrayList<Tag>();
+		}
+		id = -1;
+	}
+	
 	
 }
@@ -0,0 +1,620 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of Photo ids, used for tag postings, date buckets and search results.
+ * Ids are split into their high and low 16 bits; the low bits of all ids sharing the same high bits are kept in one container,
+ * which is a sorted array while it holds at most 4096 ids and a 65536 bit bitmap once it holds more.
+ * Sparse sets therefore cost two bytes per id and dense sets one bit per id, and AND, OR and AND NOT
+ * are done container by container, word by word where both sides are bitmaps.
+ * The set operations never modify their operands.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class PhotoBitmap {
+
+	/**
+	 * Largest number of ids kept in an array container.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	/**
+	 * High 16 bits of the ids in each container, in increasing order.
+	 */
+	private char[] keys;
+	/**
+	 * Containers holding the low 16 bits of the ids, in the same order as keys.
+	 */
+	private Container[] containers;
+	/**
+	 * Number of containers in use.
+	 */
+	private int size;
+
+	/**
+	 * Constructor for an empty PhotoBitmap.
+	 */
+	public PhotoBitmap() {
+		keys = new char[4];
+		containers = new Container[4];
+		size = 0;
+	}
+
+	/**
+	 * Adds an id to the set.
+	 * @param id	Id to be added, must not be negative.
+	 */
+	public void add(int id) {
+		char high = (char)(id >>> 16);
+		int index = Arrays.binarySearch(keys, 0, size, high);
+		if(index >= 0) {
+			containers[index] = containers[index].add((char)id);
+			return;
+		}
+		insert(-index - 1, high, new ArrayContainer().add((char)id));
+	}
+
+	/**
+	 * Removes an id from the set.
+	 * @param id	Id to be removed.
+	 */
+	public void remove(int id) {
+		int index = Arrays.binarySearch(keys, 0, size, (char)(id >>> 16));
+		if(index < 0) {
+			return;
+		}
+		Container container = containers[index].remove((char)id);
+		if(container.cardinality() == 0) {
+			System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+			System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+			size--;
+			containers[size] = null;
+		}
+		else {
+			containers[index] = container;
+		}
+	}
+
+	/**
+	 * Checks whether the set contains an id.
+	 * @param id	Id to be checked.
+	 * @return	True if the id is in the set.
+	 */
+	public boolean contains(int id) {
+		int index = Arrays.binarySearch(keys, 0, size, (char)(id >>> 16));
+		return index >= 0 && containers[index].contains((char)id);
+	}
+
+	/**
+	 * Returns the number of ids in the set.
+	 * @return	Number of ids.
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for(int i = 0; i < size; i++) {
+			cardinality += containers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Checks whether the set is empty.
+	 * @return	True if the set has no ids.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the ids that are in both sets.
+	 * @param other	The other set.
+	 * @return	New set holding the intersection.
+	 */
+	public PhotoBitmap and(PhotoBitmap other) {
+		PhotoBitmap result = new PhotoBitmap();
+		int i = 0;
+		int j = 0;
+		while(i < size && j < other.size) {
+			if(keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if(keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				Container container = containers[i].and(other.containers[j]);
+				if(container.cardinality() > 0) {
+					result.append(keys[i], container);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids that are in either set.
+	 * @param other	The other set.
+	 * @return	New set holding the union.
+	 */
+	public PhotoBitmap or(PhotoBitmap other) {
+		PhotoBitmap result = new PhotoBitmap();
+		int i = 0;
+		int j = 0;
+		while(i < size || j < other.size) {
+			if(j >= other.size || (i < size && keys[i] < other.keys[j])) {
+				result.append(keys[i], containers[i].copy());
+				i++;
+			}
+			else if(i >= size || keys[i] > other.keys[j]) {
+				result.append(other.keys[j], other.containers[j].copy());
+				j++;
+			}
+			else {
+				result.append(keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ids that are in any of the sets, in one pass over all of them.
+	 * Containers with the same high bits are ORed into one bitmap in place rather than into a new set per operand,
+	 * so the cost grows with the total size of the sets instead of with the number of sets times the size of the result.
+	 * @param sets	The sets to be combined.
+	 * @return	New set holding the union.
+	 */
+	public static PhotoBitmap or(Collection<PhotoBitmap> sets) {
+		// gather the containers of every set, ordered by their high bits
+		ArrayList<PhotoBitmap> nonEmpty = new ArrayList<PhotoBitmap>(sets.size());
+		int total = 0;
+		for(PhotoBitmap set : sets) {
+			if(!set.isEmpty()) {
+				nonEmpty.add(set);
+				total += set.size;
+			}
+		}
+		long[] entries = new long[total];
+		int count = 0;
+		for(int i = 0; i < nonEmpty.size(); i++) {
+			PhotoBitmap set = nonEmpty.get(i);
+			for(int j = 0; j < set.size; j++) {
+				// the high bits sort first, then the set and the position of the container within it; ids are never negative, so neither is the entry
+				entries[count++] = ((long)set.keys[j] << 48) | ((long)i << 16) | j;
+			}
+		}
+		Arrays.sort(entries);
+
+		PhotoBitmap result = new PhotoBitmap();
+		for(int start = 0; start < count;) {
+			char high = (char)(entries[start] >>> 48);
+			int end = start + 1;
+			while(end < count && (char)(entries[end] >>> 48) == high) {
+				end++;
+			}
+			if(end - start == 1) {
+				result.append(high, container(nonEmpty, entries[start]).copy());
+			}
+			else {
+				BitmapContainer merged = new BitmapContainer();
+				for(int i = start; i < end; i++) {
+					container(nonEmpty, entries[i]).orInto(merged.words);
+				}
+				for(long word : merged.words) {
+					merged.cardinality += Long.bitCount(word);
+				}
+				result.append(high, merged.cardinality <= ARRAY_MAX ? merged.toArray() : merged);
+			}
+			start = end;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the container that an entry built by or(Collection) refers to.
+	 * @param sets	The sets being combined.
+	 * @param entry	High bits, index of the set and index of the container within it.
+	 * @return	The container.
+	 */
+	private static Container container(ArrayList<PhotoBitmap> sets, long entry) {
+		return sets.get((int)(entry >>> 16)).containers[(int)entry & 0xFFFF];
+	}
+
+	/**
+	 * Returns the ids that are in this set but not in the other.
+	 * @param other	The other set.
+	 * @return	New set holding the difference.
+	 */
+	public PhotoBitmap andNot(PhotoBitmap other) {
+		PhotoBitmap result = new PhotoBitmap();
+		int j = 0;
+		for(int i = 0; i < size; i++) {
+			while(j < other.size && other.keys[j] < keys[i]) {
+				j++;
+			}
+			Container container = j < other.size && other.keys[j] == keys[i] ? containers[i].andNot(other.containers[j]) : containers[i].copy();
+			if(container.cardinality() > 0) {
+				result.append(keys[i], container);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Passes every id in the set to the action, in increasing order.
+	 * @param action	Called with each id.
+	 */
+	public void forEach(IntConsumer action) {
+		for(int i = 0; i < size; i++) {
+			containers[i].forEach(keys[i] << 16, action);
+		}
+	}
+
+	/**
+	 * Inserts a container at the given position.
+	 * @param index	Position of the container.
+	 * @param high	High 16 bits of the ids in the container.
+	 * @param container	The container.
+	 */
+	private void insert(int index, char high, Container container) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = high;
+		containers[index] = container;
+		size++;
+	}
+
+	/**
+	 * Adds a container after all existing ones, used while building the result of a set operation.
+	 * @param high	High 16 bits of the ids in the container.
+	 * @param container	The container.
+	 */
+	private void append(char high, Container container) {
+		insert(size, high, container);
+	}
+
+	/**
+	 * Holds the low 16 bits of the ids that share the same high 16 bits.
+	 * Methods that change the container return the container to use from then on, which may be of the other kind.
+	 */
+	private static abstract class Container {
+		/**
+		 * Adds a value.
+		 * @param value	Low 16 bits of an id.
+		 * @return	The container holding the value.
+		 */
+		abstract Container add(char value);
+
+		/**
+		 * Removes a value.
+		 * @param value	Low 16 bits of an id.
+		 * @return	The container without the value.
+		 */
+		abstract Container remove(char value);
+
+		/**
+		 * Checks whether the container holds a value.
+		 * @param value	Low 16 bits of an id.
+		 * @return	True if the value is in the container.
+		 */
+		abstract boolean contains(char value);
+
+		/**
+		 * Returns the number of values.
+		 * @return	Number of values in the container.
+		 */
+		abstract int cardinality();
+
+		/**
+		 * Returns the values in both containers.
+		 * @param other	The other container.
+		 * @return	New container holding the intersection.
+		 */
+		abstract Container and(Container other);
+
+		/**
+		 * Returns the values in either container.
+		 * @param other	The other container.
+		 * @return	New container holding the union.
+		 */
+		abstract Container or(Container other);
+
+		/**
+		 * Returns the values in this container but not in the other.
+		 * @param other	The other container.
+		 * @return	New container holding the difference.
+		 */
+		abstract Container andNot(Container other);
+
+		/**
+		 * Passes every value, combined with the high bits, to the action in increasing order.
+		 * @param high	High 16 bits of the ids, already shifted into place.
+		 * @param action	Called with each id.
+		 */
+		abstract void forEach(int high, IntConsumer action);
+
+		/**
+		 * Sets the bits of the values of the container in a bitmap.
+		 * @param words	Words of the bitmap, 64 values per word.
+		 */
+		abstract void orInto(long[] words);
+
+		/**
+		 * Returns a copy of the container.
+		 * @return	The copy.
+		 */
+		abstract Container copy();
+
+		/**
+		 * Returns the container as a bitmap, converting it if it is an array.
+		 * @return	The bitmap container.
+		 */
+		abstract BitmapContainer toBitmap();
+	}
+
+	/**
+	 * Container holding up to 4096 values in a sorted array.
+	 */
+	private static class ArrayContainer extends Container {
+		/**
+		 * The values in increasing order.
+		 */
+		char[] values;
+		/**
+		 * Number of values in use.
+		 */
+		int cardinality;
+
+		/**
+		 * Constructor for an empty ArrayContainer.
+		 */
+		ArrayContainer() {
+			this(new char[4], 0);
+		}
+
+		/**
+		 * Constructor for ArrayContainer.
+		 * @param values	The values in increasing order.
+		 * @param cardinality	Number of values in use.
+		 */
+		ArrayContainer(char[] values, int cardinality) {
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		Container add(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if(index >= 0) {
+				return this;
+			}
+			if(cardinality == ARRAY_MAX) {
+				return toBitmap().add(value);
+			}
+			index = -index - 1;
+			if(cardinality == values.length) {
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+			}
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		Container remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if(index >= 0) {
+				System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+				cardinality--;
+			}
+			return this;
+		}
+
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		int cardinality() {
+			return cardinality;
+		}
+
+		Container and(Container other) {
+			char[] result = new char[Math.min(cardinality, other.cardinality())];
+			int count = 0;
+			for(int i = 0; i < cardinality; i++) {
+				if(other.contains(values[i])) {
+					result[count++] = values[i];
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		Container or(Container other) {
+			if(other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer array = (ArrayContainer)other;
+			if(cardinality + array.cardinality > ARRAY_MAX) {
+				return toBitmap().or(array);
+			}
+			// merge the two sorted arrays
+			char[] result = new char[cardinality + array.cardinality];
+			int i = 0;
+			int j = 0;
+			int count = 0;
+			while(i < cardinality || j < array.cardinality) {
+				if(j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+					result[count++] = values[i++];
+				}
+				else if(i >= cardinality || values[i] > array.values[j]) {
+					result[count++] = array.values[j++];
+				}
+				else {
+					result[count++] = values[i++];
+					j++;
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		Container andNot(Container other) {
+			char[] result = new char[cardinality];
+			int count = 0;
+			for(int i = 0; i < cardinality; i++) {
+				if(!other.contains(values[i])) {
+					result[count++] = values[i];
+				}
+			}
+			return new ArrayContainer(result, count);
+		}
+
+		void forEach(int high, IntConsumer action) {
+			for(int i = 0; i < cardinality; i++) {
+				action.accept(high | values[i]);
+			}
+		}
+
+		void orInto(long[] words) {
+			for(int i = 0; i < cardinality; i++) {
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+		}
+
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for(int i = 0; i < cardinality; i++) {
+				bitmap.words[values[i] >>> 6] |= 1L << values[i];
+			}
+			bitmap.cardinality = cardinality;
+			return bitmap;
+		}
+	}
+
+	/**
+	 * Container holding more than 4096 values as one bit per possible value.
+	 */
+	private static class BitmapContainer extends Container {
+		/**
+		 * The bits, 64 values per word.
+		 */
+		long[] words = new long[1024];
+		/**
+		 * Number of bits that are set.
+		 */
+		int cardinality;
+
+		Container add(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) == 0) {
+				words[value >>> 6] |= bit;
+				cardinality++;
+			}
+			return this;
+		}
+
+		Container remove(char value) {
+			long bit = 1L << value;
+			if((words[value >>> 6] & bit) != 0) {
+				words[value >>> 6] &= ~bit;
+				cardinality--;
+			}
+			return cardinality <= ARRAY_MAX ? toArray() : this;
+		}
+
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		int cardinality() {
+			return cardinality;
+		}
+
+		Container and(Container other) {
+			if(other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			BitmapContainer result = new BitmapContainer();
+			long[] otherWords = ((BitmapContainer)other).words;
+			for(int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] & otherWords[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result.cardinality <= ARRAY_MAX ? result.toArray() : result;
+		}
+
+		Container or(Container other) {
+			BitmapContainer result = new BitmapContainer();
+			long[] otherWords = other.toBitmap().words;
+			for(int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] | otherWords[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result;
+		}
+
+		Container andNot(Container other) {
+			BitmapContainer result = new BitmapContainer();
+			long[] otherWords = other.toBitmap().words;
+			for(int i = 0; i < words.length; i++) {
+				result.words[i] = words[i] & ~otherWords[i];
+				result.cardinality += Long.bitCount(result.words[i]);
+			}
+			return result.cardinality <= ARRAY_MAX ? result.toArray() : result;
+		}
+
+		void forEach(int high, IntConsumer action) {
+			for(int i = 0; i < words.length; i++) {
+				long word = words[i];
+				while(word != 0) {
+					action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		void orInto(long[] words) {
+			for(int i = 0; i < words.length; i++) {
+				words[i] |= this.words[i];
+			}
+		}
+
+		Container copy() {
+			BitmapContainer copy = new BitmapContainer();
+			copy.words = words.clone();
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		BitmapContainer toBitmap() {
+			return this;
+		}
+
+		/**
+		 * Converts the container to an array container once it is small enough.
+		 * @return	The array container.
+		 */
+		ArrayContainer toArray() {
+			char[] values = new char[Math.max(1, cardinality)];
+			int[] count = {0};
+			forEach(0, id -> values[count[0]++] = (char)id);
+			return new ArrayContainer(values, cardinality);
+		}
+	}
+}
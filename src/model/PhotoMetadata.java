@@ -0,0 +1,485 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Capture date, size and orientation of an image file, read from the header of a JPEG or PNG file without decoding it.
+ * Only the first HEADER_BYTES of the file are read: JPEG keeps its EXIF segment and frame header before the image data,
+ * and PNG keeps its IHDR and eXIf chunks before it. Nothing else in the file is trusted to be well formed;
+ * anything that does not fit is left unknown.
+ * Results are cached by path and last modified time, so importing the same folder again does not reread the files.
+ * Safe to call from several threads at once.
+ *
+ * @author	Naveenan Yogeswaran
+ * @author	Savan Patel
+ *
+ */
+
+public class PhotoMetadata {
+
+	/**
+	 * Largest number of bytes read from the start of a file.
+	 */
+	private static final int HEADER_BYTES = 128 * 1024;
+	/**
+	 * Largest number of files whose metadata is kept in the cache.
+	 */
+	private static final int CACHE_SIZE = 10000;
+	/**
+	 * Format of EXIF dates, which have no time zone.
+	 */
+	private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+	/**
+	 * EXIF tag holding the orientation of the image.
+	 */
+	private static final int TAG_ORIENTATION = 0x0112;
+	/**
+	 * EXIF tag holding the date the file was last changed.
+	 */
+	private static final int TAG_DATE_TIME = 0x0132;
+	/**
+	 * EXIF tag holding the offset of the EXIF sub-directory.
+	 */
+	private static final int TAG_EXIF_IFD = 0x8769;
+	/**
+	 * EXIF tag holding the date the photo was taken.
+	 */
+	private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+	/**
+	 * EXIF tag holding the time zone of the date the photo was taken.
+	 */
+	private static final int TAG_OFFSET_TIME_ORIGINAL = 0x9011;
+	/**
+	 * EXIF tag holding the width of the image.
+	 */
+	private static final int TAG_PIXEL_X_DIMENSION = 0xA002;
+	/**
+	 * EXIF tag holding the height of the image.
+	 */
+	private static final int TAG_PIXEL_Y_DIMENSION = 0xA003;
+
+	/**
+	 * Metadata of recently read files by absolute path, least recently used first.
+	 */
+	private static final Map<String, PhotoMetadata> cache = Collections.synchronizedMap(
+			new LinkedHashMap<String, PhotoMetadata>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PhotoMetadata> eldest) {
+					return size() > CACHE_SIZE;
+				}
+			});
+
+	/**
+	 * Last modified time of the file when it was read, in milliseconds since the epoch.
+	 */
+	private long lastModified;
+	/**
+	 * Date the photo was taken in milliseconds since the epoch, or -1 if the file does not say.
+	 */
+	private long captureDate = -1;
+	/**
+	 * Width of the image in pixels, or 0 if unknown.
+	 */
+	private int width;
+	/**
+	 * Height of the image in pixels, or 0 if unknown.
+	 */
+	private int height;
+	/**
+	 * EXIF orientation of the image, or 0 if unknown.
+	 */
+	private int orientation;
+
+	/**
+	 * EXIF date the photo was taken, while reading.
+	 */
+	private String dateTimeOriginal;
+	/**
+	 * EXIF time zone of the date the photo was taken, while reading.
+	 */
+	private String offsetTimeOriginal;
+	/**
+	 * EXIF date the file was last changed, used if the date the photo was taken is missing, while reading.
+	 */
+	private String dateTime;
+
+	/**
+	 * Constructor for PhotoMetadata.
+	 * @param lastModified	Last modified time of the file in milliseconds since the epoch.
+	 */
+	private PhotoMetadata(long lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns reference to lastModified.
+	 * @return	Last modified time of the file when it was read, in milliseconds since the epoch.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Returns reference to captureDate.
+	 * @return	Date the photo was taken in milliseconds since the epoch, or -1 if the file does not say.
+	 */
+	public long getCaptureDate() {
+		return captureDate;
+	}
+
+	/**
+	 * Returns reference to width.
+	 * @return	Width of the image in pixels, or 0 if unknown.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns reference to height.
+	 * @return	Height of the image in pixels, or 0 if unknown.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns reference to orientation.
+	 * @return	EXIF orientation of the image, or 0 if unknown.
+	 */
+	public int getOrientation() {
+		return orientation;
+	}
+
+	/**
+	 * Returns the metadata of a file, from the cache if the file has not changed since it was last read.
+	 * @param path	File to be read.
+	 * @return	Metadata of the file; fields the file does not have are left unknown.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static PhotoMetadata read(Path path) throws IOException {
+		long lastModified = Files.getLastModifiedTime(path).toMillis();
+		String key = path.toAbsolutePath().toString();
+		PhotoMetadata cached = cache.get(key);
+		// check if the file has changed since it was cached
+		if(cached != null && cached.lastModified == lastModified) {
+			return cached;
+		}
+
+		PhotoMetadata metadata = new PhotoMetadata(lastModified);
+		ByteBuffer header = readHeader(path);
+		try {
+			if(header.limit() >= 3 && (header.get(0) & 0xff) == 0xFF && (header.get(1) & 0xff) == 0xD8) {
+				metadata.parseJpeg(header);
+			}
+			else if(header.limit() >= 8 && header.getLong(0) == 0x89504E470D0A1A0AL) {
+				metadata.parsePng(header);
+			}
+		}
+		catch(IndexOutOfBoundsException e) {
+			// keep whatever was read before the header ran out
+		}
+		metadata.parseDate();
+		cache.put(key, metadata);
+		return metadata;
+	}
+
+	/**
+	 * Sets the date, size and orientation of a Photo from this metadata.
+	 * The date is only changed if the file says when the photo was taken.
+	 * @param photo	Photo read from the file.
+	 */
+	public void applyTo(Photo photo) {
+		photo.setDate(dateOf(photo));
+		photo.setDimensions(width, height);
+		photo.setOrientation(orientation);
+	}
+
+	/**
+	 * Returns the date a Photo read from the file should have.
+	 * @param photo	Photo read from the file.
+	 * @return	The date the photo was taken, kept to the second, or the Photo's own date if the file does not say.
+	 */
+	public long dateOf(Photo photo) {
+		return captureDate >= 0 ? captureDate - captureDate % 1000 : photo.getDate();
+	}
+
+	/**
+	 * Reads at most HEADER_BYTES from the start of a file.
+	 * @param path	File to be read.
+	 * @return	Big endian buffer holding the bytes read.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static ByteBuffer readHeader(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(HEADER_BYTES, channel.size()));
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// keep reading until the buffer is full or the file ends
+			}
+			buffer.flip();
+			return buffer.order(ByteOrder.BIG_ENDIAN);
+		}
+	}
+
+	/**
+	 * Walks the segments of a JPEG file up to its image data, reading the EXIF segment and the frame header.
+	 * @param jpeg	Start of the file.
+	 */
+	private void parseJpeg(ByteBuffer jpeg) {
+		int position = 2;
+		while(position + 4 <= jpeg.limit()) {
+			if((jpeg.get(position) & 0xff) != 0xFF) {
+				return;
+			}
+			int marker = jpeg.get(position + 1) & 0xff;
+			// check if the marker is padding or has no length
+			if(marker == 0xFF) {
+				position++;
+				continue;
+			}
+			if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+				position += 2;
+				continue;
+			}
+			// the image data starts after the scan header
+			if(marker == 0xDA || marker == 0xD9) {
+				return;
+			}
+			int length = jpeg.getShort(position + 2) & 0xffff;
+			if(length < 2) {
+				return;
+			}
+			int start = position + 4;
+			int end = position + 2 + length;
+			if(marker == 0xE1 && end <= jpeg.limit() && length >= 8 && isExifHeader(jpeg, start)) {
+				parseTiff(slice(jpeg, start + 6, end));
+			}
+			else if(isStartOfFrame(marker) && start + 5 <= jpeg.limit()) {
+				height = jpeg.getShort(start + 1) & 0xffff;
+				width = jpeg.getShort(start + 3) & 0xffff;
+			}
+			position = end;
+		}
+	}
+
+	/**
+	 * Checks if a JPEG APP1 segment holds EXIF data.
+	 * @param jpeg	Start of the file.
+	 * @param start	Offset of the segment's contents.
+	 * @return	True if the segment starts with "Exif" and two zero bytes.
+	 */
+	private static boolean isExifHeader(ByteBuffer jpeg, int start) {
+		return jpeg.getInt(start) == 0x45786966 && jpeg.getShort(start + 4) == 0;
+	}
+
+	/**
+	 * Checks if a JPEG marker starts a frame, whose header holds the size of the image.
+	 * @param marker	The marker.
+	 * @return	True if the marker is one of SOF0 to SOF15.
+	 */
+	private static boolean isStartOfFrame(int marker) {
+		return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+	}
+
+	/**
+	 * Walks the chunks of a PNG file up to its image data, reading the IHDR and eXIf chunks.
+	 * @param png	Start of the file.
+	 */
+	private void parsePng(ByteBuffer png) {
+		int position = 8;
+		while(position + 8 <= png.limit()) {
+			int length = png.getInt(position);
+			int type = png.getInt(position + 4);
+			int data = position + 8;
+			if(length < 0 || (long)data + length > png.limit()) {
+				return;
+			}
+			// IHDR
+			if(type == 0x49484452 && length >= 8) {
+				width = png.getInt(data);
+				height = png.getInt(data + 4);
+			}
+			// eXIf
+			else if(type == 0x65584966) {
+				parseTiff(slice(png, data, data + length));
+			}
+			// IDAT
+			else if(type == 0x49444154) {
+				return;
+			}
+			// skip the data and the CRC
+			position = data + length + 4;
+		}
+	}
+
+	/**
+	 * Reads the EXIF fields kept in a TIFF structure.
+	 * @param tiff	The TIFF structure, starting at its byte order mark.
+	 */
+	private void parseTiff(ByteBuffer tiff) {
+		if(tiff.limit() < 8) {
+			return;
+		}
+		short byteOrder = tiff.getShort(0);
+		if(byteOrder == 0x4949) {
+			tiff.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		else if(byteOrder != 0x4D4D) {
+			return;
+		}
+		int exifOffset = parseDirectory(tiff, tiff.getInt(4));
+		if(exifOffset > 0) {
+			parseDirectory(tiff, exifOffset);
+		}
+	}
+
+	/**
+	 * Reads the fields of one TIFF directory.
+	 * @param tiff	The TIFF structure.
+	 * @param offset	Offset of the directory within the TIFF structure.
+	 * @return	Offset of the EXIF sub-directory if the directory points to one, otherwise 0.
+	 */
+	private int parseDirectory(ByteBuffer tiff, int offset) {
+		if(offset < 8 || offset + 2 > tiff.limit()) {
+			return 0;
+		}
+		int exifOffset = 0;
+		int count = tiff.getShort(offset) & 0xffff;
+		for(int i = 0; i < count; i++) {
+			int entry = offset + 2 + i * 12;
+			if(entry + 12 > tiff.limit()) {
+				break;
+			}
+			int tag = tiff.getShort(entry) & 0xffff;
+			switch(tag) {
+			case TAG_ORIENTATION:
+				int value = tiff.getShort(entry + 8) & 0xffff;
+				if(value >= 1 && value <= 8) {
+					orientation = value;
+				}
+				break;
+			case TAG_DATE_TIME:
+				dateTime = readAscii(tiff, entry);
+				break;
+			case TAG_EXIF_IFD:
+				exifOffset = tiff.getInt(entry + 8);
+				break;
+			case TAG_DATE_TIME_ORIGINAL:
+				dateTimeOriginal = readAscii(tiff, entry);
+				break;
+			case TAG_OFFSET_TIME_ORIGINAL:
+				offsetTimeOriginal = readAscii(tiff, entry);
+				break;
+			case TAG_PIXEL_X_DIMENSION:
+				// the frame header is more reliable, so only use this if there is none
+				if(width == 0) {
+					width = readInteger(tiff, entry);
+				}
+				break;
+			case TAG_PIXEL_Y_DIMENSION:
+				if(height == 0) {
+					height = readInteger(tiff, entry);
+				}
+				break;
+			}
+		}
+		// check if the directory points back at itself
+		return exifOffset == offset ? 0 : exifOffset;
+	}
+
+	/**
+	 * Reads the value of a SHORT or LONG TIFF field.
+	 * @param tiff	The TIFF structure.
+	 * @param entry	Offset of the field's entry.
+	 * @return	Value of the field, or 0 if it is of another type.
+	 */
+	private static int readInteger(ByteBuffer tiff, int entry) {
+		int type = tiff.getShort(entry + 2) & 0xffff;
+		if(type == 3) {
+			return tiff.getShort(entry + 8) & 0xffff;
+		}
+		if(type == 4) {
+			return Math.max(0, tiff.getInt(entry + 8));
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads the value of an ASCII TIFF field.
+	 * @param tiff	The TIFF structure.
+	 * @param entry	Offset of the field's entry.
+	 * @return	Value of the field without its terminating zeros, or null if it does not fit in the TIFF structure.
+	 */
+	private static String readAscii(ByteBuffer tiff, int entry) {
+		int count = tiff.getInt(entry + 4);
+		// values of up to four bytes are kept in the entry itself
+		int start = count <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+		if(count < 0 || start < 0 || (long)start + count > tiff.limit()) {
+			return null;
+		}
+		int end = start + count;
+		while(end > start && tiff.get(end - 1) == 0) {
+			end--;
+		}
+		byte[] bytes = new byte[end - start];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = tiff.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII).trim();
+	}
+
+	/**
+	 * Converts the EXIF date read from the file to captureDate.
+	 * EXIF dates are in the camera's local time; without a time zone in the file the system time zone is assumed.
+	 */
+	private void parseDate() {
+		String date = dateTimeOriginal != null ? dateTimeOriginal : dateTime;
+		if(date != null) {
+			try {
+				ZoneId zone = ZoneId.systemDefault();
+				if(dateTimeOriginal != null && offsetTimeOriginal != null) {
+					zone = ZoneOffset.of(offsetTimeOriginal);
+				}
+				captureDate = LocalDateTime.parse(date, EXIF_DATE).atZone(zone).toInstant().toEpochMilli();
+			}
+			catch(DateTimeException e) {
+				// cameras write blank dates such as "0000:00:00 00:00:00"
+			}
+		}
+		dateTimeOriginal = null;
+		offsetTimeOriginal = null;
+		dateTime = null;
+	}
+
+	/**
+	 * Returns part of a buffer as a buffer of its own, whose offsets start at 0.
+	 * @param buffer	The buffer.
+	 * @param start	Offset of the first byte of the part.
+	 * @param end	Offset after the last byte of the part.
+	 * @return	Big endian buffer holding the part.
+	 */
+	private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+		ByteBuffer part = buffer.duplicate();
+		part.limit(end);
+		part.position(start);
+		return part.slice().order(ByteOrder.BIG_ENDIAN);
+	}
+}
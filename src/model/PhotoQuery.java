@@ -0,0 +1,624 @@
+package model;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+/**
+ * A search over a User's Photos written as a boolean expression, such as
+ * {@code person=alice AND (location=paris OR location=rome) AND NOT person=bob AND date>=2020-01-01}.
+ * Terms are either a tag, written as {@code type=value}, or a date range, written as {@code date=day}, {@code date=from..to}
+ * or with one of the operators {@code < <= > >=}, where days are written as yyyy-mm-dd.
+ * Terms are combined with AND, OR, NOT and parentheses; AND binds tighter than OR.
+ * Values containing spaces or symbols are written in double quotes, and a tag type named date is written as {@code "date"}.
+ * <p>
+ * Terms are evaluated to PhotoBitmaps of Photo ids taken from the User's indexes, so AND, OR and NOT are bitmap operations.
+ * Each AND starts from its most selective term, estimated from the sizes of the indexes, intersects the remaining
+ * terms from the most to the least selective and stops as soon as nothing is left.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class PhotoQuery {
+
+	/**
+	 * Root of the parsed expression.
+	 */
+	private Node root;
+
+	/**
+	 * Constructor for PhotoQuery.
+	 * @param root	Root of the parsed expression.
+	 */
+	private PhotoQuery(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Parses a query.
+	 * @param text	The query as typed by the User.
+	 * @return	The parsed query.
+	 * @throws ParseException	If the query is not a valid expression; the error offset is the position of the problem.
+	 */
+	public static PhotoQuery parse(String text) throws ParseException {
+		Parser parser = new Parser(text);
+		Node root = parser.parseOr();
+		if(parser.peek() != null) {
+			throw new ParseException("Unexpected " + parser.peek(), parser.tokenStart);
+		}
+		return new PhotoQuery(root);
+	}
+
+	/**
+	 * Finds the Photos in the User's library that match the query.
+	 * @param user	User whose Photos are searched.
+	 * @return	List of matching Photos, each once.
+	 */
+	public ArrayList<Photo> evaluate(User user) {
+		return user.getPhotos(evaluateIds(user));
+	}
+
+	/**
+	 * Finds the ids of the Photos in the User's library that match the query.
+	 * Results are cached by the canonical form of the query until the User next changes, so repeating a search is free.
+	 * @param user	User whose Photos are searched.
+	 * @return	Ids of the matching Photos. Must not be modified.
+	 */
+	public PhotoBitmap evaluateIds(User user) {
+		String key = toString();
+		PhotoBitmap ids = user.getQueryCache().get(key, user.getVersion());
+		if(ids == null) {
+			ids = root.evaluate(user);
+			// the version is read after evaluating, since reading unloaded Albums changes it
+			user.getQueryCache().put(key, user.getVersion(), ids);
+		}
+		return ids;
+	}
+
+	/**
+	 * Builds a query matching Photos that have a Tag with the given type and value.
+	 * @param tagType	The type of the Tag.
+	 * @param tagValue	The value of the Tag, compared case-insensitively.
+	 * @return	The query.
+	 */
+	public static PhotoQuery tag(String tagType, String tagValue) {
+		return new PhotoQuery(new TagTerm(tagType, tagValue.trim()));
+	}
+
+	/**
+	 * Builds a query matching Photos taken within a range of days.
+	 * @param from	First day of the range.
+	 * @param to	Last day of the range.
+	 * @return	The query.
+	 */
+	public static PhotoQuery dates(LocalDate from, LocalDate to) {
+		return new PhotoQuery(new DateTerm(from.toEpochDay(), to.toEpochDay()));
+	}
+
+	/**
+	 * Builds a query matching Photos that match both this query and another.
+	 * @param other	The other query.
+	 * @return	The combined query.
+	 */
+	public PhotoQuery and(PhotoQuery other) {
+		AndNode and = new AndNode();
+		and.children.add(root);
+		and.children.add(other.root);
+		return new PhotoQuery(and);
+	}
+
+	/**
+	 * Builds a query matching Photos that match this query, another or both.
+	 * @param other	The other query.
+	 * @return	The combined query.
+	 */
+	public PhotoQuery or(PhotoQuery other) {
+		OrNode or = new OrNode();
+		or.children.add(root);
+		or.children.add(other.root);
+		return new PhotoQuery(or);
+	}
+
+	/**
+	 * Returns the query in a canonical form, with every AND and OR in parentheses.
+	 */
+	public String toString() {
+		return root.toString();
+	}
+
+	/**
+	 * A part of a query.
+	 */
+	private static abstract class Node {
+		/**
+		 * Estimates how many Photos match this part of the query, without collecting them.
+		 * @param user	User whose Photos are searched.
+		 * @return	Estimated number of matching Photos.
+		 */
+		abstract long estimate(User user);
+
+		/**
+		 * Collects the ids of the Photos that match this part of the query.
+		 * @param user	User whose Photos are searched.
+		 * @return	Ids of the matching Photos. Must not be modified.
+		 */
+		abstract PhotoBitmap evaluate(User user);
+	}
+
+	/**
+	 * Matches Photos that have a Tag with the given type and value.
+	 */
+	private static class TagTerm extends Node {
+		/**
+		 * The type of the Tag.
+		 */
+		String tagType;
+		/**
+		 * The value of the Tag, compared case-insensitively.
+		 */
+		String tagValue;
+
+		/**
+		 * Constructor for TagTerm.
+		 * @param tagType	The type of the Tag.
+		 * @param tagValue	The value of the Tag.
+		 */
+		TagTerm(String tagType, String tagValue) {
+			this.tagType = tagType;
+			this.tagValue = tagValue;
+		}
+
+		long estimate(User user) {
+			return user.getTagIndex().get(tagType, tagValue).cardinality();
+		}
+
+		PhotoBitmap evaluate(User user) {
+			return user.getTagIndex().get(tagType, tagValue);
+		}
+
+		public String toString() {
+			return quote(tagType.toLowerCase()) + "=" + quote(TagDictionary.normalize(tagValue));
+		}
+	}
+
+	/**
+	 * Matches Photos taken within a range of days.
+	 */
+	private static class DateTerm extends Node {
+		/**
+		 * Epoch day of the first day of the range.
+		 */
+		long fromDay;
+		/**
+		 * Epoch day of the last day of the range.
+		 */
+		long toDay;
+
+		/**
+		 * Constructor for DateTerm.
+		 * @param fromDay	Epoch day of the first day of the range.
+		 * @param toDay	Epoch day of the last day of the range.
+		 */
+		DateTerm(long fromDay, long toDay) {
+			this.fromDay = fromDay;
+			this.toDay = toDay;
+		}
+
+		long estimate(User user) {
+			return user.getDateIndex().count(fromDay, toDay);
+		}
+
+		PhotoBitmap evaluate(User user) {
+			return user.getDateIndex().rangeIds(fromDay, toDay);
+		}
+
+		public String toString() {
+			return "date=" + LocalDate.ofEpochDay(fromDay) + ".." + LocalDate.ofEpochDay(toDay);
+		}
+	}
+
+	/**
+	 * Matches Photos that match every one of its parts.
+	 */
+	private static class AndNode extends Node {
+		/**
+		 * The parts of the AND.
+		 */
+		ArrayList<Node> children = new ArrayList<Node>();
+
+		long estimate(User user) {
+			long estimate = Long.MAX_VALUE;
+			for(Node child : children) {
+				if(!(child instanceof NotNode)) {
+					estimate = Math.min(estimate, child.estimate(user));
+				}
+			}
+			return estimate == Long.MAX_VALUE ? user.getLibraryIds().cardinality() : estimate;
+		}
+
+		PhotoBitmap evaluate(User user) {
+			// order the parts from the most to the least selective
+			ArrayList<Node> positive = new ArrayList<Node>();
+			ArrayList<Node> negative = new ArrayList<Node>();
+			for(Node child : children) {
+				if(child instanceof NotNode) {
+					negative.add(((NotNode)child).child);
+				}
+				else {
+					positive.add(child);
+				}
+			}
+			IdentityHashMap<Node, Long> estimates = new IdentityHashMap<Node, Long>();
+			for(Node node : positive) {
+				estimates.put(node, node.estimate(user));
+			}
+			positive.sort(Comparator.comparingLong(estimates::get));
+
+			// start from the most selective part and stop as soon as nothing is left
+			PhotoBitmap result = positive.isEmpty() ? user.getLibraryIds() : positive.get(0).evaluate(user);
+			for(int i = 1; i < positive.size() && !result.isEmpty(); i++) {
+				result = result.and(positive.get(i).evaluate(user));
+			}
+			for(int i = 0; i < negative.size() && !result.isEmpty(); i++) {
+				result = result.andNot(negative.get(i).evaluate(user));
+			}
+			return result;
+		}
+
+		public String toString() {
+			return join(children, " AND ");
+		}
+	}
+
+	/**
+	 * Matches Photos that match at least one of its parts.
+	 */
+	private static class OrNode extends Node {
+		/**
+		 * The parts of the OR.
+		 */
+		ArrayList<Node> children = new ArrayList<Node>();
+
+		long estimate(User user) {
+			long estimate = 0;
+			for(Node child : children) {
+				estimate += child.estimate(user);
+			}
+			return Math.min(estimate, user.getLibraryIds().cardinality());
+		}
+
+		PhotoBitmap evaluate(User user) {
+			ArrayList<PhotoBitmap> parts = new ArrayList<PhotoBitmap>(children.size());
+			for(Node child : children) {
+				parts.add(child.evaluate(user));
+			}
+			return PhotoBitmap.or(parts);
+		}
+
+		public String toString() {
+			return join(children, " OR ");
+		}
+	}
+
+	/**
+	 * Matches Photos that do not match its part.
+	 */
+	private static class NotNode extends Node {
+		/**
+		 * The part that is negated.
+		 */
+		Node child;
+
+		/**
+		 * Constructor for NotNode.
+		 * @param child	The part that is negated.
+		 */
+		NotNode(Node child) {
+			this.child = child;
+		}
+
+		long estimate(User user) {
+			return Math.max(0, user.getLibraryIds().cardinality() - child.estimate(user));
+		}
+
+		PhotoBitmap evaluate(User user) {
+			return user.getLibraryIds().andNot(child.evaluate(user));
+		}
+
+		public String toString() {
+			return "NOT " + child;
+		}
+	}
+
+	/**
+	 * Joins the parts of an AND or OR in parentheses.
+	 * @param children	The parts.
+	 * @param separator	The operator between the parts.
+	 * @return	The joined parts.
+	 */
+	private static String join(ArrayList<Node> children, String separator) {
+		StringBuilder result = new StringBuilder("(");
+		for(int i = 0; i < children.size(); i++) {
+			if(i > 0) {
+				result.append(separator);
+			}
+			result.append(children.get(i));
+		}
+		return result.append(")").toString();
+	}
+
+	/**
+	 * Puts a word in double quotes if it would otherwise not be read back as a single word.
+	 * @param word	The word.
+	 * @return	The word, quoted if needed.
+	 */
+	private static String quote(String word) {
+		boolean plain = !word.isEmpty() && !isKeyword(word) && !word.equals("date");
+		for(int i = 0; i < word.length() && plain; i++) {
+			plain = isWordChar(word.charAt(i));
+		}
+		return plain ? word : "\"" + word.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Checks whether a word is one of the operators AND, OR or NOT.
+	 * @param word	The word.
+	 * @return	True if the word is an operator, ignoring case.
+	 */
+	private static boolean isKeyword(String word) {
+		return word.equalsIgnoreCase("AND") || word.equalsIgnoreCase("OR") || word.equalsIgnoreCase("NOT");
+	}
+
+	/**
+	 * Checks whether a character can be part of an unquoted word.
+	 * @param c	The character.
+	 * @return	True if the character is not a space, a parenthesis, a comparison or a quote.
+	 */
+	private static boolean isWordChar(char c) {
+		return !Character.isWhitespace(c) && "()=<>\"".indexOf(c) < 0;
+	}
+
+	/**
+	 * Recursive descent parser for queries.
+	 */
+	private static class Parser {
+		/**
+		 * The query being parsed.
+		 */
+		String text;
+		/**
+		 * Position of the next character to be read.
+		 */
+		int position;
+		/**
+		 * Position where the last token that was peeked starts.
+		 */
+		int tokenStart;
+		/**
+		 * The next token, or null if it has not been read yet or the query has ended.
+		 */
+		String token;
+		/**
+		 * True if the next token was written in quotes, so it is never an operator.
+		 */
+		boolean quoted;
+
+		/**
+		 * Constructor for Parser.
+		 * @param text	The query being parsed.
+		 */
+		Parser(String text) {
+			this.text = text;
+			this.position = 0;
+		}
+
+		/**
+		 * Returns the next token without consuming it.
+		 * @return	The next token, or null if the query has ended.
+		 * @throws ParseException	If a quoted word is not closed.
+		 */
+		String peek() throws ParseException {
+			if(token != null) {
+				return token;
+			}
+			while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+			tokenStart = position;
+			quoted = false;
+			if(position >= text.length()) {
+				return null;
+			}
+			char c = text.charAt(position);
+			if(c == '(' || c == ')' || c == '=') {
+				position++;
+			}
+			else if(c == '<' || c == '>') {
+				position++;
+				if(position < text.length() && text.charAt(position) == '=') {
+					position++;
+				}
+			}
+			else if(c == '"') {
+				StringBuilder word = new StringBuilder();
+				position++;
+				while(position < text.length() && text.charAt(position) != '"') {
+					if(text.charAt(position) == '\\' && position + 1 < text.length()) {
+						position++;
+					}
+					word.append(text.charAt(position++));
+				}
+				if(position >= text.length()) {
+					throw new ParseException("Missing closing quote", tokenStart);
+				}
+				position++;
+				quoted = true;
+				token = word.toString();
+				return token;
+			}
+			else {
+				while(position < text.length() && isWordChar(text.charAt(position))) {
+					position++;
+				}
+			}
+			token = text.substring(tokenStart, position);
+			return token;
+		}
+
+		/**
+		 * Consumes the next token.
+		 * @return	The token that was consumed.
+		 * @throws ParseException	If the query has ended.
+		 */
+		String next() throws ParseException {
+			String next = peek();
+			if(next == null) {
+				throw new ParseException("Unexpected end of query", text.length());
+			}
+			token = null;
+			return next;
+		}
+
+		/**
+		 * Checks whether the next token is the given operator, unquoted.
+		 * @param keyword	The operator.
+		 * @return	True if the next token is the operator.
+		 * @throws ParseException	If a quoted word is not closed.
+		 */
+		boolean at(String keyword) throws ParseException {
+			String next = peek();
+			return next != null && !quoted && next.equalsIgnoreCase(keyword);
+		}
+
+		/**
+		 * Parses terms joined by OR.
+		 * @return	The parsed expression.
+		 * @throws ParseException	If the query is not a valid expression.
+		 */
+		Node parseOr() throws ParseException {
+			Node first = parseAnd();
+			if(!at("OR")) {
+				return first;
+			}
+			OrNode or = new OrNode();
+			or.children.add(first);
+			while(at("OR")) {
+				next();
+				or.children.add(parseAnd());
+			}
+			return or;
+		}
+
+		/**
+		 * Parses terms joined by AND.
+		 * @return	The parsed expression.
+		 * @throws ParseException	If the query is not a valid expression.
+		 */
+		Node parseAnd() throws ParseException {
+			Node first = parseNot();
+			if(!at("AND")) {
+				return first;
+			}
+			AndNode and = new AndNode();
+			and.children.add(first);
+			while(at("AND")) {
+				next();
+				and.children.add(parseNot());
+			}
+			return and;
+		}
+
+		/**
+		 * Parses a term, a negated term or an expression in parentheses.
+		 * @return	The parsed expression.
+		 * @throws ParseException	If the query is not a valid expression.
+		 */
+		Node parseNot() throws ParseException {
+			if(at("NOT")) {
+				next();
+				return new NotNode(parseNot());
+			}
+			if(at("(")) {
+				next();
+				Node inner = parseOr();
+				if(!at(")")) {
+					throw new ParseException("Missing closing parenthesis", tokenStart);
+				}
+				next();
+				return inner;
+			}
+			return parseTerm();
+		}
+
+		/**
+		 * Parses a tag term or a date term.
+		 * @return	The parsed term.
+		 * @throws ParseException	If the term is not valid.
+		 */
+		Node parseTerm() throws ParseException {
+			String first = peek();
+			boolean firstQuoted = quoted;
+			int start = tokenStart;
+			if(first == null || (!firstQuoted && (isKeyword(first) || first.equals(")") || first.equals("=") || first.startsWith("<") || first.startsWith(">")))) {
+				throw new ParseException(first == null ? "Unexpected end of query" : "Expected a tag or date but found " + first, start);
+			}
+			next();
+			String operator = next();
+			String value = peek();
+			int valueStart = tokenStart;
+			if(!firstQuoted && first.equalsIgnoreCase("date")) {
+				return parseDate(operator, next(), valueStart);
+			}
+			if(!operator.equals("=")) {
+				throw new ParseException("Expected = after " + first, start);
+			}
+			if(value == null || (!quoted && (isKeyword(value) || value.equals("(") || value.equals(")")))) {
+				throw new ParseException("Expected a value for " + first, valueStart);
+			}
+			next();
+			return new TagTerm(first, value);
+		}
+
+		/**
+		 * Parses the range of a date term.
+		 * @param operator	The comparison between date and the value.
+		 * @param value	A day, or two days separated by .. when the operator is =.
+		 * @param valueStart	Position of the value in the query.
+		 * @return	The parsed term.
+		 * @throws ParseException	If the operator or the days are not valid.
+		 */
+		Node parseDate(String operator, String value, int valueStart) throws ParseException {
+			try {
+				if(operator.equals("=")) {
+					int dots = value.indexOf("..");
+					if(dots < 0) {
+						long day = LocalDate.parse(value).toEpochDay();
+						return new DateTerm(day, day);
+					}
+					return new DateTerm(LocalDate.parse(value.substring(0, dots)).toEpochDay(), LocalDate.parse(value.substring(dots + 2)).toEpochDay());
+				}
+				long day = LocalDate.parse(value).toEpochDay();
+				switch(operator) {
+				case "<":
+					return new DateTerm(LocalDate.MIN.toEpochDay(), day - 1);
+				case "<=":
+					return new DateTerm(LocalDate.MIN.toEpochDay(), day);
+				case ">":
+					return new DateTerm(day + 1, LocalDate.MAX.toEpochDay());
+				case ">=":
+					return new DateTerm(day, LocalDate.MAX.toEpochDay());
+				default:
+					throw new ParseException("Expected =, <, <=, > or >= after date", valueStart);
+				}
+			}
+			catch(DateTimeParseException e) {
+				throw new ParseException("Dates are written as yyyy-mm-dd, not " + value, valueStart);
+			}
+		}
+	}
+}
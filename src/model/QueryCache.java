@@ -0,0 +1,94 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small least recently used cache of search results, keyed by the canonical form of a PhotoQuery.
+ * Each result remembers the User's version when it was computed. The version changes on every change to the
+ * User's library, Tags or captions, so a result is only returned while nothing it could depend on has changed.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class QueryCache {
+
+	/**
+	 * Maximum number of results kept.
+	 */
+	private static final int CAPACITY = 64;
+
+	/**
+	 * A cached result.
+	 */
+	private static class Entry {
+		/**
+		 * User's version when the result was computed.
+		 */
+		long version;
+		/**
+		 * Ids of the matching Photos.
+		 */
+		PhotoBitmap ids;
+
+		/**
+		 * Constructor for Entry.
+		 * @param version	User's version when the result was computed.
+		 * @param ids	Ids of the matching Photos.
+		 */
+		Entry(long version, PhotoBitmap ids) {
+			this.version = version;
+			this.ids = ids;
+		}
+	}
+
+	/**
+	 * Cached results in order of use, the least recently used first.
+	 */
+	private LinkedHashMap<String, Entry> entries;
+
+	/**
+	 * Constructor for QueryCache.
+	 */
+	public QueryCache() {
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > CAPACITY;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cached result of a query if it is still up to date.
+	 * @param key	Canonical form of the query.
+	 * @param version	User's current version.
+	 * @return	Ids of the matching Photos, or null if the query was not cached or the User changed since. Must not be modified.
+	 */
+	public synchronized PhotoBitmap get(String key, long version) {
+		Entry entry = entries.get(key);
+		if(entry == null) {
+			return null;
+		}
+		// check if the User changed since the result was computed
+		if(entry.version != version) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.ids;
+	}
+
+	/**
+	 * Caches the result of a query, evicting the least recently used result if the cache is full.
+	 * @param key	Canonical form of the query.
+	 * @param version	User's version when the result was computed.
+	 * @param ids	Ids of the matching Photos.
+	 */
+	public synchronized void put(String key, long version, PhotoBitmap ids) {
+		entries.put(key, new Entry(version, ids));
+	}
+}
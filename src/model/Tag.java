@@ -26,6 +26,14 @@ public class Tag implements Serializable{
 	 * The value of the Tag.
 	 */
 	private String tagValue;
+	/**
+	 * Id of the tag type in the User's TagDictionary, or 0 if the Tag has not been interned.
+	 */
+	private transient int typeId;
+	/**
+	 * Id of the normalized tag value in the User's TagDictionary, or 0 if the Tag has not been interned.
+	 */
+	private transient int valueId;
 	
 	/**
 	 * Constructor for Tag.
@@ -51,6 +59,8 @@ public class Tag implements Serializable{
 	 */
 	public void setTagType(String tagType) {
 		this.tagType = tagType;
+		this.typeId = 0;
+		this.valueId = 0;
 	}
 
 	/**
@@ -67,6 +77,51 @@ public class Tag implements Serializable{
 	 */
 	public void setTagValue(String tagValue) {
 		this.tagValue = tagValue;
+		this.typeId = 0;
+		this.valueId = 0;
+	}
+	
+	/**
+	 * Returns reference to typeId.
+	 * @return	Id of the tag type, or 0 if the Tag has not been interned.
+	 */
+	public int getTypeId() {
+		return typeId;
+	}
+	
+	/**
+	 * Returns reference to valueId.
+	 * @return	Id of the normalized tag value, or 0 if the Tag has not been interned.
+	 */
+	public int getValueId() {
+		return valueId;
+	}
+	
+	/**
+	 * Sets the ids and shared strings of the Tag when it is interned by a TagDictionary.
+	 * @param typeId	Id of the tag type.
+	 * @param valueId	Id of the normalized tag value.
+	 * @param tagType	Shared copy of the type of the Tag.
+	 * @param tagValue	Shared copy of the value of the Tag.
+	 */
+	void intern(int typeId, int valueId, String tagType, String tagValue) {
+		this.typeId = typeId;
+		this.valueId = valueId;
+		this.tagType = tagType;
+		this.tagValue = tagValue;
+	}
+	
+	/**
+	 * Checks whether the Tag has the same type as another Tag and a value that only differs in case.
+	 * Tags interned by the same TagDictionary are compared by id.
+	 * @param other	Tag to be compared with.
+	 * @return	True if both Tags have the same type and value.
+	 */
+	public boolean matches(Tag other) {
+		if(typeId != 0 && other.typeId != 0) {
+			return typeId == other.typeId && valueId == other.valueId;
+		}
+		return tagType.equalsIgnoreCase(other.tagType) && TagDictionary.normalize(tagValue).equals(TagDictionary.normalize(other.tagValue));
 	}
 	
 	/**
@@ -0,0 +1,136 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Assigns integer ids to the tag types and normalized tag values used by a User.
+ * Tags are interned through the dictionary when they enter the User's library, after which
+ * comparing tag types or comparing tag values case-insensitively is a comparison of two ints,
+ * and every Tag with the same type or spelling shares a single String.
+ * Ids start at 1, so a Tag with an id of 0 has not been interned yet.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class TagDictionary {
+
+	/**
+	 * Maps each lowercase tag type to its id.
+	 */
+	private HashMap<String, Integer> typeIds;
+	/**
+	 * Name of each tag type, indexed by id.
+	 */
+	private ArrayList<String> types;
+	/**
+	 * Maps each normalized tag value to its id.
+	 */
+	private HashMap<String, Integer> valueIds;
+	/**
+	 * Every spelling of a tag value seen so far, each mapped to itself.
+	 */
+	private HashMap<String, String> spellings;
+
+	/**
+	 * Constructor for TagDictionary.
+	 */
+	public TagDictionary() {
+		typeIds = new HashMap<String, Integer>();
+		types = new ArrayList<String>();
+		// id 0 is never assigned
+		types.add(null);
+		valueIds = new HashMap<String, Integer>();
+		spellings = new HashMap<String, String>();
+	}
+
+	/**
+	 * Normalizes a tag value so that lookups are case-insensitive.
+	 * @param tagValue	The value of the Tag.
+	 * @return	The normalized value of the Tag.
+	 */
+	public static String normalize(String tagValue) {
+		return tagValue.trim().toLowerCase();
+	}
+
+	/**
+	 * Returns the id of the tag type, assigning one if the type is new.
+	 * Tag types are compared case-insensitively.
+	 * @param tagType	The type of a Tag.
+	 * @return	Id of the tag type.
+	 */
+	public int typeId(String tagType) {
+		String key = tagType.toLowerCase();
+		Integer id = typeIds.get(key);
+		if(id == null) {
+			id = types.size();
+			types.add(tagType);
+			typeIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the tag type without assigning one.
+	 * @param tagType	The type of a Tag.
+	 * @return	Id of the tag type, or 0 if it has not been seen.
+	 */
+	public int findType(String tagType) {
+		Integer id = typeIds.get(tagType.toLowerCase());
+		return id == null ? 0 : id;
+	}
+
+	/**
+	 * Returns the name of a tag type as it was first spelled.
+	 * @param id	Id of the tag type.
+	 * @return	Name of the tag type.
+	 */
+	public String typeName(int id) {
+		return types.get(id);
+	}
+
+	/**
+	 * Returns the id of the normalized tag value, assigning one if the value is new.
+	 * @param tagValue	The value of a Tag.
+	 * @return	Id of the tag value.
+	 */
+	public int valueId(String tagValue) {
+		String key = normalize(tagValue);
+		Integer id = valueIds.get(key);
+		if(id == null) {
+			id = valueIds.size() + 1;
+			valueIds.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the normalized tag value without assigning one.
+	 * @param tagValue	The value of a Tag.
+	 * @return	Id of the tag value, or 0 if it has not been seen.
+	 */
+	public int findValue(String tagValue) {
+		Integer id = valueIds.get(normalize(tagValue));
+		return id == null ? 0 : id;
+	}
+
+	/**
+	 * Gives the Tag the ids of its type and value and replaces its strings with the shared copies.
+	 * Tags that were already interned are left as they are.
+	 * @param tag	Tag to be interned.
+	 */
+	public void intern(Tag tag) {
+		if(tag.getTypeId() != 0) {
+			return;
+		}
+		int typeId = typeId(tag.getTagType());
+		String tagType = typeName(typeId).equals(tag.getTagType()) ? typeName(typeId) : tag.getTagType();
+		String tagValue = spellings.putIfAbsent(tag.getTagValue(), tag.getTagValue());
+		if(tagValue == null) {
+			tagValue = tag.getTagValue();
+		}
+		tag.intern(typeId, valueId(tagValue), tagType, tagValue);
+	}
+}
@@ -0,0 +1,178 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Inverted index from a Tag's type and normalized value to the Photos that carry that Tag.
+ * Tags are looked up by the ids their type and value have in the User's TagDictionary,
+ * and each posting list is a PhotoBitmap of the ids of the Photos.
+ * Used to answer tag searches without scanning every Album and Photo of a User.
+ * The values used with each tag type are also kept in a TagTrie, counted by how many Photos carry them,
+ * to suggest completions while a tag value is typed.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class TagIndex {
+
+	/**
+	 * Dictionary that Tags are interned in and that lookups are resolved through.
+	 */
+	private TagDictionary dictionary;
+	/**
+	 * Maps the ids of a tag type and normalized tag value, packed into one long, to the ids of the Photos that have that tag.
+	 */
+	private HashMap<Long, PhotoBitmap> postings;
+	/**
+	 * Maps the id of each tag type to the trie of the values used with it.
+	 */
+	private HashMap<Integer, TagTrie> completions;
+
+	/**
+	 * Constructor for TagIndex.
+	 * @param dictionary	Dictionary that Tags are interned in.
+	 */
+	public TagIndex(TagDictionary dictionary) {
+		this.dictionary = dictionary;
+		postings = new HashMap<Long, PhotoBitmap>();
+		completions = new HashMap<Integer, TagTrie>();
+	}
+
+	/**
+	 * Returns the key of a posting list.
+	 * @param typeId	Id of the tag type.
+	 * @param valueId	Id of the normalized tag value.
+	 * @return	Both ids packed into one long.
+	 */
+	private static long key(int typeId, int valueId) {
+		return ((long)typeId << 32) | valueId;
+	}
+
+	/**
+	 * Adds a Photo to the posting list of the given Tag, interning the Tag if it has not been interned yet.
+	 * @param tag	Tag that the Photo carries.
+	 * @param photo	Photo to be indexed.
+	 */
+	public void add(Tag tag, Photo photo) {
+		dictionary.intern(tag);
+		long key = key(tag.getTypeId(), tag.getValueId());
+		PhotoBitmap photos = postings.get(key);
+		if(photos == null) {
+			photos = new PhotoBitmap();
+			postings.put(key, photos);
+		}
+		// check if the Photo is new to the posting list, in which case the value is used once more
+		if(!photos.contains(photo.getId())) {
+			photos.add(photo.getId());
+			TagTrie values = completions.get(tag.getTypeId());
+			if(values == null) {
+				values = new TagTrie();
+				completions.put(tag.getTypeId(), values);
+			}
+			values.update(tag.getTagValue(), 1);
+		}
+	}
+
+	/**
+	 * Removes a Photo from the posting list of the given Tag.
+	 * Empty posting lists are dropped so the index does not grow with deleted tags.
+	 * @param tag	Tag that the Photo carried.
+	 * @param photo	Photo to be removed from the index.
+	 */
+	public void remove(Tag tag, Photo photo) {
+		dictionary.intern(tag);
+		long key = key(tag.getTypeId(), tag.getValueId());
+		PhotoBitmap photos = postings.get(key);
+		if(photos == null) {
+			return;
+		}
+		// check if the Photo was in the posting list, in which case the value is used once less
+		if(photos.contains(photo.getId())) {
+			photos.remove(photo.getId());
+			completions.get(tag.getTypeId()).update(tag.getTagValue(), -1);
+		}
+		if(photos.isEmpty()) {
+			postings.remove(key);
+		}
+	}
+
+	/**
+	 * Adds every Tag of the Photo to the index.
+	 * @param photo	Photo to be indexed.
+	 */
+	public void addPhoto(Photo photo) {
+		for(Tag tag : photo.getTags()) {
+			add(tag, photo);
+		}
+	}
+
+	/**
+	 * Removes every Tag of the Photo from the index.
+	 * @param photo	Photo to be removed from the index.
+	 */
+	public void removePhoto(Photo photo) {
+		for(Tag tag : photo.getTags()) {
+			remove(tag, photo);
+		}
+	}
+
+	/**
+	 * Returns the values used with a tag type that start with the given text, most used first.
+	 * @param tagType	The type of the Tag.
+	 * @param prefix	Start of the tag value, compared case-insensitively.
+	 * @param limit	Maximum number of values to return.
+	 * @return	Spellings of up to limit tag values.
+	 */
+	public List<String> complete(String tagType, String prefix, int limit) {
+		TagTrie values = completions.get(dictionary.findType(tagType));
+		if(values == null) {
+			return new ArrayList<String>();
+		}
+		return values.complete(prefix, limit);
+	}
+
+	/**
+	 * Returns the ids of the Photos that have a Tag with the given type and value.
+	 * @param tagType	The type of the Tag.
+	 * @param tagValue	The value of the Tag, compared case-insensitively.
+	 * @return	Ids of the matching Photos, empty if there are none. Must not be modified.
+	 */
+	public PhotoBitmap get(String tagType, String tagValue) {
+		int typeId = dictionary.findType(tagType);
+		int valueId = dictionary.findValue(tagValue);
+		// a type or value that was never seen cannot match any Photo
+		if(typeId == 0 || valueId == 0) {
+			return new PhotoBitmap();
+		}
+		PhotoBitmap photos = postings.get(key(typeId, valueId));
+		return photos == null ? new PhotoBitmap() : photos;
+	}
+
+	/**
+	 * Returns the ids of the Photos that have both of the given Tags.
+	 * @param type1	The type of the first Tag.
+	 * @param value1	The value of the first Tag.
+	 * @param type2	The type of the second Tag.
+	 * @param value2	The value of the second Tag.
+	 * @return	Ids of the Photos that have both Tags.
+	 */
+	public PhotoBitmap and(String type1, String value1, String type2, String value2) {
+		return get(type1, value1).and(get(type2, value2));
+	}
+
+	/**
+	 * Returns the ids of the Photos that have either of the given Tags.
+	 * @param type1	The type of the first Tag.
+	 * @param value1	The value of the first Tag.
+	 * @param type2	The type of the second Tag.
+	 * @param value2	The value of the second Tag.
+	 * @return	Ids of the Photos that have at least one of the Tags.
+	 */
+	public PhotoBitmap or(String type1, String value1, String type2, String value2) {
+		return get(type1, value1).or(get(type2, value2));
+	}
+}
@@ -0,0 +1,274 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Trie of the tag values used with one tag type, ranked by how many Photos carry each value.
+ * Values are stored normalized, and each value keeps the spelling it was first used with for display.
+ * Every node also keeps the highest count anywhere below it, so the most used completions of a prefix are found
+ * best first, visiting only the nodes on the way to the values that are returned rather than every value with the prefix.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class TagTrie {
+
+	/**
+	 * Node of the trie, holding the value that ends at it, if any.
+	 */
+	private static class Node {
+		/**
+		 * Characters leading to the children, kept sorted.
+		 */
+		char[] labels = new char[0];
+		/**
+		 * Children in the same order as labels.
+		 */
+		Node[] children = new Node[0];
+		/**
+		 * Number of Photos carrying the value that ends at this node.
+		 */
+		int count;
+		/**
+		 * Highest count of this node and every node below it.
+		 */
+		int best;
+		/**
+		 * Spelling of the value that ends at this node, or null if no value ends here.
+		 */
+		String spelling;
+
+		/**
+		 * Returns the position of a child in labels.
+		 * @param c	Character leading to the child.
+		 * @return	Position of the child, or (-(insertion point) - 1) if there is none, as in Arrays.binarySearch.
+		 */
+		int find(char c) {
+			return Arrays.binarySearch(labels, c);
+		}
+
+		/**
+		 * Recomputes best from count and the children.
+		 */
+		void updateBest() {
+			best = count;
+			for(Node child : children) {
+				best = Math.max(best, child.best);
+			}
+		}
+	}
+
+	/**
+	 * Entry of the search queue: either a subtree still to be explored or a value ready to be returned.
+	 */
+	private static class Candidate implements Comparable<Candidate> {
+		/**
+		 * Node that the entry refers to.
+		 */
+		Node node;
+		/**
+		 * True if the entry stands for the value ending at node, false for the whole subtree below it.
+		 */
+		boolean value;
+		/**
+		 * Count of the value, or the best count of the subtree.
+		 */
+		int priority;
+
+		/**
+		 * Constructor for Candidate.
+		 * @param node	Node that the entry refers to.
+		 * @param value	True if the entry stands for the value ending at node.
+		 */
+		Candidate(Node node, boolean value) {
+			this.node = node;
+			this.value = value;
+			this.priority = value ? node.count : node.best;
+		}
+
+		/**
+		 * Orders entries by descending priority, putting values ahead of subtrees with the same priority.
+		 * @param other	Entry to be compared with.
+		 * @return	Negative if this entry is taken first.
+		 */
+		@Override
+		public int compareTo(Candidate other) {
+			if(priority != other.priority) {
+				return Integer.compare(other.priority, priority);
+			}
+			return Boolean.compare(other.value, value);
+		}
+	}
+
+	/**
+	 * Root of the trie, standing for the empty prefix.
+	 */
+	private Node root;
+	/**
+	 * Number of distinct values in the trie.
+	 */
+	private int size;
+
+	/**
+	 * Constructor for TagTrie.
+	 */
+	public TagTrie() {
+		root = new Node();
+		size = 0;
+	}
+
+	/**
+	 * Returns reference to size.
+	 * @return	Number of distinct values in the trie.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Changes the number of Photos carrying a value, adding the value if it is new and dropping it once no Photo carries it.
+	 * @param value	The tag value, in any case.
+	 * @param delta	Amount the count changes by.
+	 */
+	public void update(String value, int delta) {
+		String key = TagDictionary.normalize(value);
+		// walk down to the value, creating nodes as needed and remembering the path
+		Node[] path = new Node[key.length() + 1];
+		path[0] = root;
+		Node node = root;
+		for(int i = 0; i < key.length(); i++) {
+			int pos = node.find(key.charAt(i));
+			if(pos < 0) {
+				if(delta <= 0) {
+					return;
+				}
+				pos = -pos - 1;
+				node.labels = insert(node.labels, pos, key.charAt(i));
+				node.children = insert(node.children, pos, new Node());
+			}
+			node = node.children[pos];
+			path[i + 1] = node;
+		}
+
+		if(node.count == 0 && delta > 0) {
+			size++;
+			node.spelling = value.trim();
+		}
+		node.count = Math.max(0, node.count + delta);
+		if(node.count == 0 && node.spelling != null) {
+			size--;
+			node.spelling = null;
+		}
+
+		// fix the best counts on the way back up, dropping nodes that no longer lead to a value
+		for(int i = key.length(); i >= 0; i--) {
+			Node current = path[i];
+			if(i > 0 && current.count == 0 && current.children.length == 0) {
+				Node parent = path[i - 1];
+				int pos = parent.find(key.charAt(i - 1));
+				parent.labels = delete(parent.labels, pos);
+				parent.children = delete(parent.children, pos);
+				continue;
+			}
+			current.updateBest();
+		}
+	}
+
+	/**
+	 * Returns the values that start with a prefix, most used first.
+	 * @param prefix	Start of the value, in any case.
+	 * @param limit	Maximum number of values to return.
+	 * @return	Spellings of up to limit values.
+	 */
+	public List<String> complete(String prefix, int limit) {
+		List<String> result = new ArrayList<String>();
+		String key = TagDictionary.normalize(prefix);
+		Node node = root;
+		for(int i = 0; i < key.length(); i++) {
+			int pos = node.find(key.charAt(i));
+			if(pos < 0) {
+				return result;
+			}
+			node = node.children[pos];
+		}
+
+		// explore best first, so values come off the queue in order of their counts
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+		queue.add(new Candidate(node, false));
+		while(!queue.isEmpty() && result.size() < limit) {
+			Candidate next = queue.poll();
+			if(next.value) {
+				result.add(next.node.spelling);
+				continue;
+			}
+			if(next.node.count > 0) {
+				queue.add(new Candidate(next.node, true));
+			}
+			for(Node child : next.node.children) {
+				queue.add(new Candidate(child, false));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the array with a character inserted.
+	 * @param array	Array to be copied.
+	 * @param pos	Position of the new character.
+	 * @param c	Character to be inserted.
+	 * @return	The new array.
+	 */
+	private static char[] insert(char[] array, int pos, char c) {
+		char[] result = new char[array.length + 1];
+		System.arraycopy(array, 0, result, 0, pos);
+		result[pos] = c;
+		System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the array with a Node inserted.
+	 * @param array	Array to be copied.
+	 * @param pos	Position of the new Node.
+	 * @param node	Node to be inserted.
+	 * @return	The new array.
+	 */
+	private static Node[] insert(Node[] array, int pos, Node node) {
+		Node[] result = new Node[array.length + 1];
+		System.arraycopy(array, 0, result, 0, pos);
+		result[pos] = node;
+		System.arraycopy(array, pos, result, pos + 1, array.length - pos);
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the array without the character at a position.
+	 * @param array	Array to be copied.
+	 * @param pos	Position of the character to be removed.
+	 * @return	The new array.
+	 */
+	private static char[] delete(char[] array, int pos) {
+		char[] result = new char[array.length - 1];
+		System.arraycopy(array, 0, result, 0, pos);
+		System.arraycopy(array, pos + 1, result, pos, array.length - pos - 1);
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the array without the Node at a position.
+	 * @param array	Array to be copied.
+	 * @param pos	Position of the Node to be removed.
+	 * @return	The new array.
+	 */
+	private static Node[] delete(Node[] array, int pos) {
+		Node[] result = new Node[array.length - 1];
+		System.arraycopy(array, 0, result, 0, pos);
+		System.arraycopy(array, pos + 1, result, pos, array.length - pos - 1);
+		return result;
+	}
+}
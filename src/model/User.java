@@ -1,7 +1,18 @@
 package model;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Used to store information that is relevant to Users.
@@ -30,6 +41,73 @@ public class User implements Serializable{
 	 * List of all tag types that the User created or have available.
 	 */
 	private ArrayList<String> tagTypes;
+	/**
+	 * Counts how many of this User's Albums that have been read contain each Photo.
+	 * A Photo is part of the User's library while its count is above zero.
+	 */
+	private transient IdentityHashMap<Photo, Integer> photoRefs;
+	/**
+	 * Whether every Album has been read and the Photos have ids and are in the search indexes.
+	 * Until then only the Albums that have been opened are read, and photosById, freeIds, libraryIds and the search indexes are empty.
+	 */
+	private transient boolean indexed;
+	/**
+	 * Photos in the User's library indexed by their id, with null for ids that are free.
+	 */
+	private transient ArrayList<Photo> photosById;
+	/**
+	 * Ids of Photos that left the library, reused so ids stay dense.
+	 */
+	private transient ArrayDeque<Integer> freeIds;
+	/**
+	 * Ids of every Photo in the User's library.
+	 */
+	private transient PhotoBitmap libraryIds;
+	/**
+	 * Assigns ids to the tag types and tag values used by the User.
+	 */
+	private transient TagDictionary tagDictionary;
+	/**
+	 * Ids of the tag types in tagTypes, used to check whether a tag type exists.
+	 */
+	private transient BitSet tagTypeIds;
+	/**
+	 * Inverted index of all Tags of the User's Photos, used for tag searches.
+	 */
+	private transient TagIndex tagIndex;
+	/**
+	 * Index of the User's Photos sorted by date, used for date range searches.
+	 */
+	private transient DateIndex dateIndex;
+	/**
+	 * N-gram index of the captions of the User's Photos, used for caption searches.
+	 */
+	private transient CaptionIndex captionIndex;
+	/**
+	 * Number of changes made to the User's library, Tags and captions since the User was read, used to tell whether
+	 * a cached search result is still up to date.
+	 */
+	private transient long version;
+	/**
+	 * Results of recent queries, valid while version is unchanged.
+	 */
+	private transient QueryCache queryCache;
+	/**
+	 * Maps the normalized location of every Photo in the Albums that have been read to the Photo, used to find existing Photos.
+	 */
+	private transient HashMap<String, Photo> photosByLocation;
+	/**
+	 * Maps the content hash of every hashed Photo in the Albums that have been read to the Photo, used to find the same image stored under another location.
+	 */
+	private transient HashMap<String, Photo> photosByHash;
+	/**
+	 * Journal that every change to the User is appended to until the User is next written out in full.
+	 */
+	private transient UserJournal journal;
+	/**
+	 * Number of times the User has been written out in full, used to match the journal to the saved file.
+	 */
+	private transient long generation;
 	
 	/**
 	 * String that holds name of directory that the serialized files are stored in.
@@ -52,6 +130,7 @@ public class User implements Serializable{
 		tagTypes.add("location");
 		
 		storeFile = username + ".dat";
+		rebuildIndexes();
 	}
 	
 	/**
@@ -78,6 +157,660 @@ public class User implements Serializable{
 		return tagTypes;
 	}
 	
+	/**
+	 * Sets the tag types that the User created or have available.
+	 * @param tagTypes	List of all tag types that the User created or have available.
+	 */
+	public void setTagTypes(ArrayList<String> tagTypes) {
+		this.tagTypes = tagTypes;
+		tagTypeIds = new BitSet();
+		for(String tagType : tagTypes) {
+			tagTypeIds.set(tagDictionary.typeId(tagType));
+		}
+	}
+	
+	/**
+	 * Checks whether the User already has a tag type, ignoring case.
+	 * @param tagType	The tag type to be checked.
+	 * @return	True if the tag type is in tagTypes.
+	 */
+	public boolean hasTagType(String tagType) {
+		int id = tagDictionary.findType(tagType);
+		return id != 0 && tagTypeIds.get(id);
+	}
+	
+	/**
+	 * Returns reference to tagDictionary.
+	 * @return	Dictionary of the tag types and tag values used by the User.
+	 */
+	public TagDictionary getTagDictionary() {
+		return tagDictionary;
+	}
+	
+	/**
+	 * Returns reference to tagIndex.
+	 * The indexes are built first if they have not been yet.
+	 * @return	Inverted index of all Tags of the User's Photos.
+	 */
+	public TagIndex getTagIndex() {
+		ensureIndexed();
+		return tagIndex;
+	}
+	
+	/**
+	 * Returns reference to dateIndex.
+	 * The indexes are built first if they have not been yet.
+	 * @return	Index of the User's Photos sorted by date.
+	 */
+	public DateIndex getDateIndex() {
+		ensureIndexed();
+		return dateIndex;
+	}
+	
+	/**
+	 * Returns reference to version.
+	 * @return	Number of changes made to the User's library, Tags and captions since the User was read.
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns reference to queryCache.
+	 * @return	Results of recent queries.
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+	
+	/**
+	 * Returns reference to captionIndex.
+	 * The indexes are built first if they have not been yet.
+	 * @return	N-gram index of the captions of the User's Photos.
+	 */
+	public CaptionIndex getCaptionIndex() {
+		ensureIndexed();
+		return captionIndex;
+	}
+	
+	/**
+	 * Adds a new Album to the User.
+	 * @param album	Album to be added.
+	 */
+	public void addAlbum(Album album) {
+		albums.add(album);
+		if(journal != null) {
+			journal.addAlbum(album.getName());
+		}
+		for(Photo photo : album.getPhotos()) {
+			indexPhoto(photo);
+			if(journal != null) {
+				journal.addPhoto(albums.size() - 1, photo);
+			}
+		}
+	}
+	
+	/**
+	 * Removes the Album at the given index along with its references to Photos.
+	 * @param index	Index of the Album to be removed.
+	 */
+	public void removeAlbum(int index) {
+		Album album = albums.remove(index);
+		if(journal != null) {
+			journal.removeAlbum(index);
+		}
+		// an Album that was never read has no Photos in the indexes
+		if(album.isLoaded()) {
+			for(Photo photo : album.getPhotos()) {
+				unindexPhoto(photo);
+			}
+		}
+	}
+	
+	/**
+	 * Renames one of the User's Albums.
+	 * @param album	Album to be renamed.
+	 * @param name	New name of the Album.
+	 */
+	public void renameAlbum(Album album, String name) {
+		album.setName(name);
+		if(journal != null) {
+			journal.renameAlbum(albums.indexOf(album), name);
+		}
+	}
+	
+	/**
+	 * Adds a Photo to one of the User's Albums and updates the indexes.
+	 * Only the Album is read if it has not been yet.
+	 * @param album	Album that the Photo is added to.
+	 * @param photo	Photo to be added.
+	 */
+	public void addPhoto(Album album, Photo photo) {
+		album.addPhoto(photo);
+		indexPhoto(photo);
+		if(journal != null) {
+			journal.addPhoto(albums.indexOf(album), photo);
+		}
+	}
+	
+	/**
+	 * Adds a batch of Photos to one of the User's Albums and updates the indexes.
+	 * @param album	Album that the Photos are added to.
+	 * @param newPhotos	Photos to be added, in order.
+	 */
+	public void addPhotos(Album album, List<Photo> newPhotos) {
+		for(Photo photo : newPhotos) {
+			addPhoto(album, photo);
+		}
+	}
+	
+	/**
+	 * Removes the Photo at the given index from one of the User's Albums and updates the indexes.
+	 * Only the Album is read if it has not been yet.
+	 * @param album	Album that the Photo is removed from.
+	 * @param index	Index of the Photo within the Album.
+	 */
+	public void removePhoto(Album album, int index) {
+		Photo photo = album.getPhotos().get(index);
+		album.removePhoto(index);
+		unindexPhoto(photo);
+		if(journal != null) {
+			journal.removePhoto(albums.indexOf(album), index);
+		}
+	}
+	
+	/**
+	 * Removes the given Photos from every one of the User's Albums, so they leave the library.
+	 * @param removed	Photos to be removed.
+	 */
+	public void removePhotos(Collection<Photo> removed) {
+		ensureAllLoaded();
+		Set<Photo> photos = Collections.newSetFromMap(new IdentityHashMap<Photo, Boolean>());
+		photos.addAll(removed);
+		for(Album album : albums) {
+			// go from the end so the indexes of the Photos still to be checked do not shift
+			for(int i = album.getPhotos().size() - 1; i >= 0; i--) {
+				if(photos.contains(album.getPhotos().get(i))) {
+					removePhoto(album, i);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Changes the caption of a Photo.
+	 * @param photo	Photo whose caption is changed.
+	 * @param caption	New caption of the Photo.
+	 */
+	public void setCaption(Photo photo, String caption) {
+		// check if the Photo is in the library, in which case its caption has to be reindexed
+		boolean inLibrary = photoRefs.containsKey(photo);
+		if(inLibrary && indexed) {
+			captionIndex.remove(photo);
+		}
+		photo.setCaption(caption);
+		if(inLibrary) {
+			if(indexed) {
+				captionIndex.add(photo);
+			}
+			version++;
+		}
+		if(journal != null) {
+			journal.setCaption(photo);
+		}
+	}
+	
+	/**
+	 * Records the perceptual hash of a Photo's thumbnail.
+	 * @param photo	Photo whose thumbnail was hashed.
+	 * @param perceptualHash	Perceptual hash of the Photo's thumbnail.
+	 */
+	public void setPerceptualHash(Photo photo, long perceptualHash) {
+		photo.setPerceptualHash(perceptualHash);
+		if(journal != null) {
+			journal.setPerceptualHash(photo);
+		}
+	}
+	
+	/**
+	 * Records the date, size and orientation read from the file of a Photo that was saved before they were read.
+	 * The date ranges of the Albums holding the Photo and the date index are updated if the date changed.
+	 * @param photo	Photo whose file was read.
+	 * @param date	Date the photo was taken in epoch milliseconds.
+	 * @param width	Width of the Photo in pixels, or 0 if unknown.
+	 * @param height	Height of the Photo in pixels, or 0 if unknown.
+	 * @param orientation	EXIF orientation of the Photo, from 1 for upright to 8, or 0 if unknown.
+	 */
+	public void setMetadata(Photo photo, long date, int width, int height, int orientation) {
+		boolean inLibrary = photoRefs.containsKey(photo);
+		long oldDate = photo.getDate();
+		if(date != oldDate) {
+			if(inLibrary && indexed) {
+				dateIndex.remove(photo);
+			}
+			photo.setDate(date);
+			if(inLibrary && indexed) {
+				dateIndex.add(photo);
+			}
+			// Albums that have not been read take the new date when they are
+			for(Album album : albums) {
+				if(album.isLoaded() && album.containsPhoto(photo)) {
+					album.photoDateChanged(oldDate, date);
+				}
+			}
+		}
+		photo.setDimensions(width, height);
+		photo.setOrientation(orientation);
+		if(inLibrary) {
+			version++;
+		}
+		if(journal != null) {
+			journal.setMetadata(photo);
+		}
+	}
+	
+	/**
+	 * Adds a Tag to a Photo and updates the indexes.
+	 * @param photo	Photo that the Tag is added to.
+	 * @param tag	Tag to be added.
+	 */
+	public void addTag(Photo photo, Tag tag) {
+		tagDictionary.intern(tag);
+		photo.getTags().add(tag);
+		if(photoRefs.containsKey(photo)) {
+			if(indexed) {
+				tagIndex.add(tag, photo);
+			}
+			version++;
+		}
+		if(journal != null) {
+			journal.addTag(photo, tag);
+		}
+	}
+	
+	/**
+	 * Removes the Tag at the given index from a Photo and updates the indexes.
+	 * @param photo	Photo that the Tag is removed from.
+	 * @param index	Index of the Tag within the Photo.
+	 */
+	public void removeTag(Photo photo, int index) {
+		Tag tag = photo.getTags().remove(index);
+		if(photoRefs.containsKey(photo)) {
+			if(indexed) {
+				tagIndex.remove(tag, photo);
+			}
+			version++;
+		}
+		if(journal != null) {
+			journal.removeTag(photo, index);
+		}
+	}
+	
+	/**
+	 * Adds a new tag type that can be used among all of the User's Albums.
+	 * @param tagType	The new tag type.
+	 */
+	public void addTagType(String tagType) {
+		tagTypes.add(tagType);
+		tagTypeIds.set(tagDictionary.typeId(tagType));
+		if(journal != null) {
+			journal.addTagType(tagType);
+		}
+	}
+	
+	/**
+	 * Returns the Photo in the User's library that is stored at the given location.
+	 * Locations are compared case-insensitively, as when adding a Photo to an Album.
+	 * If no Album that has been read holds the Photo, only the Albums whose directory lists the location are read.
+	 * @param location	Location of the Photo on the disk.
+	 * @return	The Photo at that location, or null if none of the User's Albums contain one.
+	 */
+	public Photo findPhoto(String location) {
+		String normalized = normalizeLocation(location);
+		Photo photo = photosByLocation.get(normalized);
+		if(photo == null && loadAlbumsWithLocation(normalized)) {
+			photo = photosByLocation.get(normalized);
+		}
+		return photo;
+	}
+	
+	/**
+	 * Returns the Photo in the User's library whose file has the given contents, wherever it is stored.
+	 * If no Album that has been read holds the Photo, only the Albums whose directory lists the hash are read.
+	 * @param hash	Hex encoded SHA-256 hash of the contents of a file.
+	 * @return	A Photo with that hash, or null if none of the User's Albums contain one.
+	 */
+	public Photo findPhotoByHash(String hash) {
+		Photo photo = photosByHash.get(hash);
+		if(photo == null) {
+			long key = UserStore.key(hash);
+			boolean loaded = false;
+			try {
+				for(Album album : albums) {
+					if(album.mayHoldUnreadHash(key)) {
+						album.load();
+						loaded = true;
+					}
+				}
+			}
+			catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if(loaded) {
+				photo = photosByHash.get(hash);
+			}
+		}
+		return photo;
+	}
+	
+	/**
+	 * Records the content hash of a Photo that was saved before it was hashed.
+	 * @param photo	Photo whose file was hashed.
+	 * @param hash	Hex encoded SHA-256 hash of the contents of the Photo's file.
+	 */
+	public void setHash(Photo photo, String hash) {
+		// check if the Photo is in the library, in which case the hash index is updated
+		boolean inLibrary = photoRefs.containsKey(photo);
+		if(inLibrary && photo.getHash() != null) {
+			photosByHash.remove(photo.getHash(), photo);
+		}
+		photo.setHash(hash);
+		if(inLibrary) {
+			photosByHash.putIfAbsent(hash, photo);
+		}
+		if(journal != null) {
+			journal.setHash(photo);
+		}
+	}
+	
+	/**
+	 * Returns the ids of every Photo in the User's library.
+	 * The indexes are built first if they have not been yet.
+	 * @return	Ids of the User's Photos. Must not be modified.
+	 */
+	public PhotoBitmap getLibraryIds() {
+		ensureIndexed();
+		return libraryIds;
+	}
+	
+	/**
+	 * Returns the Photo in the User's library with the given id.
+	 * Photos only have ids once the indexes have been built.
+	 * @param id	Id of the Photo.
+	 * @return	The Photo, or null if no Photo has that id.
+	 */
+	public Photo getPhoto(int id) {
+		return id >= 0 && id < photosById.size() ? photosById.get(id) : null;
+	}
+	
+	/**
+	 * Returns the Photos with the given ids, in order of id.
+	 * @param ids	Ids of Photos in the User's library.
+	 * @return	List of the Photos.
+	 */
+	public ArrayList<Photo> getPhotos(PhotoBitmap ids) {
+		ArrayList<Photo> photos = new ArrayList<Photo>(ids.cardinality());
+		ids.forEach(id -> photos.add(photosById.get(id)));
+		return photos;
+	}
+	
+	/**
+	 * Normalizes a location so that the same file is always found under the same key.
+	 * @param location	Location of the Photo on the disk.
+	 * @return	The normalized location.
+	 */
+	public static String normalizeLocation(String location) {
+		return Paths.get(location).toAbsolutePath().normalize().toString().toLowerCase();
+	}
+	
+	/**
+	 * Checks whether the Photo is in any of the User's Albums.
+	 * @param photo	Photo to be checked.
+	 * @return	True if at least one Album contains the Photo.
+	 */
+	public boolean containsPhoto(Photo photo) {
+		// an Album that has not been read may hold the Photo only if its directory lists the location
+		if(!photoRefs.containsKey(photo)) {
+			loadAlbumsWithLocation(normalizeLocation(photo.getLocation()));
+		}
+		return photoRefs.containsKey(photo);
+	}
+	
+	/**
+	 * Reads the Photos of every Album that has not been read yet.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void loadAllAlbums() throws IOException {
+		for(Album album : albums) {
+			album.load();
+		}
+	}
+	
+	/**
+	 * Reads every Album and builds the indexes used to search the whole library, if this has not been done yet.
+	 * Photos are given ids in the order of the Albums, and from then on the indexes are kept up to date as the User changes.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void buildIndexes() throws IOException {
+		if(indexed) {
+			return;
+		}
+		loadAllAlbums();
+		for(Album album : albums) {
+			for(Photo photo : album.getPhotos()) {
+				// check if the Photo was already indexed through an earlier Album
+				if(photo.getId() < 0) {
+					addToSearchIndexes(photo);
+				}
+			}
+		}
+		indexed = true;
+	}
+	
+	/**
+	 * Checks whether the indexes used to search the whole library have been built.
+	 * @return	True if every Album has been read and indexed.
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+	
+	/**
+	 * Checks whether the Photos of every Album have been read.
+	 * @return	True if no Album is waiting to be read.
+	 */
+	public boolean isFullyLoaded() {
+		for(Album album : albums) {
+			if(!album.isLoaded()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Reads every Album before removing Photos from all of them, for methods that cannot throw IOException.
+	 */
+	private void ensureAllLoaded() {
+		try {
+			loadAllAlbums();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Builds the indexes used to search the whole library before they are returned, for methods that cannot throw IOException.
+	 */
+	private void ensureIndexed() {
+		try {
+			buildIndexes();
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Reads the Albums that have not been read yet and whose directory lists the location.
+	 * @param normalized	Normalized location of a Photo.
+	 * @return	True if any Album was read.
+	 */
+	private boolean loadAlbumsWithLocation(String normalized) {
+		long key = UserStore.key(normalized);
+		boolean loaded = false;
+		try {
+			for(Album album : albums) {
+				if(album.mayHoldUnreadLocation(key)) {
+					album.load();
+					loaded = true;
+				}
+			}
+		}
+		catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return loaded;
+	}
+	
+	/**
+	 * Adds the Photos of an Album that was just read to the indexes.
+	 * @param album	Album whose Photos were read.
+	 */
+	void albumLoaded(Album album) {
+		for(Photo photo : album.getPhotos()) {
+			indexPhoto(photo);
+		}
+	}
+	
+	/**
+	 * Returns reference to generation.
+	 * @return	Number of times the User has been written out in full.
+	 */
+	long getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Sets the generation of the User when it is read.
+	 * @param generation	Number of times the User has been written out in full.
+	 */
+	void setGeneration(long generation) {
+		this.generation = generation;
+	}
+	
+	/**
+	 * Records that one more Album references the Photo.
+	 * The Photo is added to the indexes the first time it enters the library.
+	 * @param photo	Photo that was added to an Album.
+	 */
+	private void indexPhoto(Photo photo) {
+		Integer count = photoRefs.get(photo);
+		if(count == null) {
+			photoRefs.put(photo, 1);
+			if(indexed) {
+				addToSearchIndexes(photo);
+			}
+			photosByLocation.putIfAbsent(normalizeLocation(photo.getLocation()), photo);
+			if(photo.getHash() != null) {
+				photosByHash.putIfAbsent(photo.getHash(), photo);
+			}
+			version++;
+		}
+		else {
+			photoRefs.put(photo, count + 1);
+		}
+	}
+	
+	/**
+	 * Records that one less Album references the Photo.
+	 * The Photo is removed from the indexes once no Album references it.
+	 * @param photo	Photo that was removed from an Album.
+	 */
+	private void unindexPhoto(Photo photo) {
+		Integer count = photoRefs.get(photo);
+		if(count == null) {
+			return;
+		}
+		if(count == 1) {
+			photoRefs.remove(photo);
+			if(indexed) {
+				tagIndex.removePhoto(photo);
+				dateIndex.remove(photo);
+				captionIndex.remove(photo);
+				libraryIds.remove(photo.getId());
+				photosById.set(photo.getId(), null);
+				freeIds.push(photo.getId());
+				photo.setId(-1);
+			}
+			photosByLocation.remove(normalizeLocation(photo.getLocation()), photo);
+			if(photo.getHash() != null) {
+				photosByHash.remove(photo.getHash(), photo);
+			}
+			version++;
+		}
+		else {
+			photoRefs.put(photo, count - 1);
+		}
+	}
+	
+	/**
+	 * Gives a Photo that entered the library an id and adds it to the indexes used to search the whole library.
+	 * @param photo	Photo to be added.
+	 */
+	private void addToSearchIndexes(Photo photo) {
+		// reuse a free id so ids stay dense
+		int id = freeIds.isEmpty() ? photosById.size() : freeIds.pop();
+		if(id == photosById.size()) {
+			photosById.add(photo);
+		}
+		else {
+			photosById.set(id, photo);
+		}
+		photo.setId(id);
+		libraryIds.add(id);
+		tagIndex.addPhoto(photo);
+		dateIndex.add(photo);
+		captionIndex.add(photo);
+	}
+	
+	/**
+	 * Rebuilds the indexes of the Albums that have been read, leaving the indexes used to search the whole library to be built when first needed.
+	 * Indexes are not serialized, so this is done after construction and after deserialization.
+	 */
+	private void rebuildIndexes() {
+		photoRefs = new IdentityHashMap<Photo, Integer>();
+		tagDictionary = new TagDictionary();
+		tagIndex = new TagIndex(tagDictionary);
+		setTagTypes(tagTypes);
+		photosById = new ArrayList<Photo>();
+		freeIds = new ArrayDeque<Integer>();
+		libraryIds = new PhotoBitmap();
+		dateIndex = new DateIndex(photosById);
+		captionIndex = new CaptionIndex(photosById);
+		queryCache = new QueryCache();
+		photosByLocation = new HashMap<String, Photo>();
+		photosByHash = new HashMap<String, Photo>();
+		indexed = false;
+		for(Album album : albums) {
+			if(album.isLoaded()) {
+				albumLoaded(album);
+			}
+		}
+	}
+	
+	/**
+	 * Restores the User from a stream and rebuilds the transient indexes.
+	 * @param ois	Stream the User is read from.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException.
+	 */
+	private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+		ois.defaultReadObject();
+		rebuildIndexes();
+	}
+	
 	/**
 	 * Returns the User's username.
 	 */
@@ -86,26 +819,62 @@ public class User implements Serializable{
 	}
 	
 	/**
-	 * Used to serialize User object for persistence.
+	 * Used to save User object for persistence.
+	 * Changes are already in the journal, so this only forces the journal to disk,
+	 * unless the journal has grown large enough that the User is written out in full.
 	 * @throws IOException	Used to throw IOException relating to streams.
 	 */
 	public void writeUser() throws IOException{
-		ObjectOutputStream oos= new ObjectOutputStream(new FileOutputStream(storeDir+ File.separator+ storeFile));
-		oos.writeObject(this);
-		oos.close();
+		Path file = Paths.get(storeDir, storeFile);
+		if(journal == null || !Files.exists(file) || journal.shouldCompact(Files.size(file))) {
+			compact();
+		}
+		else {
+			journal.sync();
+		}
+	}
+	
+	/**
+	 * Writes the User out in full and clears the journal.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void compact() throws IOException{
+		Path file = Paths.get(storeDir, storeFile);
+		if(journal != null) {
+			journal.close();
+		}
+		generation++;
+		UserStore.write(this, file);
+		journal = UserJournal.create(UserJournal.journalFile(file), generation);
 	}
 	
 	/**
-	 * Used to deserialize .dat file to retrieve saved User object.
-	 * @param username	The name of the user that is to be serialized.
+	 * Saves the User and closes its journal, used when the User logs out.
+	 * If every Album has been read anyway, any changes are written out in full so the next login does not have to replay them.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void close() throws IOException{
+		if(journal != null && journal.getSize() > 0 && isFullyLoaded()) {
+			compact();
+		}
+		else {
+			writeUser();
+		}
+		journal.close();
+	}
+	
+	/**
+	 * Used to read .dat file to retrieve saved User object.
+	 * Changes recorded in the User's journal since it was last written out in full are applied.
+	 * @param username	The name of the user that is to be read.
 	 * @return	Reference to the saved User object.
 	 * @throws IOException	Used to throw IOException relating to streams.
-	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException when reading a file saved by an older version.
 	 */
 	public static User readUser(String username) throws IOException, ClassNotFoundException{
-		ObjectInputStream ois= new ObjectInputStream(new FileInputStream(storeDir+ File.separator+ username + ".dat"));
-		User user= (User)ois.readObject();
-		ois.close();
+		Path file = Paths.get(storeDir, username + ".dat");
+		User user = UserStore.read(file);
+		user.journal = UserJournal.replay(UserJournal.journalFile(file), user, user.generation);
 		return user;
 	}
 }
@@ -0,0 +1,644 @@
+package model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to a User since its file was last written by UserStore.
+ * Every change is appended as its own record when it is made, so saving costs as much as the change rather than the whole library.
+ * When the journal grows too large compared to the saved User, the User is written out again and the journal is cleared.
+ * Each record is stored as its length, a CRC32 checksum and the record itself, so a record cut off by a crash is detected and dropped.
+ * The journal starts with the generation of the User's file it belongs to, so a journal left over from before the last compaction is never replayed twice.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class UserJournal {
+
+	/**
+	 * Record for a new Album.
+	 */
+	private static final byte ADD_ALBUM = 1;
+	/**
+	 * Record for a deleted Album.
+	 */
+	private static final byte REMOVE_ALBUM = 2;
+	/**
+	 * Record for a renamed Album.
+	 */
+	private static final byte RENAME_ALBUM = 3;
+	/**
+	 * Record for a Photo added to an Album.
+	 */
+	private static final byte ADD_PHOTO = 4;
+	/**
+	 * Record for a Photo removed from an Album.
+	 */
+	private static final byte REMOVE_PHOTO = 5;
+	/**
+	 * Record for a changed caption.
+	 */
+	private static final byte SET_CAPTION = 6;
+	/**
+	 * Record for a Tag added to a Photo.
+	 */
+	private static final byte ADD_TAG = 7;
+	/**
+	 * Record for a Tag removed from a Photo.
+	 */
+	private static final byte REMOVE_TAG = 8;
+	/**
+	 * Record for a new tag type.
+	 */
+	private static final byte ADD_TAG_TYPE = 9;
+	/**
+	 * Record for the content hash of a Photo.
+	 */
+	private static final byte SET_HASH = 10;
+	/**
+	 * Record for the perceptual hash of a Photo.
+	 */
+	private static final byte SET_PERCEPTUAL_HASH = 11;
+	/**
+	 * Record for the date, size and orientation read from the file of a Photo.
+	 */
+	private static final byte SET_METADATA = 12;
+
+	/**
+	 * The journal is never compacted while it is smaller than this many bytes.
+	 */
+	private static final long MIN_COMPACT_SIZE = 64 * 1024;
+
+	/**
+	 * Location of the journal on the disk.
+	 */
+	private Path file;
+	/**
+	 * Channel that records are appended to, opened when the first record is written.
+	 */
+	private FileChannel channel;
+	/**
+	 * Number of bytes of valid records in the journal.
+	 */
+	private long size;
+	/**
+	 * True if a record could not be written, in which case the User must be written out in full.
+	 */
+	private boolean failed;
+	/**
+	 * Buffer that the record currently being written is built in.
+	 */
+	private ByteArrayOutputStream record;
+	/**
+	 * Generation of the User's file that the records apply to.
+	 */
+	private long generation;
+
+	/**
+	 * Constructor for UserJournal.
+	 * @param file	Location of the journal on the disk.
+	 * @param size	Number of bytes of valid records already in the journal.
+	 * @param generation	Generation of the User's file that the records apply to.
+	 */
+	private UserJournal(Path file, long size, long generation) {
+		this.file = file;
+		this.size = size;
+		this.generation = generation;
+		this.failed = false;
+		this.record = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Returns the location of the journal belonging to a User's file.
+	 * @param userFile	Location of the User's file.
+	 * @return	Location of the journal.
+	 */
+	public static Path journalFile(Path userFile) {
+		String name = userFile.getFileName().toString();
+		if(name.endsWith(".dat")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return userFile.resolveSibling(name + ".journal");
+	}
+
+	/**
+	 * Creates an empty journal, deleting any records left in the file.
+	 * @param file	Location of the journal on the disk.
+	 * @param generation	Generation of the User's file that was just written.
+	 * @return	The empty journal.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static UserJournal create(Path file, long generation) throws IOException {
+		Files.deleteIfExists(file);
+		return new UserJournal(file, 0, generation);
+	}
+
+	/**
+	 * Applies every record in the journal to the User and returns the journal so further changes can be appended.
+	 * A record that was cut off, damaged, or refers to an Album or Photo that does not exist ends the replay and is removed from the file,
+	 * along with every record after it.
+	 * A journal written for another generation of the User's file is already part of that file and is discarded.
+	 * @param file	Location of the journal on the disk.
+	 * @param user	User that was just read from its file.
+	 * @param generation	Generation of the User's file that was read.
+	 * @return	The journal holding the replayed records.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static UserJournal replay(Path file, User user, long generation) throws IOException {
+		if(!Files.exists(file)) {
+			return new UserJournal(file, 0, generation);
+		}
+		long valid = 0;
+		boolean stale;
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			try {
+				stale = in.readLong() != generation;
+			}
+			catch(EOFException e) {
+				stale = true;
+			}
+			CRC32 crc = new CRC32();
+			while(!stale) {
+				int length;
+				int checksum;
+				byte[] record;
+				try {
+					length = in.readInt();
+					checksum = in.readInt();
+					if(length <= 0) {
+						break;
+					}
+					record = new byte[length];
+					in.readFully(record);
+				}
+				catch(EOFException e) {
+					break;
+				}
+				crc.reset();
+				crc.update(record);
+				if((int)crc.getValue() != checksum) {
+					break;
+				}
+				// a record that refers to something the User does not have is as damaged as one that fails its checksum
+				if(!apply(new DataInputStream(new ByteArrayInputStream(record)), user)) {
+					break;
+				}
+				valid += 8 + length;
+			}
+		}
+		if(stale) {
+			return create(file, generation);
+		}
+		if(8 + valid < Files.size(file)) {
+			try(FileChannel truncate = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				truncate.truncate(8 + valid);
+			}
+		}
+		return new UserJournal(file, valid, generation);
+	}
+
+	/**
+	 * Applies a single record to the User.
+	 * Nothing is changed if the record refers to an Album, Photo or Tag that does not exist.
+	 * @param in	Stream holding the record.
+	 * @param user	User that the record is applied to.
+	 * @return	True if the record was applied, false if it is damaged.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static boolean apply(DataInputStream in, User user) throws IOException {
+		byte type = in.readByte();
+		switch(type) {
+		case ADD_ALBUM:
+			user.addAlbum(new Album(in.readUTF()));
+			return true;
+		case REMOVE_ALBUM: {
+			int index = in.readInt();
+			if(findAlbum(user, index) == null) {
+				return false;
+			}
+			user.removeAlbum(index);
+			return true;
+		}
+		case RENAME_ALBUM: {
+			Album album = findAlbum(user, in.readInt());
+			if(album == null) {
+				return false;
+			}
+			user.renameAlbum(album, in.readUTF());
+			return true;
+		}
+		case ADD_PHOTO: {
+			Album album = findAlbum(user, in.readInt());
+			if(album == null) {
+				return false;
+			}
+			String location = in.readUTF();
+			String caption = in.readUTF();
+			long date = in.readLong();
+			String hash = in.readBoolean() ? in.readUTF() : null;
+			boolean hasPerceptualHash = in.readBoolean();
+			long perceptualHash = hasPerceptualHash ? in.readLong() : 0;
+			int width = in.readInt();
+			int height = in.readInt();
+			int orientation = in.readByte();
+			// reuse the Photo if another Album still holds it, as adding a Photo does
+			Photo photo = user.findPhoto(location);
+			if(photo == null) {
+				photo = new Photo(location, caption, date);
+				photo.setHash(hash);
+				if(hasPerceptualHash) {
+					photo.setPerceptualHash(perceptualHash);
+				}
+				photo.setDimensions(width, height);
+				photo.setOrientation(orientation);
+			}
+			user.addPhoto(album, photo);
+			return true;
+		}
+		case REMOVE_PHOTO: {
+			Album album = findAlbum(user, in.readInt());
+			int index = in.readInt();
+			if(album == null || index < 0 || index >= album.getPhotos().size()) {
+				return false;
+			}
+			user.removePhoto(album, index);
+			return true;
+		}
+		case SET_CAPTION: {
+			Photo photo = user.findPhoto(in.readUTF());
+			if(photo == null) {
+				return false;
+			}
+			user.setCaption(photo, in.readUTF());
+			return true;
+		}
+		case ADD_TAG: {
+			Photo photo = user.findPhoto(in.readUTF());
+			if(photo == null) {
+				return false;
+			}
+			user.addTag(photo, new Tag(in.readUTF(), in.readUTF()));
+			return true;
+		}
+		case REMOVE_TAG: {
+			Photo photo = user.findPhoto(in.readUTF());
+			int index = in.readInt();
+			if(photo == null || index < 0 || index >= photo.getTags().size()) {
+				return false;
+			}
+			user.removeTag(photo, index);
+			return true;
+		}
+		case ADD_TAG_TYPE:
+			user.addTagType(in.readUTF());
+			return true;
+		case SET_HASH: {
+			Photo photo = user.findPhoto(in.readUTF());
+			if(photo == null) {
+				return false;
+			}
+			user.setHash(photo, in.readUTF());
+			return true;
+		}
+		case SET_PERCEPTUAL_HASH: {
+			Photo photo = user.findPhoto(in.readUTF());
+			if(photo == null) {
+				return false;
+			}
+			user.setPerceptualHash(photo, in.readLong());
+			return true;
+		}
+		case SET_METADATA: {
+			Photo photo = user.findPhoto(in.readUTF());
+			if(photo == null) {
+				return false;
+			}
+			user.setMetadata(photo, in.readLong(), in.readInt(), in.readInt(), in.readByte());
+			return true;
+		}
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the Album that a record refers to by index.
+	 * @param user	User that the record is applied to.
+	 * @param index	Index of the Album.
+	 * @return	The Album, or null if the User has no Album at that index.
+	 */
+	private static Album findAlbum(User user, int index) {
+		return index >= 0 && index < user.getAlbums().size() ? user.getAlbums().get(index) : null;
+	}
+
+	/**
+	 * Returns reference to size.
+	 * @return	Number of bytes of valid records in the journal.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns reference to failed.
+	 * @return	True if a record could not be written.
+	 */
+	public boolean hasFailed() {
+		return failed;
+	}
+
+	/**
+	 * Checks whether the journal has grown large enough that the User should be written out again.
+	 * @param userFileSize	Size of the User's file in bytes.
+	 * @return	True if the journal should be compacted.
+	 */
+	public boolean shouldCompact(long userFileSize) {
+		return failed || (size > MIN_COMPACT_SIZE && size > userFileSize / 2);
+	}
+
+	/**
+	 * Records a new Album.
+	 * @param name	Name of the Album.
+	 */
+	public void addAlbum(String name) {
+		try {
+			DataOutputStream out = begin(ADD_ALBUM);
+			out.writeUTF(name);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a deleted Album.
+	 * @param index	Index of the Album.
+	 */
+	public void removeAlbum(int index) {
+		try {
+			DataOutputStream out = begin(REMOVE_ALBUM);
+			out.writeInt(index);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a renamed Album.
+	 * @param index	Index of the Album.
+	 * @param name	New name of the Album.
+	 */
+	public void renameAlbum(int index, String name) {
+		try {
+			DataOutputStream out = begin(RENAME_ALBUM);
+			out.writeInt(index);
+			out.writeUTF(name);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a Photo added to an Album.
+	 * @param albumIndex	Index of the Album.
+	 * @param photo	Photo that was added.
+	 */
+	public void addPhoto(int albumIndex, Photo photo) {
+		try {
+			DataOutputStream out = begin(ADD_PHOTO);
+			out.writeInt(albumIndex);
+			out.writeUTF(photo.getLocation());
+			out.writeUTF(photo.getCaption());
+			out.writeLong(photo.getDate());
+			out.writeBoolean(photo.getHash() != null);
+			if(photo.getHash() != null) {
+				out.writeUTF(photo.getHash());
+			}
+			out.writeBoolean(photo.hasPerceptualHash());
+			if(photo.hasPerceptualHash()) {
+				out.writeLong(photo.getPerceptualHash());
+			}
+			out.writeInt(photo.getWidth());
+			out.writeInt(photo.getHeight());
+			out.writeByte(photo.getOrientation());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a Photo removed from an Album.
+	 * @param albumIndex	Index of the Album.
+	 * @param photoIndex	Index of the Photo within the Album.
+	 */
+	public void removePhoto(int albumIndex, int photoIndex) {
+		try {
+			DataOutputStream out = begin(REMOVE_PHOTO);
+			out.writeInt(albumIndex);
+			out.writeInt(photoIndex);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a changed caption.
+	 * @param photo	Photo whose caption was changed.
+	 */
+	public void setCaption(Photo photo) {
+		try {
+			DataOutputStream out = begin(SET_CAPTION);
+			out.writeUTF(photo.getLocation());
+			out.writeUTF(photo.getCaption());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records the content hash of a Photo.
+	 * @param photo	Photo whose file was hashed.
+	 */
+	public void setHash(Photo photo) {
+		try {
+			DataOutputStream out = begin(SET_HASH);
+			out.writeUTF(photo.getLocation());
+			out.writeUTF(photo.getHash());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records the perceptual hash of a Photo.
+	 * @param photo	Photo whose thumbnail was hashed.
+	 */
+	public void setPerceptualHash(Photo photo) {
+		try {
+			DataOutputStream out = begin(SET_PERCEPTUAL_HASH);
+			out.writeUTF(photo.getLocation());
+			out.writeLong(photo.getPerceptualHash());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records the date, size and orientation read from the file of a Photo.
+	 * @param photo	Photo whose file was read.
+	 */
+	public void setMetadata(Photo photo) {
+		try {
+			DataOutputStream out = begin(SET_METADATA);
+			out.writeUTF(photo.getLocation());
+			out.writeLong(photo.getDate());
+			out.writeInt(photo.getWidth());
+			out.writeInt(photo.getHeight());
+			out.writeByte(photo.getOrientation());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a Tag added to a Photo.
+	 * @param photo	Photo that the Tag was added to.
+	 * @param tag	Tag that was added.
+	 */
+	public void addTag(Photo photo, Tag tag) {
+		try {
+			DataOutputStream out = begin(ADD_TAG);
+			out.writeUTF(photo.getLocation());
+			out.writeUTF(tag.getTagType());
+			out.writeUTF(tag.getTagValue());
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a Tag removed from a Photo.
+	 * @param photo	Photo that the Tag was removed from.
+	 * @param index	Index of the Tag within the Photo.
+	 */
+	public void removeTag(Photo photo, int index) {
+		try {
+			DataOutputStream out = begin(REMOVE_TAG);
+			out.writeUTF(photo.getLocation());
+			out.writeInt(index);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Records a new tag type.
+	 * @param tagType	The new tag type.
+	 */
+	public void addTagType(String tagType) {
+		try {
+			DataOutputStream out = begin(ADD_TAG_TYPE);
+			out.writeUTF(tagType);
+			append();
+		}
+		catch(IOException e) {
+			failed = true;
+		}
+	}
+
+	/**
+	 * Starts a new record of the given type.
+	 * @param type	The type of the record.
+	 * @return	Stream that the rest of the record is written to.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private DataOutputStream begin(byte type) throws IOException {
+		record.reset();
+		DataOutputStream out = new DataOutputStream(record);
+		out.writeByte(type);
+		return out;
+	}
+
+	/**
+	 * Appends the current record to the journal, opening it if this is the first record.
+	 * Once a record could not be written the journal is marked as failed and stops accepting records.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private void append() throws IOException {
+		if(failed) {
+			return;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.toByteArray());
+		ByteBuffer buffer = ByteBuffer.allocate(8 + record.size());
+		buffer.putInt(record.size());
+		buffer.putInt((int)crc.getValue());
+		buffer.put(record.toByteArray());
+		buffer.flip();
+		if(channel == null) {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			if(channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(8);
+				header.putLong(generation);
+				header.flip();
+				while(header.hasRemaining()) {
+					channel.write(header);
+				}
+			}
+		}
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		size += buffer.limit();
+	}
+
+	/**
+	 * Forces all appended records to the disk.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void sync() throws IOException {
+		if(channel != null) {
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Forces all appended records to the disk and closes the journal.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public void close() throws IOException {
+		if(channel != null) {
+			channel.force(false);
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,622 @@
+package model;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * Reads and writes Users in a compact binary format.
+ * The file starts with the tag types and a summary of each Album, followed by a section per Album holding its Photos,
+ * so a User can be read without reading every Photo and each Album is read when it is first opened.
+ * Within a section strings are stored once in a string table and referenced by index, dates are stored as epoch milliseconds,
+ * and the fields of the Photos, including the content and perceptual hashes, size and orientation of each Photo, are stored column by column.
+ * Photos shared between Albums are written in each section under the same id and are read back as one Photo.
+ * The sections are followed by a directory holding the keys of the locations and content hashes in each section,
+ * so a Photo can be looked up by location or hash by reading only the Albums that may hold it.
+ * Files written with Java serialization by older versions are still read, and are converted to this format as soon as they are read.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class UserStore {
+
+	/**
+	 * Marks the start of a file written in this format.
+	 */
+	public static final int MAGIC = 0x50485553;
+	/**
+	 * Version of the format, files with any other version are not read.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Size of the buffers used when reading and writing.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Writes the User to the given file.
+	 * Albums that have not been read yet are read first, since every Album is written again.
+	 * The data is written to a temporary file first and moved into place so a failed save never leaves a partial file.
+	 * @param user	User to be written.
+	 * @param file	File that the User is written to.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	public static void write(User user, Path file) throws IOException {
+		user.loadAllAlbums();
+
+		// give every distinct Photo an id so Photos shared between Albums are read back as one Photo
+		IdentityHashMap<Photo, Integer> photoIds = new IdentityHashMap<Photo, Integer>();
+		ArrayList<byte[]> sections = new ArrayList<byte[]>();
+		for(Album album : user.getAlbums()) {
+			sections.add(writeSection(album, photoIds));
+		}
+		byte[] directory = writeDirectory(user.getAlbums());
+
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeUTF(user.getUsername());
+		header.writeLong(user.getGeneration());
+		header.writeInt(user.getTagTypes().size());
+		for(String tagType : user.getTagTypes()) {
+			header.writeUTF(tagType);
+		}
+		header.writeInt(user.getAlbums().size());
+		for(int i = 0; i < user.getAlbums().size(); i++) {
+			Album album = user.getAlbums().get(i);
+			header.writeUTF(album.getName());
+			header.writeInt(album.getNumPhotos());
+			header.writeLong(album.getEarliestDate());
+			header.writeLong(album.getLatestDate());
+			header.writeInt(sections.get(i).length);
+		}
+		header.writeInt(directory.length);
+		header.flush();
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(headerBytes.size());
+			headerBytes.writeTo(out);
+			for(byte[] section : sections) {
+				out.write(section);
+			}
+			out.write(directory);
+			out.flush();
+			channel.force(false);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the Photos of an Album as a section that can be read on its own.
+	 * The section starts with its own string table, followed by the Photo ids, locations, captions, dates, hashes,
+	 * perceptual hashes, flags telling which perceptual hashes were computed, widths, heights, orientations, tag counts and tags each stored together as a column, so each column can be read in one bulk copy.
+	 * @param album	Album to be written.
+	 * @param photoIds	Ids given to the Photos written so far, new Photos are added to it.
+	 * @return	The bytes of the section.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static byte[] writeSection(Album album, IdentityHashMap<Photo, Integer> photoIds) throws IOException {
+		ArrayList<String> strings = new ArrayList<String>();
+		HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+		int numTags = 0;
+		for(Photo photo : album.getPhotos()) {
+			stringId(photo.getLocation(), strings, stringIds);
+			stringId(photo.getCaption(), strings, stringIds);
+			if(photo.getHash() != null) {
+				stringId(photo.getHash(), strings, stringIds);
+			}
+			for(Tag tag : photo.getTags()) {
+				stringId(tag.getTagType(), strings, stringIds);
+				stringId(tag.getTagValue(), strings, stringIds);
+			}
+			numTags += photo.getTags().size();
+		}
+
+		ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+		DataOutputStream stringOut = new DataOutputStream(stringBytes);
+		stringOut.writeInt(strings.size());
+		for(String string : strings) {
+			stringOut.writeUTF(string);
+		}
+		stringOut.flush();
+
+		ArrayList<Photo> photos = album.getPhotos();
+		int numPhotos = photos.size();
+		ByteBuffer buffer = ByteBuffer.allocate(4 + stringBytes.size() + 4 + numPhotos * 46 + numTags * 8);
+		buffer.putInt(stringBytes.size());
+		buffer.put(stringBytes.toByteArray());
+		buffer.putInt(numPhotos);
+		for(Photo photo : photos) {
+			Integer id = photoIds.get(photo);
+			if(id == null) {
+				id = photoIds.size();
+				photoIds.put(photo, id);
+			}
+			buffer.putInt(id);
+		}
+		for(Photo photo : photos) {
+			buffer.putInt(stringIds.get(photo.getLocation()));
+		}
+		for(Photo photo : photos) {
+			buffer.putInt(stringIds.get(photo.getCaption()));
+		}
+		for(Photo photo : photos) {
+			buffer.putLong(photo.getDate());
+		}
+		for(Photo photo : photos) {
+			// Photos that have not been hashed have no string
+			buffer.putInt(photo.getHash() == null ? -1 : stringIds.get(photo.getHash()));
+		}
+		for(Photo photo : photos) {
+			buffer.putLong(photo.getPerceptualHash());
+		}
+		for(Photo photo : photos) {
+			buffer.put((byte)(photo.hasPerceptualHash() ? 1 : 0));
+		}
+		for(Photo photo : photos) {
+			buffer.putInt(photo.getWidth());
+		}
+		for(Photo photo : photos) {
+			buffer.putInt(photo.getHeight());
+		}
+		for(Photo photo : photos) {
+			buffer.put((byte)photo.getOrientation());
+		}
+		for(Photo photo : photos) {
+			buffer.putInt(photo.getTags().size());
+		}
+		for(Photo photo : photos) {
+			for(Tag tag : photo.getTags()) {
+				buffer.putInt(stringIds.get(tag.getTagType()));
+				buffer.putInt(stringIds.get(tag.getTagValue()));
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Writes the directory of the file, holding for each Album the sorted keys of its Photos' locations followed by the sorted keys of their content hashes.
+	 * @param albums	Albums in the order their sections were written.
+	 * @return	The bytes of the directory.
+	 */
+	private static byte[] writeDirectory(ArrayList<Album> albums) {
+		ArrayList<long[]> columns = new ArrayList<long[]>();
+		int size = 0;
+		for(Album album : albums) {
+			ArrayList<Photo> photos = album.getPhotos();
+			long[] locations = new long[photos.size()];
+			int numHashes = 0;
+			for(int i = 0; i < photos.size(); i++) {
+				locations[i] = key(User.normalizeLocation(photos.get(i).getLocation()));
+				if(photos.get(i).getHash() != null) {
+					numHashes++;
+				}
+			}
+			long[] hashes = new long[numHashes];
+			numHashes = 0;
+			for(Photo photo : photos) {
+				if(photo.getHash() != null) {
+					hashes[numHashes++] = key(photo.getHash());
+				}
+			}
+			Arrays.sort(locations);
+			Arrays.sort(hashes);
+			columns.add(locations);
+			columns.add(hashes);
+			size += 8 + (locations.length + hashes.length) * 8;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		for(long[] column : columns) {
+			buffer.putInt(column.length);
+			buffer.asLongBuffer().put(column);
+			buffer.position(buffer.position() + column.length * 8);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Returns the key that a location or content hash is stored under in the directory, its 64-bit FNV-1a hash.
+	 * Different strings can have the same key, so a matching key only means the Album may hold the Photo.
+	 * @param string	Normalized location or content hash.
+	 * @return	The key of the string.
+	 */
+	static long key(String string) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < string.length(); i++) {
+			hash ^= string.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Reads the User stored in the given file.
+	 * Only the tag types and a summary of each Album are read; the Photos of an Album are read when the Album is first used.
+	 * Files written with Java serialization are detected by their header, read with an ObjectInputStream
+	 * and then rewritten in this format so the conversion only happens once.
+	 * @param file	File that the User is read from.
+	 * @return	Reference to the saved User object.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException when reading a serialized file.
+	 */
+	public static User read(Path file) throws IOException, ClassNotFoundException {
+		if(!isBinary(file)) {
+			User user = readSerialized(file);
+			write(user, file);
+			return user;
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE))) {
+			in.readInt();
+			int version = in.readInt();
+			if(version != VERSION) {
+				throw new IOException("Unsupported user file version " + version + " in " + file);
+			}
+
+			long offset = 12 + in.readInt();
+			User user = new User(in.readUTF());
+			user.setGeneration(in.readLong());
+
+			ArrayList<String> tagTypes = new ArrayList<String>();
+			int numTagTypes = in.readInt();
+			for(int i = 0; i < numTagTypes; i++) {
+				tagTypes.add(in.readUTF());
+			}
+			user.setTagTypes(tagTypes);
+
+			HashMap<Integer, Photo> photos = new HashMap<Integer, Photo>();
+			HashMap<String, String> stringPool = new HashMap<String, String>();
+			int numAlbums = in.readInt();
+			Section[] sections = new Section[numAlbums];
+			for(int i = 0; i < numAlbums; i++) {
+				Album album = new Album(in.readUTF());
+				int numPhotos = in.readInt();
+				long earliestDate = in.readLong();
+				long latestDate = in.readLong();
+				int length = in.readInt();
+				sections[i] = new Section(user, file, offset, length, photos, stringPool);
+				album.setSection(sections[i], numPhotos, earliestDate, latestDate);
+				offset += length;
+				// the Album has no Photos in memory yet, so it is not indexed until it is read
+				user.getAlbums().add(album);
+			}
+			Directory directory = new Directory(file, offset, in.readInt(), numAlbums);
+			for(int i = 0; i < numAlbums; i++) {
+				sections[i].setDirectory(directory, i);
+			}
+			return user;
+		}
+	}
+
+	/**
+	 * The part of a User's file that holds the Photos of one Album.
+	 * Sections of the same file share the Photos and strings read so far, so a Photo in several Albums is only created once
+	 * and a caption or tag used throughout the library is only held in memory once.
+	 */
+	static class Section {
+		/**
+		 * User that the Album belongs to.
+		 */
+		private User user;
+		/**
+		 * File that the section is read from.
+		 */
+		private Path file;
+		/**
+		 * Position of the section in the file.
+		 */
+		private long offset;
+		/**
+		 * Number of bytes in the section.
+		 */
+		private int length;
+		/**
+		 * Photos read from any section of the file so far, keyed by their id.
+		 */
+		private HashMap<Integer, Photo> photos;
+		/**
+		 * Strings read from any section of the file so far, each mapped to itself.
+		 */
+		private HashMap<String, String> stringPool;
+		/**
+		 * Directory of the file, shared by all of its sections.
+		 */
+		private Directory directory;
+		/**
+		 * Position of the section's Album in the file, used to find its keys in the directory.
+		 */
+		private int index;
+
+		/**
+		 * Constructor for Section.
+		 * @param user	User that the Album belongs to.
+		 * @param file	File that the section is read from.
+		 * @param offset	Position of the section in the file.
+		 * @param length	Number of bytes in the section.
+		 * @param photos	Photos read from any section of the file so far, keyed by their id.
+		 * @param stringPool	Strings read from any section of the file so far, each mapped to itself.
+		 */
+		Section(User user, Path file, long offset, int length, HashMap<Integer, Photo> photos, HashMap<String, String> stringPool) {
+			this.user = user;
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+			this.photos = photos;
+			this.stringPool = stringPool;
+		}
+
+		/**
+		 * Sets the directory that the keys of the section are looked up in.
+		 * @param directory	Directory of the file.
+		 * @param index	Position of the section's Album in the file.
+		 */
+		void setDirectory(Directory directory, int index) {
+			this.directory = directory;
+			this.index = index;
+		}
+
+		/**
+		 * Checks whether the section may hold a Photo at the given location, without reading the section.
+		 * @param key	Key of the normalized location.
+		 * @return	False if the section holds no Photo at the location.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		boolean mayContainLocation(long key) throws IOException {
+			return directory == null || directory.contains(index * 2, key);
+		}
+
+		/**
+		 * Checks whether the section may hold a Photo with the given content hash, without reading the section.
+		 * @param key	Key of the content hash.
+		 * @return	False if the section holds no Photo with the hash.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		boolean mayContainHash(long key) throws IOException {
+			return directory == null || directory.contains(index * 2 + 1, key);
+		}
+
+		/**
+		 * Reads the Photos of the section into the Album and adds them to the User's indexes.
+		 * @param album	Album that the section belongs to.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		void load(Album album) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				while(buffer.hasRemaining()) {
+					if(channel.read(buffer, offset + buffer.position()) < 0) {
+						throw new EOFException("User file " + file + " ends inside the Album " + album.getName());
+					}
+				}
+			}
+			buffer.flip();
+			loadColumns(album, buffer);
+			user.albumLoaded(album);
+		}
+
+		/**
+		 * Reads the Photos of a section, which are stored column by column.
+		 * @param album	Album that the section belongs to.
+		 * @param buffer	Bytes of the section.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		private void loadColumns(Album album, ByteBuffer buffer) throws IOException {
+			int stringTableLength = buffer.getInt();
+			String[] strings = readStrings(new DataInputStream(new ByteArrayInputStream(buffer.array(), buffer.position(), stringTableLength)));
+			buffer.position(buffer.position() + stringTableLength);
+
+			int numPhotos = buffer.getInt();
+			int[] ids = readInts(buffer, numPhotos);
+			int[] locations = readInts(buffer, numPhotos);
+			int[] captions = readInts(buffer, numPhotos);
+			long[] dates = new long[numPhotos];
+			buffer.asLongBuffer().get(dates);
+			buffer.position(buffer.position() + numPhotos * 8);
+			int[] hashes = readInts(buffer, numPhotos);
+			long[] perceptualHashes = new long[numPhotos];
+			buffer.asLongBuffer().get(perceptualHashes);
+			buffer.position(buffer.position() + numPhotos * 8);
+			byte[] hasPerceptualHashes = new byte[numPhotos];
+			buffer.get(hasPerceptualHashes);
+			int[] widths = readInts(buffer, numPhotos);
+			int[] heights = readInts(buffer, numPhotos);
+			byte[] orientations = new byte[numPhotos];
+			buffer.get(orientations);
+			int[] tagCounts = readInts(buffer, numPhotos);
+			int[] tags = readInts(buffer, buffer.remaining() / 4);
+
+			album.getPhotos().ensureCapacity(numPhotos);
+			int tag = 0;
+			for(int i = 0; i < numPhotos; i++) {
+				Photo photo = photos.get(ids[i]);
+				if(photo == null) {
+					photo = new Photo(strings[locations[i]], strings[captions[i]], dates[i]);
+					if(hashes[i] >= 0) {
+						photo.setHash(strings[hashes[i]]);
+					}
+					if(hasPerceptualHashes[i] != 0) {
+						photo.setPerceptualHash(perceptualHashes[i]);
+					}
+					photo.setDimensions(widths[i], heights[i]);
+					photo.setOrientation(orientations[i]);
+					photo.getTags().ensureCapacity(tagCounts[i]);
+					for(int j = 0; j < tagCounts[i]; j++) {
+						photo.getTags().add(new Tag(strings[tags[tag + j * 2]], strings[tags[tag + j * 2 + 1]]));
+					}
+					photos.put(ids[i], photo);
+				}
+				tag += tagCounts[i] * 2;
+				album.addPhoto(photo);
+			}
+		}
+
+		/**
+		 * Reads the string table of a section, replacing each string with the copy read from an earlier section if there is one.
+		 * @param in	Stream positioned at the string table.
+		 * @return	The string table.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		private String[] readStrings(DataInputStream in) throws IOException {
+			String[] strings = new String[in.readInt()];
+			for(int i = 0; i < strings.length; i++) {
+				String string = in.readUTF();
+				String pooled = stringPool.putIfAbsent(string, string);
+				strings[i] = pooled == null ? string : pooled;
+			}
+			return strings;
+		}
+
+		/**
+		 * Reads a column of ints from the buffer in one bulk copy.
+		 * @param buffer	Buffer positioned at the column.
+		 * @param count	Number of ints in the column.
+		 * @return	The column.
+		 */
+		private static int[] readInts(ByteBuffer buffer, int count) {
+			int[] column = new int[count];
+			buffer.asIntBuffer().get(column);
+			buffer.position(buffer.position() + count * 4);
+			return column;
+		}
+	}
+
+	/**
+	 * The directory at the end of a User's file, read the first time a Photo is looked up in a section that has not been read.
+	 */
+	static class Directory {
+		/**
+		 * File that the directory is read from.
+		 */
+		private Path file;
+		/**
+		 * Position of the directory in the file.
+		 */
+		private long offset;
+		/**
+		 * Number of bytes in the directory.
+		 */
+		private int length;
+		/**
+		 * Number of Albums in the file.
+		 */
+		private int numAlbums;
+		/**
+		 * Sorted location keys and sorted hash keys of each Album in turn, or null until the directory is read.
+		 */
+		private long[][] keys;
+
+		/**
+		 * Constructor for Directory.
+		 * @param file	File that the directory is read from.
+		 * @param offset	Position of the directory in the file.
+		 * @param length	Number of bytes in the directory.
+		 * @param numAlbums	Number of Albums in the file.
+		 */
+		Directory(Path file, long offset, int length, int numAlbums) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+			this.numAlbums = numAlbums;
+		}
+
+		/**
+		 * Checks whether a column of the directory holds a key, reading the directory if it has not been read yet.
+		 * @param column	Index of the column, twice the Album's position for locations and one more for hashes.
+		 * @param key	Key to be looked up.
+		 * @return	True if the column holds the key.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		boolean contains(int column, long key) throws IOException {
+			if(keys == null) {
+				read();
+			}
+			return Arrays.binarySearch(keys[column], key) >= 0;
+		}
+
+		/**
+		 * Reads the key columns of the directory.
+		 * @throws IOException	Used to throw IOException relating to streams.
+		 */
+		private void read() throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				while(buffer.hasRemaining()) {
+					if(channel.read(buffer, offset + buffer.position()) < 0) {
+						throw new EOFException("User file " + file + " ends inside its directory");
+					}
+				}
+			}
+			buffer.flip();
+			long[][] columns = new long[numAlbums * 2][];
+			for(int i = 0; i < columns.length; i++) {
+				columns[i] = new long[buffer.getInt()];
+				buffer.asLongBuffer().get(columns[i]);
+				buffer.position(buffer.position() + columns[i].length * 8);
+			}
+			keys = columns;
+		}
+	}
+
+	/**
+	 * Checks whether the file starts with the header of this format.
+	 * @param file	File to be checked.
+	 * @return	True if the file was written by UserStore; False if it was written with Java serialization.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 */
+	private static boolean isBinary(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(4);
+			while(header.hasRemaining()) {
+				if(channel.read(header) < 0) {
+					return false;
+				}
+			}
+			header.flip();
+			return header.getInt() == MAGIC;
+		}
+	}
+
+	/**
+	 * Reads a User that was saved with Java serialization by an older version.
+	 * @param file	File that the User is read from.
+	 * @return	Reference to the saved User object.
+	 * @throws IOException	Used to throw IOException relating to streams.
+	 * @throws ClassNotFoundException	Used to throw ClassNotFoundException.
+	 */
+	private static User readSerialized(Path file) throws IOException, ClassNotFoundException {
+		try(ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+			return (User)ois.readObject();
+		}
+	}
+
+	/**
+	 * Returns the index of the string in the string table, adding it if it is not there yet.
+	 * @param string	String to be looked up.
+	 * @param strings	The string table.
+	 * @param stringIds	Maps each string in the table to its index.
+	 * @return	Index of the string in the string table.
+	 */
+	private static int stringId(String string, ArrayList<String> strings, HashMap<String, Integer> stringIds) {
+		Integer id = stringIds.get(string);
+		if(id == null) {
+			id = strings.size();
+			strings.add(string);
+			stringIds.put(string, id);
+		}
+		return id;
+	}
+}
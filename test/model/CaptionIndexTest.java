@@ -0,0 +1,125 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for CaptionIndex.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class CaptionIndexTest {
+
+	/**
+	 * Photos indexed by id.
+	 */
+	private ArrayList<Photo> photosById;
+	/**
+	 * Index under test.
+	 */
+	private CaptionIndex index;
+
+	/**
+	 * Creates an index holding a few captions.
+	 */
+	@Before
+	public void setUp() {
+		photosById = new ArrayList<Photo>();
+		index = new CaptionIndex(photosById);
+		for(String caption : new String[] {"Beach at Sunset", "sunrise over the bay", "Birthday cake", "cabcab", ""}) {
+			Photo photo = new Photo("/photos/" + photosById.size() + ".jpg", caption, 0);
+			photo.setId(photosById.size());
+			photosById.add(photo);
+			index.add(photo);
+		}
+	}
+
+	/**
+	 * Returns the ids in a PhotoBitmap.
+	 * @param bitmap	The PhotoBitmap.
+	 * @return	List of the ids in increasing order.
+	 */
+	private static ArrayList<Integer> ids(PhotoBitmap bitmap) {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		bitmap.forEach(ids::add);
+		return ids;
+	}
+
+	/**
+	 * Searches anywhere in the caption, ignoring case, for short and long texts.
+	 */
+	@Test
+	public void containsIgnoresCase() {
+		assertEquals(Arrays.asList(0, 1), ids(index.search("SUN", false)));
+		assertEquals(Arrays.asList(0, 1), ids(index.search("sun", false)));
+		assertEquals(Arrays.asList(0), ids(index.search("at sunset", false)));
+		assertEquals(Arrays.asList(0, 1, 2, 3), ids(index.search("b", false)));
+		assertTrue(index.search("moon", false).isEmpty());
+		assertTrue(index.search("", false).isEmpty());
+	}
+
+	/**
+	 * Prefix searches only match the start of the caption.
+	 */
+	@Test
+	public void prefixMatchesStart() {
+		assertEquals(Arrays.asList(1), ids(index.search("sun", true)));
+		assertEquals(Arrays.asList(0, 2), ids(index.search("b", true)));
+		assertEquals(Arrays.asList(2), ids(index.search("birthday c", true)));
+		assertTrue(index.search("sunset", true).isEmpty());
+	}
+
+	/**
+	 * A caption holding every gram of a long text but not the text itself is a candidate and is not matched.
+	 */
+	@Test
+	public void longTextIsCheckedAgainstCaption() {
+		assertFalse(CaptionIndex.isExact("abcabc", false));
+		assertTrue(index.candidates("abcabc", false).contains(3));
+		assertTrue(index.search("abcabc", false).isEmpty());
+		assertEquals(Arrays.asList(3), ids(index.search("bcab", false)));
+	}
+
+	/**
+	 * Short texts are answered from the grams alone, so their candidates need no checking.
+	 */
+	@Test
+	public void shortTextsAreExact() {
+		assertTrue(CaptionIndex.isExact("abc", false));
+		assertTrue(CaptionIndex.isExact("ab", true));
+		assertFalse(CaptionIndex.isExact("abc", true));
+		assertEquals(ids(index.search("bay", false)), ids(index.candidates("bay", false)));
+	}
+
+	/**
+	 * A removed caption is no longer found, and its new caption is found once it is added again.
+	 */
+	@Test
+	public void removeBeforeChangingCaption() {
+		Photo photo = photosById.get(2);
+		index.remove(photo);
+		photo.setCaption("Mountain lake");
+		index.add(photo);
+		assertTrue(index.search("cake", false).isEmpty());
+		assertEquals(Arrays.asList(2), ids(index.search("LAKE", false)));
+	}
+
+	/**
+	 * matches compares the caption of a single Photo the same way search does.
+	 */
+	@Test
+	public void matchesSinglePhoto() {
+		Photo photo = photosById.get(0);
+		assertTrue(CaptionIndex.matches(photo, "SUNSET", false));
+		assertTrue(CaptionIndex.matches(photo, "beach", true));
+		assertFalse(CaptionIndex.matches(photo, "sunset", true));
+	}
+}
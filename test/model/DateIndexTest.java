@@ -0,0 +1,118 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for DateIndex.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class DateIndexTest {
+
+	/**
+	 * Photos indexed by id.
+	 */
+	private ArrayList<Photo> photosById;
+	/**
+	 * Index under test.
+	 */
+	private DateIndex index;
+
+	/**
+	 * Creates an empty index.
+	 */
+	@Before
+	public void setUp() {
+		photosById = new ArrayList<Photo>();
+		index = new DateIndex(photosById);
+	}
+
+	/**
+	 * Creates a Photo taken at the given time in the system time zone and adds it to the index.
+	 * @param dateTime	Time the Photo was taken.
+	 * @return	The Photo.
+	 */
+	private Photo add(String dateTime) {
+		long date = LocalDateTime.parse(dateTime).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		Photo photo = new Photo("/photos/" + photosById.size() + ".jpg", dateTime, date);
+		photo.setId(photosById.size());
+		photosById.add(photo);
+		index.add(photo);
+		return photo;
+	}
+
+	/**
+	 * Returns the epoch day of a date.
+	 * @param date	Date written as yyyy-mm-dd.
+	 * @return	Number of days since 1970-01-01.
+	 */
+	private static long day(String date) {
+		return LocalDate.parse(date).toEpochDay();
+	}
+
+	/**
+	 * Ranges include both of their days, and a range that ends before it starts is empty.
+	 */
+	@Test
+	public void rangesAreInclusive() {
+		add("2020-01-01T00:00:00");
+		add("2020-01-02T23:59:59");
+		add("2020-01-03T12:00:00");
+		assertEquals(2, index.count(day("2020-01-01"), day("2020-01-02")));
+		assertEquals(1, index.count(day("2020-01-03"), day("2020-01-03")));
+		assertEquals(0, index.count(day("2020-01-03"), day("2020-01-01")));
+		assertEquals(3, index.rangeIds(day("2019-12-31"), day("2020-01-04")).cardinality());
+		assertTrue(index.rangeIds(day("2020-01-02"), day("2020-01-01")).isEmpty());
+		assertTrue(index.range(LocalDate.parse("2020-01-02"), LocalDate.parse("2020-01-01")).isEmpty());
+	}
+
+	/**
+	 * range returns the Photos ordered by date, even when they were added in another order.
+	 */
+	@Test
+	public void rangeIsOrderedByDate() {
+		Photo evening = add("2021-06-01T20:00:00");
+		Photo nextDay = add("2021-06-02T08:00:00");
+		Photo morning = add("2021-06-01T07:00:00");
+		Photo noon = add("2021-06-01T12:00:00");
+		assertEquals(Arrays.asList(morning, noon, evening, nextDay),
+				index.range(LocalDate.parse("2021-06-01"), LocalDate.parse("2021-06-02")));
+	}
+
+	/**
+	 * Removed Photos are no longer found, and the days they leave empty are dropped.
+	 */
+	@Test
+	public void removeDropsPhotos() {
+		Photo first = add("2022-03-04T10:00:00");
+		Photo second = add("2022-03-04T11:00:00");
+		index.remove(first);
+		assertEquals(Arrays.asList(second), index.range(LocalDate.parse("2022-03-04"), LocalDate.parse("2022-03-04")));
+		index.remove(second);
+		assertEquals(0, index.count(day("2022-03-04"), day("2022-03-04")));
+		// removing a Photo twice changes nothing
+		index.remove(second);
+		assertEquals(0, index.count(day("2022-03-04"), day("2022-03-04")));
+	}
+
+	/**
+	 * epochDay uses the system time zone, so the day matches the local date of the Photo.
+	 */
+	@Test
+	public void epochDayIsLocal() {
+		Photo photo = add("2023-11-05T23:30:00");
+		assertEquals(day("2023-11-05"), DateIndex.epochDay(photo));
+	}
+}
@@ -0,0 +1,98 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for HammingIndex, checked against comparing every pair of hashes.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class HammingIndexTest {
+
+	/**
+	 * Returns the items found within a distance of a hash, in order.
+	 * @param index	The index.
+	 * @param hash	Hash to search around.
+	 * @param maxDistance	Largest number of bits the hashes may differ in.
+	 * @return	Sorted list of the items found.
+	 */
+	private static ArrayList<Integer> search(HammingIndex<Integer> index, long hash, int maxDistance) {
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		index.search(hash, maxDistance, found::add);
+		Collections.sort(found);
+		return found;
+	}
+
+	/**
+	 * distance counts the bits in which two hashes differ.
+	 */
+	@Test
+	public void distanceCountsBits() {
+		assertEquals(0, HammingIndex.distance(0x1234L, 0x1234L));
+		assertEquals(1, HammingIndex.distance(0L, 1L << 63));
+		assertEquals(64, HammingIndex.distance(0L, -1L));
+		assertEquals(3, HammingIndex.distance(0b1011L, 0b0000L));
+	}
+
+	/**
+	 * Hashes whose differences fall in one block, or are spread over every block, are found once each.
+	 */
+	@Test
+	public void findsEachItemOnce() {
+		HammingIndex<Integer> index = new HammingIndex<Integer>();
+		long hash = 0x0123456789abcdefL;
+		index.add(hash, 0);
+		// 4 bits apart, all in the lowest block
+		index.add(hash ^ 0xfL, 1);
+		// 4 bits apart, one in each block
+		index.add(hash ^ 0x0001000100010001L, 2);
+		// 9 bits apart
+		index.add(hash ^ 0x1ffL, 3);
+		assertEquals(Arrays.asList(0), search(index, hash, 0));
+		assertEquals(Arrays.asList(0, 1, 2), search(index, hash, 4));
+		assertEquals(Arrays.asList(0, 1, 2, 3), search(index, hash, 9));
+	}
+
+	/**
+	 * Every search finds exactly the hashes within the distance, for distances up to and past the block count.
+	 */
+	@Test
+	public void matchesPairwiseComparison() {
+		Random random = new Random(11);
+		HammingIndex<Integer> index = new HammingIndex<Integer>();
+		long[] hashes = new long[2000];
+		long base = random.nextLong();
+		for(int i = 0; i < hashes.length; i++) {
+			// flip a few random bits of a shared hash, so many hashes are close to each other
+			long hash = base;
+			int flips = random.nextInt(16);
+			for(int f = 0; f < flips; f++) {
+				hash ^= 1L << random.nextInt(64);
+			}
+			hashes[i] = i % 5 == 0 ? random.nextLong() : hash;
+			index.add(hashes[i], i);
+		}
+		for(int maxDistance : new int[] {0, 3, 4, 7, 8, 12}) {
+			for(int q = 0; q < 50; q++) {
+				long hash = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+				ArrayList<Integer> expected = new ArrayList<Integer>();
+				for(int i = 0; i < hashes.length; i++) {
+					if(HammingIndex.distance(hash, hashes[i]) <= maxDistance) {
+						expected.add(i);
+					}
+				}
+				assertEquals(expected, search(index, hash, maxDistance));
+			}
+		}
+	}
+}
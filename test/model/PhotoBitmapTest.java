@@ -0,0 +1,205 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests for PhotoBitmap, checked against a TreeSet holding the same ids.
+ * Most sets are sized around 4096 ids per container, where a container switches between an array and a bitmap,
+ * so every operation is run with array and bitmap containers on either side.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class PhotoBitmapTest {
+
+	/**
+	 * Largest number of ids kept in an array container, mirrored from PhotoBitmap.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	/**
+	 * Builds a PhotoBitmap and a TreeSet holding the same random ids.
+	 * @param random	Source of the ids.
+	 * @param count	Number of ids to draw; duplicates are drawn again.
+	 * @param bound	Ids are drawn from 0 up to but not including this.
+	 * @param expected	Receives the ids.
+	 * @return	PhotoBitmap holding the ids.
+	 */
+	private static PhotoBitmap random(Random random, int count, int bound, TreeSet<Integer> expected) {
+		PhotoBitmap bitmap = new PhotoBitmap();
+		while(expected.size() < count) {
+			int id = random.nextInt(bound);
+			expected.add(id);
+			bitmap.add(id);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Returns the ids of a PhotoBitmap in the order forEach passes them.
+	 * @param bitmap	The PhotoBitmap.
+	 * @return	List of the ids.
+	 */
+	private static ArrayList<Integer> ids(PhotoBitmap bitmap) {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		bitmap.forEach(ids::add);
+		return ids;
+	}
+
+	/**
+	 * Checks that a PhotoBitmap holds exactly the expected ids, in increasing order.
+	 * @param expected	The expected ids.
+	 * @param actual	The PhotoBitmap.
+	 */
+	private static void assertIds(TreeSet<Integer> expected, PhotoBitmap actual) {
+		assertEquals(new ArrayList<Integer>(expected), ids(actual));
+		assertEquals(expected.size(), actual.cardinality());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+	}
+
+	/**
+	 * Ids are kept in order across containers, and each id is held once.
+	 */
+	@Test
+	public void addKeepsIdsInOrderAcrossContainers() {
+		PhotoBitmap bitmap = new PhotoBitmap();
+		int[] ids = {200000, 5, 65536, 65535, 5, 131071, 0};
+		for(int id : ids) {
+			bitmap.add(id);
+		}
+		assertEquals(Arrays.asList(0, 5, 65535, 65536, 131071, 200000), ids(bitmap));
+		assertTrue(bitmap.contains(65536));
+		assertFalse(bitmap.contains(65537));
+		assertFalse(bitmap.contains(300000));
+	}
+
+	/**
+	 * A container that grows past ARRAY_MAX ids becomes a bitmap, and shrinking it again keeps every id.
+	 */
+	@Test
+	public void containerSwitchesAtArrayMax() {
+		PhotoBitmap bitmap = new PhotoBitmap();
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for(int id = 0; id < ARRAY_MAX * 2; id += 2) {
+			bitmap.add(id);
+			expected.add(id);
+		}
+		assertIds(expected, bitmap);
+
+		bitmap.add(1);
+		expected.add(1);
+		assertIds(expected, bitmap);
+
+		bitmap.remove(1);
+		bitmap.remove(0);
+		expected.remove(1);
+		expected.remove(0);
+		assertIds(expected, bitmap);
+	}
+
+	/**
+	 * Removing the last id of a container drops the container, and removing a missing id changes nothing.
+	 */
+	@Test
+	public void removeDropsEmptyContainers() {
+		PhotoBitmap bitmap = new PhotoBitmap();
+		bitmap.add(3);
+		bitmap.add(70000);
+		bitmap.remove(70000);
+		bitmap.remove(70001);
+		bitmap.remove(500000);
+		assertEquals(Arrays.asList(3), ids(bitmap));
+		bitmap.remove(3);
+		assertTrue(bitmap.isEmpty());
+		assertEquals(0, bitmap.cardinality());
+	}
+
+	/**
+	 * AND, OR and AND NOT give the same ids as the TreeSet, for every pairing of array and bitmap containers.
+	 */
+	@Test
+	public void setOperationsAcrossContainerTypes() {
+		Random random = new Random(42);
+		// counts on either side of ARRAY_MAX within a single container, and spread over three containers
+		int[][] shapes = {
+			{100, 65536}, {ARRAY_MAX, 65536}, {ARRAY_MAX + 1, 65536}, {20000, 65536},
+			{3000, 3 * 65536}, {30000, 3 * 65536},
+		};
+		for(int[] left : shapes) {
+			for(int[] right : shapes) {
+				TreeSet<Integer> a = new TreeSet<Integer>();
+				TreeSet<Integer> b = new TreeSet<Integer>();
+				PhotoBitmap x = random(random, left[0], left[1], a);
+				PhotoBitmap y = random(random, right[0], right[1], b);
+
+				TreeSet<Integer> and = new TreeSet<Integer>(a);
+				and.retainAll(b);
+				TreeSet<Integer> or = new TreeSet<Integer>(a);
+				or.addAll(b);
+				TreeSet<Integer> andNot = new TreeSet<Integer>(a);
+				andNot.removeAll(b);
+
+				assertIds(and, x.and(y));
+				assertIds(or, x.or(y));
+				assertIds(andNot, x.andNot(y));
+				assertIds(or, PhotoBitmap.or(Arrays.asList(x, y)));
+				// the operands are left as they were
+				assertIds(a, x);
+				assertIds(b, y);
+			}
+		}
+	}
+
+	/**
+	 * An AND whose result falls below ARRAY_MAX ids, and an AND NOT that empties a container, still hold the right ids.
+	 */
+	@Test
+	public void resultsShrinkBackToArrays() {
+		PhotoBitmap evens = new PhotoBitmap();
+		PhotoBitmap all = new PhotoBitmap();
+		PhotoBitmap few = new PhotoBitmap();
+		TreeSet<Integer> fewIds = new TreeSet<Integer>();
+		for(int id = 0; id < 20000; id++) {
+			all.add(id);
+			if(id % 2 == 0) {
+				evens.add(id);
+			}
+			if(id % 1000 == 0) {
+				few.add(id);
+				fewIds.add(id);
+			}
+		}
+		assertIds(fewIds, evens.and(few));
+		assertIds(fewIds, few.and(all));
+		assertTrue(evens.andNot(all).isEmpty());
+		assertEquals(10000, all.andNot(evens).cardinality());
+		assertFalse(all.andNot(evens).contains(0));
+		assertTrue(all.andNot(evens).contains(19999));
+	}
+
+	/**
+	 * The OR of many sets holds every id once, and the OR of no sets is empty.
+	 */
+	@Test
+	public void orOfManySets() {
+		Random random = new Random(7);
+		ArrayList<PhotoBitmap> sets = new ArrayList<PhotoBitmap>();
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for(int i = 0; i < 20; i++) {
+			TreeSet<Integer> ids = new TreeSet<Integer>();
+			sets.add(random(random, 500 + i * 300, 2 * 65536, ids));
+			expected.addAll(ids);
+		}
+		assertIds(expected, PhotoBitmap.or(sets));
+		assertTrue(PhotoBitmap.or(new ArrayList<PhotoBitmap>()).isEmpty());
+	}
+}
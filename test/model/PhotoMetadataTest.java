@@ -0,0 +1,260 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for PhotoMetadata, reading small JPEG and PNG headers built by the test.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class PhotoMetadataTest {
+
+	/**
+	 * Directory the image files are written in, deleted after each test.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Builds a TIFF structure holding an orientation, a date and optionally its time zone, and the pixel size.
+	 * IFD0 holds the orientation and points to the EXIF directory, which holds the rest.
+	 * @param order	Byte order of the structure.
+	 * @param orientation	EXIF orientation.
+	 * @param date	Date the photo was taken, as yyyy:mm:dd hh:mm:ss.
+	 * @param offset	Time zone of the date, such as +02:00, or null to leave it out.
+	 * @param width	Width in pixels.
+	 * @param height	Height in pixels.
+	 * @return	The TIFF structure.
+	 */
+	private static byte[] tiff(ByteOrder order, int orientation, String date, String offset, int width, int height) {
+		ByteBuffer tiff = ByteBuffer.allocate(256).order(order);
+		tiff.putShort(order == ByteOrder.BIG_ENDIAN ? (short)0x4D4D : (short)0x4949).putShort((short)42).putInt(8);
+		// IFD0 at 8: orientation and the EXIF directory, 2 + 2 * 12 + 4 bytes
+		int exif = 8 + 2 + 2 * 12 + 4;
+		tiff.putShort((short)2);
+		entry(tiff, 0x0112, 3, 1, orientation << (order == ByteOrder.BIG_ENDIAN ? 16 : 0));
+		entry(tiff, 0x8769, 4, 1, exif);
+		tiff.putInt(0);
+		// EXIF directory: the date, its time zone and the size, followed by the strings they point to
+		int entries = offset == null ? 3 : 4;
+		int strings = exif + 2 + entries * 12 + 4;
+		tiff.putShort((short)entries);
+		entry(tiff, 0x9003, 2, date.length() + 1, strings);
+		if(offset != null) {
+			entry(tiff, 0x9011, 2, offset.length() + 1, strings + date.length() + 1);
+		}
+		entry(tiff, 0xA002, 4, 1, width);
+		entry(tiff, 0xA003, 3, 1, height << (order == ByteOrder.BIG_ENDIAN ? 16 : 0));
+		tiff.putInt(0);
+		tiff.put((date + "\0").getBytes(StandardCharsets.US_ASCII));
+		if(offset != null) {
+			tiff.put((offset + "\0").getBytes(StandardCharsets.US_ASCII));
+		}
+		return Arrays.copyOf(tiff.array(), tiff.position());
+	}
+
+	/**
+	 * Writes one TIFF directory entry.
+	 * @param tiff	Buffer the entry is written to.
+	 * @param tag	Tag of the field.
+	 * @param type	Type of the field: 2 for ASCII, 3 for SHORT, 4 for LONG.
+	 * @param count	Number of values.
+	 * @param value	The value, or the offset of the values if they do not fit in four bytes.
+	 */
+	private static void entry(ByteBuffer tiff, int tag, int type, int count, int value) {
+		tiff.putShort((short)tag).putShort((short)type).putInt(count).putInt(value);
+	}
+
+	/**
+	 * Builds the start of a JPEG file: an EXIF segment, a frame header and the start of the scan.
+	 * @param tiff	TIFF structure for the EXIF segment, or null to leave it out.
+	 * @param width	Width in the frame header.
+	 * @param height	Height in the frame header.
+	 * @return	The bytes of the file.
+	 */
+	private static byte[] jpeg(byte[] tiff, int width, int height) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(0xFF);
+		out.write(0xD8);
+		if(tiff != null) {
+			ByteBuffer app1 = ByteBuffer.allocate(4 + 6 + tiff.length);
+			app1.putShort((short)0xFFE1).putShort((short)(2 + 6 + tiff.length));
+			app1.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII)).put(tiff);
+			out.write(app1.array(), 0, app1.capacity());
+		}
+		ByteBuffer sof = ByteBuffer.allocate(2 + 2 + 15);
+		sof.putShort((short)0xFFC0).putShort((short)17).put((byte)8).putShort((short)height).putShort((short)width);
+		out.write(sof.array(), 0, sof.capacity());
+		out.write(0xFF);
+		out.write(0xDA);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Builds the start of a PNG file: IHDR, an optional eXIf chunk and the start of IDAT. CRCs are left zero.
+	 * @param tiff	TIFF structure for the eXIf chunk, or null to leave it out.
+	 * @param width	Width in IHDR.
+	 * @param height	Height in IHDR.
+	 * @return	The bytes of the file.
+	 */
+	private static byte[] png(byte[] tiff, int width, int height) {
+		int exifLength = tiff == null ? 0 : 12 + tiff.length;
+		ByteBuffer png = ByteBuffer.allocate(8 + 25 + exifLength + 12);
+		png.putLong(0x89504E470D0A1A0AL);
+		png.putInt(13).putInt(0x49484452).putInt(width).putInt(height).put(new byte[5]).putInt(0);
+		if(tiff != null) {
+			png.putInt(tiff.length).putInt(0x65584966).put(tiff).putInt(0);
+		}
+		png.putInt(0).putInt(0x49444154).putInt(0);
+		return png.array();
+	}
+
+	/**
+	 * Writes bytes to a new file.
+	 * @param name	Name of the file.
+	 * @param bytes	Contents of the file.
+	 * @return	Location of the file.
+	 * @throws IOException	If the file cannot be written.
+	 */
+	private Path write(String name, byte[] bytes) throws IOException {
+		Path path = folder.getRoot().toPath().resolve(name);
+		Files.write(path, bytes);
+		return path;
+	}
+
+	/**
+	 * A JPEG with big endian EXIF gives its capture date in the stored time zone, its frame size and its orientation.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void jpegBigEndian() throws IOException {
+		byte[] tiff = tiff(ByteOrder.BIG_ENDIAN, 6, "2021:07:04 15:30:45", "+02:00", 111, 222);
+		PhotoMetadata metadata = PhotoMetadata.read(write("big.jpg", jpeg(tiff, 4000, 3000)));
+		assertEquals(OffsetDateTime.parse("2021-07-04T15:30:45+02:00").toInstant().toEpochMilli(), metadata.getCaptureDate());
+		// the frame header wins over the EXIF size
+		assertEquals(4000, metadata.getWidth());
+		assertEquals(3000, metadata.getHeight());
+		assertEquals(6, metadata.getOrientation());
+	}
+
+	/**
+	 * A JPEG with little endian EXIF and no time zone is read in the system time zone.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void jpegLittleEndianLocalTime() throws IOException {
+		byte[] tiff = tiff(ByteOrder.LITTLE_ENDIAN, 8, "2019:12:31 23:59:59", null, 640, 480);
+		PhotoMetadata metadata = PhotoMetadata.read(write("little.jpg", jpeg(tiff, 1024, 768)));
+		long expected = LocalDateTime.parse("2019-12-31T23:59:59").atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		assertEquals(expected, metadata.getCaptureDate());
+		assertEquals(1024, metadata.getWidth());
+		assertEquals(768, metadata.getHeight());
+		assertEquals(8, metadata.getOrientation());
+	}
+
+	/**
+	 * A PNG gives its size from IHDR, and its date and orientation from an eXIf chunk if it has one.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void png() throws IOException {
+		byte[] tiff = tiff(ByteOrder.BIG_ENDIAN, 3, "2020:02:29 12:00:00", "-05:00", 1, 1);
+		PhotoMetadata metadata = PhotoMetadata.read(write("exif.png", png(tiff, 300, 200)));
+		assertEquals(OffsetDateTime.parse("2020-02-29T12:00:00-05:00").toInstant().toEpochMilli(), metadata.getCaptureDate());
+		assertEquals(300, metadata.getWidth());
+		assertEquals(200, metadata.getHeight());
+		assertEquals(3, metadata.getOrientation());
+
+		PhotoMetadata plain = PhotoMetadata.read(write("plain.png", png(null, 16, 9)));
+		assertEquals(-1, plain.getCaptureDate());
+		assertEquals(16, plain.getWidth());
+		assertEquals(9, plain.getHeight());
+		assertEquals(0, plain.getOrientation());
+	}
+
+	/**
+	 * Files that are cut short or are not images leave what they do not say unknown instead of failing.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void damagedFilesLeaveFieldsUnknown() throws IOException {
+		byte[] tiff = tiff(ByteOrder.BIG_ENDIAN, 6, "2021:07:04 15:30:45", "+02:00", 111, 222);
+		byte[] jpeg = jpeg(tiff, 4000, 3000);
+		for(int length = 0; length < jpeg.length; length++) {
+			PhotoMetadata metadata = PhotoMetadata.read(write("cut" + length + ".jpg", Arrays.copyOf(jpeg, length)));
+			assertTrue(metadata.getWidth() == 0 || metadata.getWidth() == 111 || metadata.getWidth() == 4000);
+			assertTrue(metadata.getOrientation() == 0 || metadata.getOrientation() == 6);
+		}
+
+		PhotoMetadata text = PhotoMetadata.read(write("notes.jpg", "not an image".getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(-1, text.getCaptureDate());
+		assertEquals(0, text.getWidth());
+		assertEquals(0, text.getHeight());
+		assertEquals(0, text.getOrientation());
+
+		byte[] badDate = tiff(ByteOrder.BIG_ENDIAN, 1, "2021:13:45 99:00:00", null, 1, 1);
+		assertEquals(-1, PhotoMetadata.read(write("baddate.jpg", jpeg(badDate, 10, 10))).getCaptureDate());
+	}
+
+	/**
+	 * Results are cached until the file's last modified time changes.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void cacheFollowsLastModified() throws IOException {
+		Path path = write("cached.png", png(null, 10, 20));
+		PhotoMetadata first = PhotoMetadata.read(path);
+		assertSame(first, PhotoMetadata.read(path));
+
+		Files.write(path, png(null, 30, 40));
+		Files.setLastModifiedTime(path, FileTime.fromMillis(first.getLastModified() + 2000));
+		PhotoMetadata changed = PhotoMetadata.read(path);
+		assertNotSame(first, changed);
+		assertEquals(30, changed.getWidth());
+		assertEquals(first.getLastModified() + 2000, changed.getLastModified());
+	}
+
+	/**
+	 * applyTo and dateOf use the capture date, kept to the second, and keep the Photo's own date when the file has none.
+	 * @throws IOException	If the file cannot be written or read.
+	 */
+	@Test
+	public void applyTo() throws IOException {
+		byte[] tiff = tiff(ByteOrder.BIG_ENDIAN, 6, "2021:07:04 15:30:45", "+02:00", 1, 1);
+		PhotoMetadata metadata = PhotoMetadata.read(write("apply.jpg", jpeg(tiff, 80, 60)));
+		Photo photo = new Photo("apply.jpg", "", 1234567L);
+		metadata.applyTo(photo);
+		assertEquals(metadata.getCaptureDate(), photo.getDate());
+		assertEquals(0, photo.getDate() % 1000);
+		assertEquals(80, photo.getWidth());
+		assertEquals(60, photo.getHeight());
+		assertEquals(6, photo.getOrientation());
+
+		PhotoMetadata undated = PhotoMetadata.read(write("undated.png", png(null, 5, 5)));
+		Photo other = new Photo("undated.png", "", 1234567L);
+		assertEquals(1234567L, undated.dateOf(other));
+		undated.applyTo(other);
+		assertEquals(1234567L, other.getDate());
+		assertEquals(5, other.getWidth());
+	}
+}
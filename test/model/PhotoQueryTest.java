@@ -0,0 +1,189 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for PhotoQuery: the positions reported for invalid queries, the canonical form and evaluation against a User.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class PhotoQueryTest {
+
+	/**
+	 * User holding the Photos that are searched.
+	 */
+	private User user;
+	/**
+	 * Album holding every Photo.
+	 */
+	private Album album;
+	/**
+	 * Alice in Paris on 2020-01-10.
+	 */
+	private Photo alice;
+	/**
+	 * Alice and Bob in Rome on 2020-02-20.
+	 */
+	private Photo aliceAndBob;
+	/**
+	 * Bob in Paris on 2019-12-31.
+	 */
+	private Photo bob;
+
+	/**
+	 * Creates a User with three tagged Photos and builds its indexes.
+	 * @throws IOException	Not thrown, since every Album is in memory.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		user = new User("query");
+		album = new Album("trip");
+		user.addAlbum(album);
+		alice = add("2020-01-10", "person=alice", "location=paris");
+		aliceAndBob = add("2020-02-20", "person=alice", "person=bob", "location=rome");
+		bob = add("2019-12-31", "person=bob", "location=paris");
+		user.buildIndexes();
+	}
+
+	/**
+	 * Adds a Photo taken at noon on the given day, with the given Tags.
+	 * @param day	Day the Photo was taken, as yyyy-mm-dd.
+	 * @param tags	Tags written as type=value.
+	 * @return	The Photo.
+	 */
+	private Photo add(String day, String... tags) {
+		long date = LocalDate.parse(day).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		Photo photo = new Photo("/photos/" + day + ".jpg", day, date);
+		user.addPhoto(album, photo);
+		for(String tag : tags) {
+			String[] parts = tag.split("=");
+			user.addTag(photo, new Tag(parts[0], parts[1]));
+		}
+		return photo;
+	}
+
+	/**
+	 * Parses and evaluates a query.
+	 * @param query	The query.
+	 * @return	The matching Photos.
+	 * @throws ParseException	If the query is not valid.
+	 */
+	private List<Photo> search(String query) throws ParseException {
+		ArrayList<Photo> found = PhotoQuery.parse(query).evaluate(user);
+		found.sort((a, b) -> Long.compare(a.getDate(), b.getDate()));
+		return found;
+	}
+
+	/**
+	 * Checks that a query fails to parse with the given error offset.
+	 * @param query	The query.
+	 * @param offset	Expected position of the problem.
+	 */
+	private static void assertError(String query, int offset) {
+		try {
+			PhotoQuery.parse(query);
+			fail("Parsed " + query);
+		}
+		catch(ParseException e) {
+			assertEquals(query, offset, e.getErrorOffset());
+		}
+	}
+
+	/**
+	 * Each invalid query reports the position of the token that is wrong, or the end of the query if it stops early.
+	 */
+	@Test
+	public void errorOffsets() {
+		assertError("", 0);
+		assertError("NOT", 3);
+		assertError("person=alice AND", 16);
+		assertError("person=alice )", 13);
+		assertError("(person=alice", 13);
+		assertError("person=\"ali", 7);
+		assertError("person=", 7);
+		assertError("person alice", 0);
+		assertError("AND person=alice", 0);
+		assertError("person=alice OR OR location=rome", 16);
+		assertError("person=alice person=bob", 13);
+		assertError("date<2020-13-01", 5);
+		assertError("date=2020-02-01..2020-01", 5);
+	}
+
+	/**
+	 * The canonical form puts every AND and OR in parentheses and writes dates as ranges.
+	 * @throws ParseException	If the query is not valid.
+	 */
+	@Test
+	public void canonicalForm() throws ParseException {
+		assertEquals("(person=alice OR (location=rome AND person=bob))",
+				PhotoQuery.parse("person=alice or location=rome and person=bob").toString());
+		assertEquals("date=2020-01-01..2020-01-31",
+				PhotoQuery.parse("date=2020-01-01..2020-01-31").toString());
+		assertEquals(PhotoQuery.parse("date=2020-03-03..2020-03-03").toString(), PhotoQuery.parse("date=2020-03-03").toString());
+		assertEquals(PhotoQuery.parse("date<=2019-12-31").toString(), PhotoQuery.parse("date<2020-01-01").toString());
+		assertEquals(PhotoQuery.parse("date>=2020-01-02").toString(), PhotoQuery.parse("date>2020-01-01").toString());
+	}
+
+	/**
+	 * AND binds tighter than OR, NOT takes Photos out of the library and tag values ignore case.
+	 * @throws ParseException	If a query is not valid.
+	 */
+	@Test
+	public void evaluate() throws ParseException {
+		assertEquals(Arrays.asList(alice, aliceAndBob), search("person=ALICE"));
+		assertEquals(Arrays.asList(aliceAndBob), search("person=alice AND person=bob"));
+		assertEquals(Arrays.asList(bob, alice), search("location=paris"));
+		assertEquals(Arrays.asList(alice), search("person=alice AND NOT person=bob"));
+		assertEquals(Arrays.asList(bob, aliceAndBob), search("NOT (person=alice AND location=paris)"));
+		assertEquals(Arrays.asList(bob, alice, aliceAndBob), search("location=rome OR person=alice OR location=paris"));
+		assertEquals(Arrays.asList(alice), search("location=paris AND person=alice OR person=nobody"));
+		assertTrue(search("person=carol").isEmpty());
+		assertTrue(search("event=alice").isEmpty());
+	}
+
+	/**
+	 * Date terms select Photos by the day they were taken, including both ends of a range.
+	 * @throws ParseException	If a query is not valid.
+	 */
+	@Test
+	public void evaluateDates() throws ParseException {
+		assertEquals(Arrays.asList(bob), search("date<2020-01-01"));
+		assertEquals(Arrays.asList(alice, aliceAndBob), search("date>=2020-01-01"));
+		assertEquals(Arrays.asList(alice, aliceAndBob), search("date=2020-01-10..2020-02-20"));
+		assertEquals(Arrays.asList(aliceAndBob), search("date=2020-02-20 AND person=bob"));
+		assertEquals(Arrays.asList(alice, aliceAndBob), search(PhotoQuery.dates(LocalDate.parse("2020-01-01"), LocalDate.parse("2020-12-31"))
+				.and(PhotoQuery.tag("person", "alice")).toString()));
+	}
+
+	/**
+	 * A repeated search is answered from the QueryCache until the User changes.
+	 * @throws ParseException	If the query is not valid.
+	 */
+	@Test
+	public void resultsFollowChanges() throws ParseException {
+		PhotoQuery query = PhotoQuery.parse("person=bob");
+		PhotoBitmap first = query.evaluateIds(user);
+		assertSame(first, query.evaluateIds(user));
+		assertEquals(2, first.cardinality());
+
+		user.addTag(alice, new Tag("person", "bob"));
+		assertEquals(3, query.evaluateIds(user).cardinality());
+		user.removeTag(alice, alice.getTags().size() - 1);
+		user.removePhoto(album, album.getPhotos().indexOf(bob));
+		assertEquals(Arrays.asList(aliceAndBob), query.evaluate(user));
+	}
+}
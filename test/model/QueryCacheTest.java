@@ -0,0 +1,55 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for QueryCache.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class QueryCacheTest {
+
+	/**
+	 * Maximum number of results kept, mirrored from QueryCache.
+	 */
+	private static final int CAPACITY = 64;
+
+	/**
+	 * A result is returned while the version is unchanged, and is dropped once the version moves on.
+	 */
+	@Test
+	public void resultsExpireWithVersion() {
+		QueryCache cache = new QueryCache();
+		PhotoBitmap ids = new PhotoBitmap();
+		ids.add(1);
+		assertNull(cache.get("person=alice", 3));
+		cache.put("person=alice", 3, ids);
+		assertSame(ids, cache.get("person=alice", 3));
+		assertNull(cache.get("person=bob", 3));
+		assertNull(cache.get("person=alice", 4));
+		// the stale result was dropped, so it does not come back for the old version either
+		assertNull(cache.get("person=alice", 3));
+	}
+
+	/**
+	 * Once the cache is full the least recently used result is evicted, and reading a result counts as using it.
+	 */
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		QueryCache cache = new QueryCache();
+		for(int i = 0; i < CAPACITY; i++) {
+			cache.put("q" + i, 0, new PhotoBitmap());
+		}
+		assertNotNull(cache.get("q0", 0));
+		cache.put("q" + CAPACITY, 0, new PhotoBitmap());
+		assertNotNull(cache.get("q0", 0));
+		assertNull(cache.get("q1", 0));
+		assertNotNull(cache.get("q2", 0));
+		assertNotNull(cache.get("q" + CAPACITY, 0));
+	}
+}
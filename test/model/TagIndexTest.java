@@ -0,0 +1,133 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for TagIndex.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class TagIndexTest {
+
+	/**
+	 * Index under test.
+	 */
+	private TagIndex index;
+	/**
+	 * Photos with ids 0 to 3.
+	 */
+	private Photo[] photos;
+
+	/**
+	 * Creates an empty index and four Photos.
+	 */
+	@Before
+	public void setUp() {
+		index = new TagIndex(new TagDictionary());
+		photos = new Photo[4];
+		for(int i = 0; i < photos.length; i++) {
+			photos[i] = new Photo("/photos/" + i + ".jpg", "", 0);
+			photos[i].setId(i);
+		}
+	}
+
+	/**
+	 * Returns the ids in a PhotoBitmap.
+	 * @param bitmap	The PhotoBitmap.
+	 * @return	List of the ids in increasing order.
+	 */
+	private static ArrayList<Integer> ids(PhotoBitmap bitmap) {
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		bitmap.forEach(ids::add);
+		return ids;
+	}
+
+	/**
+	 * Values are matched case-insensitively, and types and values never seen match nothing.
+	 */
+	@Test
+	public void getIgnoresCaseOfValues() {
+		index.add(new Tag("person", "Alice"), photos[0]);
+		index.add(new Tag("person", "alice"), photos[2]);
+		index.add(new Tag("location", "Paris"), photos[1]);
+		assertEquals(Arrays.asList(0, 2), ids(index.get("person", "ALICE")));
+		assertEquals(Arrays.asList(1), ids(index.get("location", "paris")));
+		assertTrue(index.get("person", "paris").isEmpty());
+		assertTrue(index.get("person", "bob").isEmpty());
+		assertTrue(index.get("event", "alice").isEmpty());
+	}
+
+	/**
+	 * Adding the same Tag twice counts it once, and removing it leaves nothing behind.
+	 */
+	@Test
+	public void removeUndoesAdd() {
+		Tag tag = new Tag("person", "bob");
+		index.add(tag, photos[1]);
+		index.add(tag, photos[1]);
+		index.add(tag, photos[3]);
+		index.remove(tag, photos[1]);
+		assertEquals(Arrays.asList(3), ids(index.get("person", "bob")));
+		assertEquals(Arrays.asList("bob"), index.complete("person", "b", 10));
+		index.remove(tag, photos[3]);
+		assertTrue(index.get("person", "bob").isEmpty());
+		assertTrue(index.complete("person", "b", 10).isEmpty());
+		// removing a Photo that was never indexed changes nothing
+		index.remove(tag, photos[0]);
+		assertTrue(index.get("person", "bob").isEmpty());
+	}
+
+	/**
+	 * addPhoto and removePhoto index and unindex every Tag of a Photo.
+	 */
+	@Test
+	public void addAndRemovePhoto() {
+		photos[0].getTags().add(new Tag("person", "amy"));
+		photos[0].getTags().add(new Tag("event", "party"));
+		index.addPhoto(photos[0]);
+		assertEquals(Arrays.asList(0), ids(index.get("person", "amy")));
+		assertEquals(Arrays.asList(0), ids(index.get("event", "party")));
+		index.removePhoto(photos[0]);
+		assertTrue(index.get("person", "amy").isEmpty());
+		assertTrue(index.get("event", "party").isEmpty());
+	}
+
+	/**
+	 * Completions are limited to the tag type, start with the prefix and come most used first.
+	 */
+	@Test
+	public void completeMostUsedFirst() {
+		index.add(new Tag("person", "anna"), photos[0]);
+		index.add(new Tag("person", "andy"), photos[0]);
+		index.add(new Tag("person", "andy"), photos[1]);
+		index.add(new Tag("person", "andy"), photos[2]);
+		index.add(new Tag("person", "bob"), photos[3]);
+		index.add(new Tag("location", "antwerp"), photos[3]);
+		assertEquals(Arrays.asList("andy", "anna"), index.complete("person", "an", 10));
+		assertEquals(Arrays.asList("andy"), index.complete("person", "AN", 1));
+		assertEquals(Arrays.asList("antwerp"), index.complete("location", "an", 10));
+		assertTrue(index.complete("event", "an", 10).isEmpty());
+	}
+
+	/**
+	 * and and or combine the Photos of two Tags.
+	 */
+	@Test
+	public void andOr() {
+		index.add(new Tag("person", "amy"), photos[0]);
+		index.add(new Tag("person", "amy"), photos[1]);
+		index.add(new Tag("location", "rome"), photos[1]);
+		index.add(new Tag("location", "rome"), photos[2]);
+		assertEquals(Arrays.asList(1), ids(index.and("person", "amy", "location", "rome")));
+		assertEquals(Arrays.asList(0, 1, 2), ids(index.or("person", "amy", "location", "rome")));
+	}
+}
@@ -0,0 +1,265 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for UserJournal: replaying the changes made since the User was last written by UserStore,
+ * dropping damaged or stale records, and deciding when to compact.
+ * Each change is made to the User and recorded in the journal the way User does when it has a journal.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class UserJournalTest {
+
+	/**
+	 * Generation the User's file is written with.
+	 */
+	private static final long GENERATION = 3;
+
+	/**
+	 * Directory the User's file and journal are written in, deleted after each test.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Location of the User's file.
+	 */
+	private Path file;
+	/**
+	 * Location of the journal.
+	 */
+	private Path journalFile;
+	/**
+	 * User whose changes are recorded.
+	 */
+	private User user;
+	/**
+	 * Journal the changes are recorded in.
+	 */
+	private UserJournal journal;
+
+	/**
+	 * Writes the sample User and starts an empty journal for it.
+	 * @throws Exception	If the file cannot be written.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		file = folder.getRoot().toPath().resolve("journal.dat");
+		journalFile = UserJournal.journalFile(file);
+		user = UserStoreTest.sample();
+		user.setGeneration(GENERATION);
+		UserStore.write(user, file);
+		journal = UserJournal.create(journalFile, GENERATION);
+	}
+
+	/**
+	 * Reads the User's file and replays the journal onto it.
+	 * @param generation	Generation the journal is replayed against.
+	 * @return	The User as it was read.
+	 * @throws Exception	If the file or the journal cannot be read.
+	 */
+	private User replay(long generation) throws Exception {
+		User read = UserStore.read(file);
+		UserJournal.replay(journalFile, read, generation);
+		return read;
+	}
+
+	/**
+	 * Makes one of every kind of change, recording each in the journal.
+	 */
+	private void changeEverything() {
+		Album holiday = user.getAlbums().get(0);
+		Photo beach = holiday.getPhotos().get(0);
+		Photo cake = holiday.getPhotos().get(1);
+
+		user.addTagType("pet");
+		journal.addTagType("pet");
+		Album pets = new Album("Pets");
+		user.addAlbum(pets);
+		journal.addAlbum("Pets");
+		Photo dog = new Photo("/photos/dog.jpg", "Rex", 1600000000000L);
+		dog.setHash("d06");
+		dog.setDimensions(640, 480);
+		user.addPhoto(pets, dog);
+		journal.addPhoto(3, dog);
+		// the same Photo added to a second Album is replayed as the same Photo
+		user.addPhoto(holiday, dog);
+		journal.addPhoto(0, dog);
+
+		user.setCaption(cake, "Birthday cake");
+		journal.setCaption(cake);
+		user.addTag(dog, new Tag("pet", "Rex"));
+		journal.addTag(dog, new Tag("pet", "Rex"));
+		user.removeTag(beach, 1);
+		journal.removeTag(beach, 1);
+		user.setHash(cake, "cafe");
+		journal.setHash(cake);
+		user.setPerceptualHash(cake, 42L);
+		journal.setPerceptualHash(cake);
+		user.setMetadata(dog, 1600000005000L, 480, 640, 8);
+		journal.setMetadata(dog);
+
+		user.renameAlbum(user.getAlbums().get(2), "Family");
+		journal.renameAlbum(2, "Family");
+		user.removePhoto(holiday, 1);
+		journal.removePhoto(0, 1);
+		user.removeAlbum(1);
+		journal.removeAlbum(1);
+	}
+
+	/**
+	 * Replaying the journal onto the saved User gives the User as it was after the changes.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void replayRestoresChanges() throws Exception {
+		changeEverything();
+		journal.close();
+		assertFalse(journal.hasFailed());
+		assertEquals(Files.size(journalFile) - 8, journal.getSize());
+
+		User read = replay(GENERATION);
+		assertEquals(UserStoreTest.describe(user), UserStoreTest.describe(read));
+		Photo dog = read.findPhoto("/photos/dog.jpg");
+		assertSame(dog, read.getAlbums().get(0).getPhotos().get(1));
+		assertSame(dog, read.getAlbums().get(2).getPhotos().get(0));
+	}
+
+	/**
+	 * Writing the replayed User and clearing the journal, as compacting does, keeps every change.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void compactKeepsChanges() throws Exception {
+		changeEverything();
+		journal.close();
+		User read = replay(GENERATION);
+		read.setGeneration(GENERATION + 1);
+		UserStore.write(read, file);
+		UserJournal.create(journalFile, GENERATION + 1).close();
+		assertFalse(Files.exists(journalFile));
+
+		User compacted = replay(GENERATION + 1);
+		assertEquals(UserStoreTest.describe(user), UserStoreTest.describe(compacted));
+	}
+
+	/**
+	 * A journal left over from before the User's file was last written is not replayed, and is cleared.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void staleJournalIsIgnored() throws Exception {
+		User before = UserStore.read(file);
+		changeEverything();
+		journal.close();
+
+		User read = replay(GENERATION + 1);
+		assertEquals(UserStoreTest.describe(before), UserStoreTest.describe(read));
+		assertFalse(Files.exists(journalFile));
+	}
+
+	/**
+	 * A record cut off by a crash is dropped along with everything after it, and the journal is truncated to the records before it.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void tornRecordIsDropped() throws Exception {
+		Photo cake = user.getAlbums().get(0).getPhotos().get(1);
+		user.setCaption(cake, "kept");
+		journal.setCaption(cake);
+		journal.sync();
+		long valid = Files.size(journalFile);
+		journal.setCaption(cake);
+		journal.close();
+		try(FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+			channel.truncate(Files.size(journalFile) - 3);
+		}
+
+		User read = replay(GENERATION);
+		assertEquals("kept", read.findPhoto("/photos/cake.png").getCaption());
+		assertEquals(valid, Files.size(journalFile));
+	}
+
+	/**
+	 * A record that fails its checksum is treated the same as one that was cut off.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void corruptRecordIsDropped() throws Exception {
+		Photo cake = user.getAlbums().get(0).getPhotos().get(1);
+		user.setCaption(cake, "kept");
+		journal.setCaption(cake);
+		journal.sync();
+		long valid = Files.size(journalFile);
+		user.setCaption(cake, "lost");
+		journal.setCaption(cake);
+		journal.close();
+		byte[] bytes = Files.readAllBytes(journalFile);
+		bytes[bytes.length - 1] ^= 1;
+		Files.write(journalFile, bytes);
+
+		assertEquals("kept", replay(GENERATION).findPhoto("/photos/cake.png").getCaption());
+		assertEquals(valid, Files.size(journalFile));
+	}
+
+	/**
+	 * A record that refers to a Photo no longer in the library stops the replay, since the records after it cannot be trusted.
+	 * @throws Exception	If the file or the journal cannot be read or written.
+	 */
+	@Test
+	public void recordForMissingPhotoStopsReplay() throws Exception {
+		Photo cake = user.getAlbums().get(0).getPhotos().get(1);
+		user.removePhoto(user.getAlbums().get(0), 1);
+		journal.removePhoto(0, 1);
+		journal.sync();
+		long valid = Files.size(journalFile);
+		cake.setCaption("orphan");
+		journal.setCaption(cake);
+		journal.close();
+
+		User read = replay(GENERATION);
+		assertEquals(1, read.getAlbums().get(0).getPhotos().size());
+		assertNull(read.findPhoto("/photos/cake.png"));
+		assertEquals(valid, Files.size(journalFile));
+	}
+
+	/**
+	 * The journal asks to be compacted only once it is past its minimum size and more than half the size of the User's file.
+	 * @throws Exception	If the journal cannot be written.
+	 */
+	@Test
+	public void shouldCompactWhenLarge() throws Exception {
+		Photo cake = user.getAlbums().get(0).getPhotos().get(1);
+		cake.setCaption(new String(new char[1000]).replace('\0', 'x'));
+		while(journal.getSize() <= 64 * 1024) {
+			assertFalse(journal.shouldCompact(0));
+			journal.setCaption(cake);
+		}
+		assertTrue(journal.shouldCompact(0));
+		assertTrue(journal.shouldCompact(journal.getSize() * 2 - 1));
+		assertFalse(journal.shouldCompact(journal.getSize() * 2));
+		journal.close();
+	}
+
+	/**
+	 * The journal of a User's file sits next to it, named after the User.
+	 */
+	@Test
+	public void journalFileIsNextToUserFile() {
+		assertEquals(folder.getRoot().toPath().resolve("journal.journal"), journalFile);
+	}
+}
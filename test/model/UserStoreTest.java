@@ -0,0 +1,200 @@
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for UserStore: writing a User and reading it back, reading Albums only when they are used,
+ * and converting files written with Java serialization.
+ *
+ * @author Naveenan Yogeswaran
+ * @author Savan Patel
+ *
+ */
+
+public class UserStoreTest {
+
+	/**
+	 * Directory the User's file is written in, deleted after each test.
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Location of the User's file.
+	 */
+	private Path file;
+
+	/**
+	 * Picks the location of the User's file.
+	 */
+	@Before
+	public void setUp() {
+		file = folder.getRoot().toPath().resolve("store.dat");
+	}
+
+	/**
+	 * Describes everything that is saved about a User, so two Users can be compared as text.
+	 * Every Album is read.
+	 * @param user	The User.
+	 * @return	One line for the tag types, then one line per Album followed by one line per Photo.
+	 */
+	static String describe(User user) {
+		StringBuilder text = new StringBuilder(user.getUsername()).append(' ').append(user.getTagTypes());
+		for(Album album : user.getAlbums()) {
+			text.append('\n').append(album.getName()).append(' ').append(album.getNumPhotos())
+					.append(' ').append(album.getEarliestDate()).append("..").append(album.getLatestDate());
+			for(Photo photo : album.getPhotos()) {
+				text.append("\n  ").append(photo.getLocation()).append('|').append(photo.getCaption())
+						.append('|').append(photo.getDate()).append('|').append(photo.getHash())
+						.append('|').append(photo.hasPerceptualHash() ? Long.toHexString(photo.getPerceptualHash()) : "-")
+						.append('|').append(photo.getWidth()).append('x').append(photo.getHeight())
+						.append('|').append(photo.getOrientation()).append('|').append(photo.getTags());
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Builds a User with a shared Photo, an empty Album and every field of a Photo set.
+	 * @return	The User.
+	 */
+	static User sample() {
+		User user = new User("sample");
+		user.addTagType("event");
+		Album holiday = new Album("Holiday");
+		Album empty = new Album("Empty");
+		Album family = new Album("Family \u00e9t\u00e9");
+		user.addAlbum(holiday);
+		user.addAlbum(empty);
+		user.addAlbum(family);
+
+		Photo beach = new Photo("/photos/beach.jpg", "Beach at sunset", 1500000000000L);
+		beach.setHash("0f1e2d3c");
+		beach.setPerceptualHash(0x8000000000000001L);
+		beach.setDimensions(4000, 3000);
+		beach.setOrientation(6);
+		Photo cake = new Photo("/photos/cake.png", "", 1400000000000L);
+		user.addPhoto(holiday, beach);
+		user.addPhoto(holiday, cake);
+		user.addPhoto(family, beach);
+		user.addTag(beach, new Tag("person", "Alice"));
+		user.addTag(beach, new Tag("location", "Nice"));
+		user.addTag(cake, new Tag("event", "birthday"));
+		return user;
+	}
+
+	/**
+	 * A User reads back with the same Albums, Photos and Tags, and a Photo in two Albums is read back as one Photo.
+	 * @throws Exception	If the file cannot be written or read.
+	 */
+	@Test
+	public void roundTrip() throws Exception {
+		User user = sample();
+		user.setGeneration(7);
+		UserStore.write(user, file);
+
+		User read = UserStore.read(file);
+		assertEquals(7, read.getGeneration());
+		assertEquals(describe(user), describe(read));
+		assertSame(read.getAlbums().get(0).getPhotos().get(0), read.getAlbums().get(2).getPhotos().get(0));
+		assertFalse(Files.exists(file.resolveSibling("store.dat.tmp")));
+	}
+
+	/**
+	 * Writing a User that was read back gives the same file, byte for byte.
+	 * @throws Exception	If the file cannot be written or read.
+	 */
+	@Test
+	public void rewriteIsStable() throws Exception {
+		UserStore.write(sample(), file);
+		byte[] first = Files.readAllBytes(file);
+		UserStore.write(UserStore.read(file), file);
+		assertArrayEquals(first, Files.readAllBytes(file));
+	}
+
+	/**
+	 * Only the summary of each Album is read at first, and looking up a Photo reads only the Albums that may hold it.
+	 * @throws Exception	If the file cannot be written or read.
+	 */
+	@Test
+	public void albumsAreReadWhenUsed() throws Exception {
+		User user = sample();
+		Album other = new Album("Other");
+		user.addAlbum(other);
+		user.addPhoto(other, new Photo("/photos/other.jpg", "", 0));
+		UserStore.write(user, file);
+
+		User read = UserStore.read(file);
+		assertFalse(read.isFullyLoaded());
+		Album holiday = read.getAlbums().get(0);
+		assertEquals(2, holiday.getNumPhotos());
+		assertEquals(1400000000000L, holiday.getEarliestDate());
+		assertEquals(1500000000000L, holiday.getLatestDate());
+		for(Album album : read.getAlbums()) {
+			assertFalse(album.getName(), album.isLoaded() && album.getNumPhotos() > 0);
+		}
+
+		Photo found = read.findPhoto("/photos/other.jpg");
+		assertNotNull(found);
+		assertTrue(read.getAlbums().get(3).isLoaded());
+		assertFalse(holiday.isLoaded());
+		assertFalse(read.getAlbums().get(2).isLoaded());
+
+		assertNotNull(read.findPhotoByHash("0f1e2d3c"));
+		assertTrue(holiday.isLoaded());
+		assertTrue(read.getAlbums().get(2).isLoaded());
+		assertNull(read.findPhoto("/photos/missing.jpg"));
+	}
+
+	/**
+	 * A file of another version of the format is refused rather than misread.
+	 * @throws Exception	If the file cannot be written.
+	 */
+	@Test(expected = IOException.class)
+	public void otherVersionIsRefused() throws Exception {
+		try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE))) {
+			out.writeInt(UserStore.MAGIC);
+			out.writeInt(UserStore.VERSION + 1);
+			out.writeInt(0);
+		}
+		UserStore.read(file);
+	}
+
+	/**
+	 * The stock User shipped in session/stock.dat, written with Java serialization by an older version,
+	 * is read and rewritten in the current format. Run from the project directory, as the application is.
+	 * @throws Exception	If the file cannot be copied or read.
+	 */
+	@Test
+	public void serializedFileIsConverted() throws Exception {
+		Files.copy(Paths.get(Admin.storeDir, "stock.dat"), file);
+		User read = UserStore.read(file);
+		assertEquals("stock", read.getUsername());
+		assertEquals(1, read.getAlbums().size());
+		Album stock = read.getAlbums().get(0);
+		assertEquals(7, stock.getNumPhotos());
+		assertEquals(7, stock.getPhotos().size());
+		assertEquals("data/harambe.jpg", stock.getPhotos().get(0).getLocation());
+		// the Calendar dates of the older version are converted to milliseconds
+		assertEquals(1605681682000L, stock.getEarliestDate());
+		assertEquals(1605681682000L, stock.getPhotos().get(0).getDate());
+
+		try(DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			assertEquals(UserStore.MAGIC, in.readInt());
+		}
+		assertEquals(describe(read), describe(UserStore.read(file)));
+	}
+}